@@ -1,6 +1,8 @@
 package com.example.flight.search.config;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -20,4 +22,85 @@ public class AsyncConfig {
     executor.initialize();
     return executor;
   }
+
+  /**
+   * Bounded pool for the per-request hop-count stages of a search. When it is saturated a stage is
+   * rejected and the search answers without it, uncached, rather than running the stage on the
+   * request thread where the search deadline cannot stop it.
+   */
+  @Bean(name = "searchExecutor")
+  public Executor searchExecutor(
+      @Value("${flight.search.executor.core-pool-size:16}") int corePoolSize,
+      @Value("${flight.search.executor.max-pool-size:32}") int maxPoolSize,
+      @Value("${flight.search.executor.queue-capacity:200}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(corePoolSize);
+    executor.setMaxPoolSize(maxPoolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("FlightSearchStage-");
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Small pool for background refreshes of stale cache entries. A refresh that cannot be queued is
+   * dropped; the stale value keeps being served and a later read retries.
+   */
+  @Bean(name = "cacheRefreshExecutor")
+  public Executor cacheRefreshExecutor(
+      @Value("${flight.search.cache.refresh.pool-size:4}") int poolSize,
+      @Value("${flight.search.cache.refresh.queue-capacity:100}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("CacheRefresh-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Runs cache warm-up searches. Kept apart from the search pools, and the warm-up never has more
+   * searches in flight than this pool has threads, so it cannot starve live traffic.
+   */
+  @Bean(name = "cacheWarmupExecutor")
+  public Executor cacheWarmupExecutor(
+      @Value("${flight.search.cache.warmup.concurrency:2}") int concurrency) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(Math.max(1, concurrency));
+    executor.setMaxPoolSize(Math.max(1, concurrency));
+    executor.setThreadNamePrefix("CacheWarmup-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Converts and bulk-writes reindex chunks. The reindex reader never has more chunks in flight
+   * than this pool has threads, so the queue stays short.
+   */
+  @Bean(name = "reindexExecutor")
+  public Executor reindexExecutor(
+      @Value("${flight.search.reindex.concurrency:4}") int concurrency) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(Math.max(1, concurrency));
+    executor.setMaxPoolSize(Math.max(1, concurrency));
+    executor.setThreadNamePrefix("Reindex-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Single thread recomputing the route catalog after airport graph refreshes, so refreshes queue
+   * up in order and never hold a scheduling thread.
+   */
+  @Bean(name = "routeCatalogExecutor")
+  public Executor routeCatalogExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setThreadNamePrefix("RouteCatalog-");
+    executor.initialize();
+    return executor;
+  }
 }
@@ -0,0 +1,46 @@
+package com.example.flight.search.config;
+
+/**
+ * A cached value with the time it was computed and how long computing it took, which the two-tier
+ * cache uses to decide when to serve it stale and when to refresh it early.
+ */
+public class CacheEnvelope {
+
+  private Object value;
+  private long computedAt;
+  private long computeMillis;
+
+  public CacheEnvelope() {}
+
+  public CacheEnvelope(Object value, long computedAt, long computeMillis) {
+    this.value = value;
+    this.computedAt = computedAt;
+    this.computeMillis = computeMillis;
+  }
+
+  public Object getValue() {
+    return value;
+  }
+
+  public void setValue(Object value) {
+    this.value = value;
+  }
+
+  /** Epoch milliseconds at which the value was computed */
+  public long getComputedAt() {
+    return computedAt;
+  }
+
+  public void setComputedAt(long computedAt) {
+    this.computedAt = computedAt;
+  }
+
+  /** Time the computation took, the delta of probabilistic early expiration */
+  public long getComputeMillis() {
+    return computeMillis;
+  }
+
+  public void setComputeMillis(long computeMillis) {
+    this.computeMillis = computeMillis;
+  }
+}
@@ -0,0 +1,123 @@
+package com.example.flight.search.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Redis cache manager whose keys carry a per-cache generation, {@code
+ * <cache>:v<generation>::<key>}. Clearing a cache increments its generation instead of deleting its
+ * keys, so it costs one INCR however many entries exist; entries of older generations are never
+ * read again and expire with their TTL. Each instance re-reads a generation at most once per
+ * refresh interval, or at once on a peer's clear.
+ */
+public class GenerationalRedisCacheManager extends RedisCacheManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(GenerationalRedisCacheManager.class);
+  private static final String GENERATION_PREFIX = "flight_search:cache-generation:";
+
+  private final Generations generations;
+
+  private GenerationalRedisCacheManager(
+      RedisCacheWriter cacheWriter,
+      RedisCacheConfiguration defaultCacheConfiguration,
+      Generations generations) {
+    super(cacheWriter, defaultCacheConfiguration);
+    this.generations = generations;
+  }
+
+  public static GenerationalRedisCacheManager create(
+      RedisCacheWriter cacheWriter,
+      RedisCacheConfiguration defaultCacheConfiguration,
+      StringRedisTemplate stringRedisTemplate,
+      Duration refreshInterval) {
+    Generations generations = new Generations(stringRedisTemplate, refreshInterval.toMillis());
+    return new GenerationalRedisCacheManager(
+        cacheWriter,
+        defaultCacheConfiguration.computePrefixWith(generations::keyPrefix),
+        generations);
+  }
+
+  /** Re-read the generation of a cache, e.g. after a peer cleared it */
+  public void refreshGeneration(String cacheName) {
+    generations.read(cacheName);
+  }
+
+  @Override
+  protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
+    return new RedisCache(name, getCacheWriter(), cacheConfig) {
+      @Override
+      public void clear() {
+        if (!generations.next(name)) {
+          // Without the counter the keys are deleted, in SCAN batches
+          super.clear();
+        }
+      }
+    };
+  }
+
+  /** Generation counters of the caches, kept in Redis and read through a local copy */
+  static final class Generations {
+    private final StringRedisTemplate redisTemplate;
+    private final long refreshMillis;
+    private final Map<String, long[]> generations = new ConcurrentHashMap<>();
+
+    Generations(StringRedisTemplate redisTemplate, long refreshMillis) {
+      this.redisTemplate = redisTemplate;
+      this.refreshMillis = refreshMillis;
+    }
+
+    String keyPrefix(String cacheName) {
+      return cacheName + ":v" + current(cacheName) + "::";
+    }
+
+    /** Current generation, as last read and at most refresh-ms old */
+    long current(String cacheName) {
+      long[] generation = generations.get(cacheName);
+      if (generation == null || System.currentTimeMillis() - generation[1] >= refreshMillis) {
+        return read(cacheName);
+      }
+      return generation[0];
+    }
+
+    /**
+     * Read the counter; INCRBY 0 returns it without changing it, and starts it at 0 when it does
+     * not exist yet. The last known generation is kept while Redis is unavailable.
+     */
+    long read(String cacheName) {
+      long[] known = generations.get(cacheName);
+      long value = known != null ? known[0] : 0;
+      try {
+        Long read = redisTemplate.opsForValue().increment(GENERATION_PREFIX + cacheName, 0);
+        value = read != null ? read : value;
+      } catch (Exception e) {
+        logger.debug("Error reading generation of cache {}: {}", cacheName, e.getMessage());
+      }
+      generations.put(cacheName, new long[] {value, System.currentTimeMillis()});
+      return value;
+    }
+
+    /** Move a cache to its next generation, returning false when the counter cannot be raised */
+    boolean next(String cacheName) {
+      try {
+        Long value = redisTemplate.opsForValue().increment(GENERATION_PREFIX + cacheName);
+        if (value == null) {
+          return false;
+        }
+        generations.put(cacheName, new long[] {value, System.currentTimeMillis()});
+        logger.info("Cleared cache {}, now at generation {}", cacheName, value);
+        return true;
+      } catch (Exception e) {
+        logger.warn("Error raising generation of cache {}: {}", cacheName, e.getMessage());
+        return false;
+      }
+    }
+  }
+}
@@ -1,19 +1,42 @@
 package com.example.flight.search.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @EnableCaching
 @ConditionalOnClass(RedisConnectionFactory.class)
 @ConditionalOnProperty(name = "spring.data.redis.host")
+@EnableConfigurationProperties(CacheProperties.class)
 public class RedisConfig {
 
   @Bean
@@ -33,4 +56,114 @@ public class RedisConfig {
     template.afterPropertiesSet();
     return template;
   }
+
+  /** Caffeine near-cache in front of the Redis caches, used when the cache type is redis */
+  @Bean
+  @ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
+  public TwoTierCacheManager cacheManager(
+      RedisConnectionFactory connectionFactory,
+      StringRedisTemplate stringRedisTemplate,
+      CacheProperties cacheProperties,
+      ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${flight.search.cache.l1.max-weight:50000}") long maxWeight,
+      @Value("${flight.search.cache.l1.ttl-seconds:30}") long ttlSeconds,
+      @Qualifier("cacheRefreshExecutor") Executor cacheRefreshExecutor,
+      @Value("${flight.search.cache.soft-ttl-seconds:300}") long softTtlSeconds,
+      @Value("${flight.search.cache.early-refresh-beta:1.0}") double earlyRefreshBeta,
+      @Value("${flight.search.cache.compression-threshold-bytes:1024}") int compressionThreshold,
+      @Value("${flight.search.cache.clear-batch-size:1000}") int clearBatchSize,
+      @Value("${flight.search.cache.generation-refresh-ms:1000}") long generationRefreshMs) {
+    CacheProperties.Redis redisProperties = cacheProperties.getRedis();
+    RedisCacheConfiguration configuration =
+        RedisCacheConfiguration.defaultCacheConfig()
+            .serializeValuesWith(
+                RedisSerializationContext.SerializationPair.fromSerializer(
+                    new SearchResultRedisSerializer(cacheValueSerializer(), compressionThreshold)));
+    if (redisProperties.getTimeToLive() != null) {
+      configuration = configuration.entryTtl(envelopeTtl(redisProperties.getTimeToLive()));
+    }
+    if (!redisProperties.isCacheNullValues()) {
+      configuration = configuration.disableCachingNullValues();
+    }
+
+    // Clearing a cache moves it to a new generation; should that fail, its keys are walked with
+    // SCAN in batches, as the default writer's KEYS would block Redis for the whole keyspace
+    RedisCacheWriter cacheWriter =
+        RedisCacheWriter.nonLockingRedisCacheWriter(
+            connectionFactory, BatchStrategies.scan(Math.max(1, clearBatchSize)));
+    RedisCacheManager redisCacheManager =
+        GenerationalRedisCacheManager.create(
+            cacheWriter,
+            configuration,
+            stringRedisTemplate,
+            Duration.ofMillis(generationRefreshMs));
+    redisCacheManager.afterPropertiesSet();
+
+    TwoTierCacheManager cacheManager =
+        new TwoTierCacheManager(
+            redisCacheManager,
+            stringRedisTemplate,
+            meterRegistry.getIfAvailable(),
+            maxWeight,
+            Duration.ofSeconds(ttlSeconds),
+            redisProperties.getTimeToLive() != null
+                ? redisProperties.getTimeToLive()
+                : Duration.ofHours(1));
+    if (softTtlSeconds > 0) {
+      cacheManager.setSoftExpiry(
+          cacheRefreshExecutor, Duration.ofSeconds(softTtlSeconds), earlyRefreshBeta);
+    }
+    return cacheManager;
+  }
+
+  /**
+   * Time to live of a Redis entry. Envelopes expire that long after their value was computed, also
+   * when rewritten in place later, e.g. by a seat patch.
+   */
+  static RedisCacheWriter.TtlFunction envelopeTtl(Duration timeToLive) {
+    return (key, value) -> {
+      if (value instanceof CacheEnvelope) {
+        long age = System.currentTimeMillis() - ((CacheEnvelope) value).getComputedAt();
+        return Duration.ofMillis(Math.max(1000, timeToLive.toMillis() - age));
+      }
+      return timeToLive;
+    };
+  }
+
+  /** Delivers peer invalidations to the near-caches of this instance */
+  @Bean
+  @ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
+  public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+      RedisConnectionFactory connectionFactory, TwoTierCacheManager cacheManager) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(
+        cacheManager, new ChannelTopic(TwoTierCacheManager.INVALIDATION_CHANNEL));
+    return container;
+  }
+
+  /**
+   * JSON with type hints on every value that also handles the java.time fields of search results.
+   * Final types such as {@code List.of} or boxed numbers are typed too, since a value read back as
+   * {@code Object} has no other way to name its class. Only types of this application and of the
+   * JDK packages search results are built from may be named by a cached value, so a tampered entry
+   * cannot instantiate arbitrary classes.
+   */
+  static GenericJackson2JsonRedisSerializer cacheValueSerializer() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.registerModule(new JavaTimeModule());
+    objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    PolymorphicTypeValidator typeValidator =
+        BasicPolymorphicTypeValidator.builder()
+            .allowIfSubType("com.example.flight.search.")
+            .allowIfSubType("java.util.")
+            .allowIfSubType("java.time.")
+            .allowIfSubType("java.math.")
+            .allowIfSubType(Number.class)
+            .allowIfSubType(Boolean.class)
+            .build();
+    objectMapper.activateDefaultTyping(
+        typeValidator, ObjectMapper.DefaultTyping.EVERYTHING, JsonTypeInfo.As.PROPERTY);
+    return new GenericJackson2JsonRedisSerializer(objectMapper);
+  }
 }
@@ -0,0 +1,495 @@
+package com.example.flight.search.config;
+
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Compact binary encoding of cached search results, a {@code Page} or {@code List} of {@link
+ * FlightSearchResult} optionally wrapped in a {@link CacheEnvelope}. Times are written as epoch
+ * minutes, prices as integer minor units, the result UUID as two longs, and airport codes and
+ * airlines as indexes into a per-value dictionary. Values above the compression threshold are
+ * deflated when that makes them smaller.
+ *
+ * <p>Anything else, or results the format cannot represent exactly, falls back to the JSON
+ * serializer, with pages written as a {@link JsonPage} because {@code PageImpl} cannot be read back
+ * from JSON. Values are told apart by their first byte, so JSON written before this codec was
+ * introduced still reads back.
+ */
+public class SearchResultRedisSerializer implements RedisSerializer<Object> {
+
+  static final byte JSON = 0x00;
+  static final byte BINARY = (byte) 0xB1;
+  static final byte DEFLATED = (byte) 0xB2;
+
+  private static final byte FORMAT_VERSION = 1;
+  private static final byte KIND_LIST = 1;
+  private static final byte KIND_PAGE = 2;
+  private static final int MINOR_UNIT_SCALE = 2;
+  private static final int MAX_LEGS = 0xFF;
+
+  private final RedisSerializer<Object> fallback;
+  private final int compressionThreshold;
+
+  /**
+   * @param compressionThreshold encoded size in bytes above which values are deflated, or a
+   *     negative value to never compress
+   */
+  public SearchResultRedisSerializer(RedisSerializer<Object> fallback, int compressionThreshold) {
+    this.fallback = fallback;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override
+  public byte[] serialize(Object value) throws SerializationException {
+    if (value == null) {
+      return null;
+    }
+
+    byte[] encoded = encodable(value) ? encode(value) : null;
+    if (encoded == null) {
+      byte[] json = fallback.serialize(JsonPage.wrap(value));
+      byte[] framed = new byte[json.length + 1];
+      framed[0] = JSON;
+      System.arraycopy(json, 0, framed, 1, json.length);
+      return framed;
+    }
+
+    if (compressionThreshold >= 0 && encoded.length > compressionThreshold) {
+      byte[] deflated = deflate(encoded);
+      if (deflated.length < encoded.length) {
+        return deflated;
+      }
+    }
+    return encoded;
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) throws SerializationException {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+
+    try {
+      switch (bytes[0]) {
+        case BINARY:
+          return decode(new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1)));
+        case DEFLATED:
+          return decode(
+              new DataInputStream(
+                  new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))));
+        case JSON:
+          byte[] json = new byte[bytes.length - 1];
+          System.arraycopy(bytes, 1, json, 0, json.length);
+          return JsonPage.unwrap(fallback.deserialize(json));
+        default:
+          // Written by the plain JSON serializer before this codec
+          return JsonPage.unwrap(fallback.deserialize(bytes));
+      }
+    } catch (IOException e) {
+      throw new SerializationException("Cannot read cached search results", e);
+    }
+  }
+
+  /** Whether the value is a page or list of results every field of which encodes exactly */
+  private static boolean encodable(Object value) {
+    if (value instanceof CacheEnvelope) {
+      value = ((CacheEnvelope) value).getValue();
+    }
+    Collection<?> content;
+    if (value instanceof Page) {
+      Page<?> page = (Page<?>) value;
+      if (page.getPageable().isUnpaged() || !encodable(page.getSort())) {
+        return false;
+      }
+      content = page.getContent();
+    } else if (value instanceof List) {
+      content = (List<?>) value;
+    } else {
+      return false;
+    }
+
+    for (Object element : content) {
+      if (!(element instanceof FlightSearchResult) || !encodable((FlightSearchResult) element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean encodable(Sort sort) {
+    for (Sort.Order order : sort) {
+      if (order.isIgnoreCase() || order.getNullHandling() != Sort.NullHandling.NATIVE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean encodable(FlightSearchResult result) {
+    if (result.getUuid() == null
+        || result.getFlightNumber() == null
+        || result.getAirline() == null
+        || !wholeMinute(result.getDepartureTime())
+        || !wholeMinute(result.getArrivalTime())
+        || result.getNumberOfHops() == null
+        || result.getNumberOfHops() < 0
+        || result.getNumberOfHops() > Byte.MAX_VALUE
+        || result.getSchedules() == null
+        || result.getSchedules().size() > MAX_LEGS
+        || result.getPrice() == null
+        || result.getPrice().scale() > MINOR_UNIT_SCALE) {
+      return false;
+    }
+    for (ScheduleDto leg : result.getSchedules()) {
+      if (leg == null
+          || leg.getScheduleId() == null
+          || leg.getSource() == null
+          || leg.getDestination() == null
+          || !wholeMinute(leg.getDepartureTime())
+          || !wholeMinute(leg.getArrivalTime())
+          || leg.getAvailableSeats() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean wholeMinute(LocalDateTime time) {
+    return time != null && time.getSecond() == 0 && time.getNano() == 0;
+  }
+
+  /**
+   * Version, envelope, container and dictionary, then per result: UUID, flight number, airline,
+   * departure and arrival minutes, price scale and minor units, hops and legs
+   */
+  private static byte[] encode(Object value) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(BINARY);
+      out.writeByte(FORMAT_VERSION);
+
+      if (value instanceof CacheEnvelope) {
+        CacheEnvelope envelope = (CacheEnvelope) value;
+        out.writeBoolean(true);
+        out.writeLong(envelope.getComputedAt());
+        out.writeLong(envelope.getComputeMillis());
+        value = envelope.getValue();
+      } else {
+        out.writeBoolean(false);
+      }
+
+      Dictionary dictionary = new Dictionary();
+      List<?> content;
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      DataOutputStream bodyOut = new DataOutputStream(body);
+      if (value instanceof Page) {
+        Page<?> page = (Page<?>) value;
+        content = page.getContent();
+        out.writeByte(KIND_PAGE);
+        bodyOut.writeInt(page.getNumber());
+        bodyOut.writeInt(page.getSize());
+        bodyOut.writeLong(page.getTotalElements());
+        List<Sort.Order> orders = page.getSort().toList();
+        bodyOut.writeByte(orders.size());
+        for (Sort.Order order : orders) {
+          bodyOut.writeShort(dictionary.index(order.getProperty()));
+          bodyOut.writeBoolean(order.isAscending());
+        }
+      } else {
+        content = (List<?>) value;
+        out.writeByte(KIND_LIST);
+      }
+
+      bodyOut.writeInt(content.size());
+      for (Object element : content) {
+        writeResult(bodyOut, (FlightSearchResult) element, dictionary);
+      }
+      bodyOut.flush();
+
+      dictionary.writeTo(out);
+      body.writeTo(out);
+    } catch (IOException | IllegalStateException | ArithmeticException e) {
+      // Not representable, e.g. a price beyond minor-unit range; use JSON instead
+      return null;
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void writeResult(
+      DataOutputStream out, FlightSearchResult result, Dictionary dictionary) throws IOException {
+    out.writeLong(result.getUuid().getMostSignificantBits());
+    out.writeLong(result.getUuid().getLeastSignificantBits());
+    out.writeUTF(result.getFlightNumber());
+    out.writeShort(dictionary.index(result.getAirline()));
+    out.writeInt(epochMinute(result.getDepartureTime()));
+    out.writeInt(epochMinute(result.getArrivalTime()));
+    out.writeByte(result.getPrice().scale());
+    out.writeLong(result.getPrice().movePointRight(MINOR_UNIT_SCALE).longValueExact());
+    out.writeByte(result.getNumberOfHops());
+    out.writeByte(result.getSchedules().size());
+    for (ScheduleDto leg : result.getSchedules()) {
+      out.writeLong(leg.getScheduleId());
+      out.writeShort(dictionary.index(leg.getSource()));
+      out.writeShort(dictionary.index(leg.getDestination()));
+      out.writeInt(epochMinute(leg.getDepartureTime()));
+      out.writeInt(epochMinute(leg.getArrivalTime()));
+      out.writeInt(leg.getAvailableSeats());
+    }
+  }
+
+  private static Object decode(DataInputStream in) throws IOException {
+    byte version = in.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unknown search result format version " + version);
+    }
+
+    CacheEnvelope envelope = null;
+    if (in.readBoolean()) {
+      envelope = new CacheEnvelope(null, in.readLong(), in.readLong());
+    }
+    byte kind = in.readByte();
+    String[] dictionary = Dictionary.readFrom(in);
+
+    Pageable pageable = null;
+    long total = 0;
+    if (kind == KIND_PAGE) {
+      int number = in.readInt();
+      int size = in.readInt();
+      total = in.readLong();
+      List<Sort.Order> orders = new ArrayList<>();
+      int orderCount = in.readUnsignedByte();
+      for (int i = 0; i < orderCount; i++) {
+        String property = dictionary[in.readUnsignedShort()];
+        orders.add(in.readBoolean() ? Sort.Order.asc(property) : Sort.Order.desc(property));
+      }
+      pageable = PageRequest.of(number, size, Sort.by(orders));
+    }
+
+    int count = in.readInt();
+    List<FlightSearchResult> results = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      results.add(readResult(in, dictionary));
+    }
+
+    Object value = kind == KIND_PAGE ? new PageImpl<>(results, pageable, total) : results;
+    if (envelope != null) {
+      envelope.setValue(value);
+      return envelope;
+    }
+    return value;
+  }
+
+  private static FlightSearchResult readResult(DataInputStream in, String[] dictionary)
+      throws IOException {
+    FlightSearchResult result = new FlightSearchResult();
+    result.setUuid(new UUID(in.readLong(), in.readLong()));
+    result.setFlightNumber(in.readUTF());
+    result.setAirline(dictionary[in.readUnsignedShort()]);
+    result.setDepartureTime(fromEpochMinute(in.readInt()));
+    result.setArrivalTime(fromEpochMinute(in.readInt()));
+    int scale = in.readByte();
+    result.setPrice(BigDecimal.valueOf(in.readLong(), MINOR_UNIT_SCALE).setScale(scale));
+    result.setNumberOfHops((int) in.readByte());
+
+    int legCount = in.readUnsignedByte();
+    List<ScheduleDto> legs = new ArrayList<>(legCount);
+    for (int i = 0; i < legCount; i++) {
+      legs.add(
+          new ScheduleDto(
+              in.readLong(),
+              dictionary[in.readUnsignedShort()],
+              dictionary[in.readUnsignedShort()],
+              fromEpochMinute(in.readInt()),
+              fromEpochMinute(in.readInt()),
+              in.readInt()));
+    }
+    result.setSchedules(legs);
+    return result;
+  }
+
+  private static int epochMinute(LocalDateTime time) {
+    return Math.toIntExact(time.toEpochSecond(ZoneOffset.UTC) / 60);
+  }
+
+  private static LocalDateTime fromEpochMinute(int minutes) {
+    return LocalDateTime.ofEpochSecond(minutes * 60L, 0, ZoneOffset.UTC);
+  }
+
+  private static byte[] deflate(byte[] encoded) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(encoded, 1, encoded.length - 1);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length / 2 + 16);
+      out.write(DEFLATED);
+      byte[] buffer = new byte[4096];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /** JSON form of a page: its content, position, total and sort orders */
+  public static class JsonPage {
+
+    private List<Object> content;
+    private int number;
+    private int size;
+    private long total;
+    private List<String> orders;
+
+    public JsonPage() {}
+
+    /** The value with a page, also one inside an envelope, replaced by its JSON form */
+    static Object wrap(Object value) {
+      if (value instanceof CacheEnvelope) {
+        CacheEnvelope envelope = (CacheEnvelope) value;
+        return new CacheEnvelope(
+            wrap(envelope.getValue()), envelope.getComputedAt(), envelope.getComputeMillis());
+      }
+      if (!(value instanceof Page)) {
+        return value;
+      }
+      Page<?> page = (Page<?>) value;
+      JsonPage json = new JsonPage();
+      json.content = new ArrayList<>(page.getContent());
+      json.total = page.getTotalElements();
+      json.orders = new ArrayList<>();
+      if (page.getPageable().isPaged()) {
+        json.number = page.getNumber();
+        json.size = page.getSize();
+        for (Sort.Order order : page.getSort()) {
+          json.orders.add(order.getProperty() + "," + order.getDirection().name());
+        }
+      }
+      return json;
+    }
+
+    /** The value with the JSON form of a page turned back into a page */
+    static Object unwrap(Object value) {
+      if (value instanceof CacheEnvelope) {
+        CacheEnvelope envelope = (CacheEnvelope) value;
+        envelope.setValue(unwrap(envelope.getValue()));
+        return envelope;
+      }
+      if (!(value instanceof JsonPage)) {
+        return value;
+      }
+      JsonPage json = (JsonPage) value;
+      List<Object> content = json.content != null ? json.content : List.of();
+      if (json.size <= 0) {
+        return new PageImpl<>(content, Pageable.unpaged(), json.total);
+      }
+      List<Sort.Order> orders = new ArrayList<>();
+      for (String order : json.orders != null ? json.orders : List.<String>of()) {
+        int comma = order.lastIndexOf(',');
+        orders.add(
+            new Sort.Order(
+                Sort.Direction.valueOf(order.substring(comma + 1)), order.substring(0, comma)));
+      }
+      return new PageImpl<>(
+          content, PageRequest.of(json.number, json.size, Sort.by(orders)), json.total);
+    }
+
+    public List<Object> getContent() {
+      return content;
+    }
+
+    public void setContent(List<Object> content) {
+      this.content = content;
+    }
+
+    public int getNumber() {
+      return number;
+    }
+
+    public void setNumber(int number) {
+      this.number = number;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public void setSize(int size) {
+      this.size = size;
+    }
+
+    public long getTotal() {
+      return total;
+    }
+
+    public void setTotal(long total) {
+      this.total = total;
+    }
+
+    public List<String> getOrders() {
+      return orders;
+    }
+
+    public void setOrders(List<String> orders) {
+      this.orders = orders;
+    }
+  }
+
+  /** Strings written once per value and referenced by index */
+  private static final class Dictionary {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> entries = new ArrayList<>();
+
+    int index(String value) {
+      Integer index = indexes.get(value);
+      if (index == null) {
+        if (entries.size() >= 0xFFFF) {
+          throw new IllegalStateException("Dictionary full");
+        }
+        index = entries.size();
+        indexes.put(value, index);
+        entries.add(value);
+      }
+      return index;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      out.writeShort(entries.size());
+      for (String entry : entries) {
+        out.writeUTF(entry);
+      }
+    }
+
+    static String[] readFrom(DataInputStream in) throws IOException {
+      String[] entries = new String[in.readUnsignedShort()];
+      for (int i = 0; i < entries.length; i++) {
+        entries[i] = in.readUTF();
+      }
+      return entries;
+    }
+  }
+}
@@ -0,0 +1,314 @@
+package com.example.flight.search.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * Cache backed by a local Caffeine near-cache (L1) in front of a shared Redis cache (L2). Reads try
+ * L1 first and promote L2 hits into it. Writes and evictions go to both tiers and are broadcast so
+ * other instances drop their stale L1 entries. Redis errors are logged and treated as misses, so an
+ * L2 outage degrades to L1-only caching instead of failing searches. Every write is also reported
+ * to a write listener, which indexes the schedules the value contains.
+ *
+ * <p>With a soft TTL, values are stored in a {@link CacheEnvelope} and loads through {@link
+ * #get(Object, Callable)} never wait on an entry that merely went stale: past the soft TTL the
+ * stale value is served while one background task recomputes it, and before it a hot entry is
+ * refreshed early with probability rising as the soft TTL approaches (XFetch), weighted by how long
+ * the value took to compute. The Redis TTL, counted from the time the value was computed, remains
+ * the hard limit.
+ */
+public class TwoTierCache implements Cache {
+
+  private static final Logger logger = LoggerFactory.getLogger(TwoTierCache.class);
+
+  private final String name;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+  private final Cache remote;
+  private final BiConsumer<String, Object> invalidationPublisher;
+  private final BiConsumer<Object, Object> writeListener;
+  private final MeterRegistry meterRegistry;
+  private final Executor refreshExecutor;
+  private final long softTtlMillis;
+  private final double earlyRefreshBeta;
+  private final Map<Object, Boolean> refreshing = new ConcurrentHashMap<>();
+
+  public TwoTierCache(
+      String name,
+      com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+      Cache remote,
+      BiConsumer<String, Object> invalidationPublisher,
+      BiConsumer<Object, Object> writeListener,
+      MeterRegistry meterRegistry) {
+    this(name, local, remote, invalidationPublisher, writeListener, meterRegistry, null, null, 0);
+  }
+
+  /**
+   * @param softTimeToLive age after which a value is served stale and refreshed, or null to only
+   *     ever expire values hard
+   * @param earlyRefreshBeta XFetch beta; above 1 favours earlier refreshes, 0 disables them
+   */
+  public TwoTierCache(
+      String name,
+      com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+      Cache remote,
+      BiConsumer<String, Object> invalidationPublisher,
+      BiConsumer<Object, Object> writeListener,
+      MeterRegistry meterRegistry,
+      Executor refreshExecutor,
+      Duration softTimeToLive,
+      double earlyRefreshBeta) {
+    this.name = name;
+    this.local = local;
+    this.remote = remote;
+    this.invalidationPublisher = invalidationPublisher;
+    this.writeListener = writeListener;
+    this.meterRegistry = meterRegistry;
+    this.refreshExecutor = refreshExecutor;
+    this.softTtlMillis =
+        refreshExecutor != null && softTimeToLive != null ? softTimeToLive.toMillis() : 0;
+    this.earlyRefreshBeta = earlyRefreshBeta;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return local;
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    Object stored = lookup(key);
+    return stored != null ? new SimpleValueWrapper(unwrap(stored)) : null;
+  }
+
+  /** Stored value or envelope from L1, or from L2 and promoted into L1 */
+  private Object lookup(Object key) {
+    Object value = local.getIfPresent(key);
+    if (value != null) {
+      record("l1", "hit");
+      return value;
+    }
+    record("l1", "miss");
+
+    ValueWrapper wrapper = getRemote(key);
+    if (wrapper != null && wrapper.get() != null) {
+      record("l2", "hit");
+      local.put(key, wrapper.get());
+      return wrapper.get();
+    }
+    record("l2", "miss");
+    return null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper wrapper = get(key);
+    if (wrapper == null) {
+      return null;
+    }
+    Object value = wrapper.get();
+    if (type != null && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Object stored = lookup(key);
+    if (stored != null) {
+      if (stored instanceof CacheEnvelope && softTtlMillis > 0) {
+        refreshIfDue(key, (CacheEnvelope) stored, valueLoader);
+      }
+      return (T) unwrap(stored);
+    }
+
+    try {
+      return load(key, valueLoader);
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    store(key, value, 0);
+  }
+
+  /**
+   * Rewrite the value of an entry in place, e.g. with patched seat counts, keeping the time it was
+   * computed and so its soft and hard expiry. Local copies are dropped rather than rewritten, so
+   * they are reloaded with the remaining time to live.
+   *
+   * @return false when the entry is gone or carries no computation time to keep
+   */
+  public boolean replace(Object key, Object value) {
+    Object stored = local.getIfPresent(key);
+    if (stored == null) {
+      ValueWrapper wrapper = getRemote(key);
+      stored = wrapper != null ? wrapper.get() : null;
+    }
+    if (!(stored instanceof CacheEnvelope) || value == null) {
+      return false;
+    }
+
+    CacheEnvelope envelope = (CacheEnvelope) stored;
+    local.invalidate(key);
+    try {
+      remote.put(
+          key, new CacheEnvelope(value, envelope.getComputedAt(), envelope.getComputeMillis()));
+    } catch (Exception e) {
+      logger.warn("Error rewriting {} in Redis cache {}: {}", key, name, e.getMessage());
+    }
+    invalidationPublisher.accept(name, key);
+    return true;
+  }
+
+  private <T> T load(Object key, Callable<T> valueLoader) throws Exception {
+    long started = System.nanoTime();
+    T value = valueLoader.call();
+    store(key, value, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    return value;
+  }
+
+  private void store(Object key, Object value, long computeMillis) {
+    if (value == null) {
+      return;
+    }
+    Object stored =
+        softTtlMillis > 0
+            ? new CacheEnvelope(value, System.currentTimeMillis(), computeMillis)
+            : value;
+    local.put(key, stored);
+    try {
+      remote.put(key, stored);
+    } catch (Exception e) {
+      logger.warn("Error writing {} to Redis cache {}: {}", key, name, e.getMessage());
+    }
+    writeListener.accept(key, value);
+    invalidationPublisher.accept(name, key);
+  }
+
+  /**
+   * Schedule a background refresh when the entry is past its soft TTL, or when XFetch picks it for
+   * early refresh: now - delta * beta * ln(random) >= soft expiry, with delta the compute time
+   */
+  private void refreshIfDue(Object key, CacheEnvelope envelope, Callable<?> valueLoader) {
+    long now = System.currentTimeMillis();
+    long softExpiry = envelope.getComputedAt() + softTtlMillis;
+
+    if (now >= softExpiry) {
+      if (meterRegistry != null) {
+        meterRegistry.counter("flight.search.cache.stale_served", "cache", name).increment();
+      }
+      refreshAsync(key, valueLoader, "stale");
+      return;
+    }
+
+    double random = 1.0 - ThreadLocalRandom.current().nextDouble(); // (0, 1]
+    double earlyBy = -envelope.getComputeMillis() * earlyRefreshBeta * Math.log(random);
+    if (earlyRefreshBeta > 0 && now + earlyBy >= softExpiry) {
+      refreshAsync(key, valueLoader, "early");
+    }
+  }
+
+  /** Recompute a value in the background, at most once at a time per key */
+  private void refreshAsync(Object key, Callable<?> valueLoader, String reason) {
+    if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(
+          () -> {
+            try {
+              load(key, valueLoader);
+              if (meterRegistry != null) {
+                meterRegistry
+                    .counter("flight.search.cache.refreshes", "cache", name, "reason", reason)
+                    .increment();
+              }
+            } catch (Exception e) {
+              logger.warn("Error refreshing {} in cache {}: {}", key, name, e.getMessage());
+            } finally {
+              refreshing.remove(key);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // Serve the current value and retry on a later read
+      refreshing.remove(key);
+      logger.debug("Refresh of {} in cache {} rejected: {}", key, name, e.getMessage());
+    }
+  }
+
+  static Object unwrap(Object stored) {
+    return stored instanceof CacheEnvelope ? ((CacheEnvelope) stored).getValue() : stored;
+  }
+
+  @Override
+  public void evict(Object key) {
+    local.invalidate(key);
+    try {
+      remote.evict(key);
+    } catch (Exception e) {
+      logger.warn("Error evicting {} from Redis cache {}: {}", key, name, e.getMessage());
+    }
+    invalidationPublisher.accept(name, key);
+  }
+
+  @Override
+  public void clear() {
+    local.invalidateAll();
+    try {
+      remote.clear();
+    } catch (Exception e) {
+      logger.warn("Error clearing Redis cache {}: {}", name, e.getMessage());
+    }
+    invalidationPublisher.accept(name, null);
+  }
+
+  /** Drop a local entry, or every local entry for a null key, on a peer's invalidation */
+  public void invalidateLocal(Object key) {
+    if (key == null) {
+      local.invalidateAll();
+    } else {
+      local.invalidate(key);
+    }
+  }
+
+  private ValueWrapper getRemote(Object key) {
+    try {
+      return remote.get(key);
+    } catch (Exception e) {
+      logger.warn("Error reading {} from Redis cache {}: {}", key, name, e.getMessage());
+      return null;
+    }
+  }
+
+  private void record(String tier, String result) {
+    if (meterRegistry != null) {
+      meterRegistry
+          .counter("flight.search.cache.requests", "cache", name, "tier", tier, "result", result)
+          .increment();
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package com.example.flight.search.config;
+
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Cache manager giving every Redis cache a bounded local near-cache. Entries are weighted by the
+ * number of itineraries they hold, so a handful of large result sets cannot crowd out the hot
+ * routes. Invalidations are published on a Redis channel; each instance drops the affected local
+ * entries when a peer's message arrives.
+ *
+ * <p>Writes also maintain a reverse index in Redis from every schedule id in a cached value to the
+ * entries holding it, so a seat change or any other schedule change only touches the entries that
+ * contain that schedule.
+ */
+public class TwoTierCacheManager implements CacheManager, MessageListener {
+
+  public static final String INVALIDATION_CHANNEL = "flight_search:cache-invalidation";
+
+  private static final Logger logger = LoggerFactory.getLogger(TwoTierCacheManager.class);
+  private static final String SEPARATOR = "\n";
+  private static final String SCHEDULE_INDEX_PREFIX = "flight_search:schedule-keys:";
+
+  private final CacheManager remoteCacheManager;
+  private final StringRedisTemplate stringRedisTemplate;
+  private final MeterRegistry meterRegistry;
+  private final long maxWeight;
+  private final Duration timeToLive;
+  private final Duration indexTimeToLive;
+  private final String instanceId = UUID.randomUUID().toString();
+  private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+  private Executor refreshExecutor;
+  private Duration softTimeToLive;
+  private double earlyRefreshBeta;
+
+  public TwoTierCacheManager(
+      CacheManager remoteCacheManager,
+      StringRedisTemplate stringRedisTemplate,
+      MeterRegistry meterRegistry,
+      long maxWeight,
+      Duration timeToLive,
+      Duration indexTimeToLive) {
+    this.remoteCacheManager = remoteCacheManager;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.meterRegistry = meterRegistry;
+    this.maxWeight = maxWeight;
+    this.timeToLive = timeToLive;
+    this.indexTimeToLive = indexTimeToLive;
+  }
+
+  /**
+   * Serve entries older than the soft TTL stale while the executor refreshes them, and refresh hot
+   * entries early with the given XFetch beta. Applies to caches created afterwards.
+   */
+  public void setSoftExpiry(
+      Executor refreshExecutor, Duration softTimeToLive, double earlyRefreshBeta) {
+    this.refreshExecutor = refreshExecutor;
+    this.softTimeToLive = softTimeToLive;
+    this.earlyRefreshBeta = earlyRefreshBeta;
+  }
+
+  @Override
+  public Cache getCache(String name) {
+    return caches.computeIfAbsent(name, this::createCache);
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return Collections.unmodifiableSet(caches.keySet());
+  }
+
+  private TwoTierCache createCache(String name) {
+    com.github.benmanes.caffeine.cache.Cache<Object, Object> local =
+        Caffeine.newBuilder()
+            .maximumWeight(maxWeight)
+            .weigher((Object key, Object value) -> weigh(value))
+            .expireAfterWrite(timeToLive)
+            .build();
+    return new TwoTierCache(
+        name,
+        local,
+        remoteCacheManager.getCache(name),
+        this::publishInvalidation,
+        (key, value) -> indexSchedules(name, key, value),
+        meterRegistry,
+        refreshExecutor,
+        softTimeToLive,
+        earlyRefreshBeta);
+  }
+
+  /** Weight of a cached value: the number of itineraries it holds, at least one */
+  static int weigh(Object value) {
+    value = TwoTierCache.unwrap(value);
+    if (value instanceof Page) {
+      return Math.max(1, ((Page<?>) value).getNumberOfElements());
+    }
+    if (value instanceof Collection) {
+      return Math.max(1, ((Collection<?>) value).size());
+    }
+    return 1;
+  }
+
+  /** Schedule ids of the itineraries in a cached page or collection */
+  static Set<Long> scheduleIds(Object value) {
+    Iterable<?> items =
+        value instanceof Page
+            ? ((Page<?>) value).getContent()
+            : value instanceof Collection ? (Collection<?>) value : List.of();
+    Set<Long> ids = new HashSet<>();
+    for (Object item : items) {
+      if (item instanceof FlightSearchResult
+          && ((FlightSearchResult) item).getSchedules() != null) {
+        for (ScheduleDto leg : ((FlightSearchResult) item).getSchedules()) {
+          ids.add(leg.getScheduleId());
+        }
+      }
+    }
+    ids.remove(null);
+    return ids;
+  }
+
+  /** Add a written entry to the index of every schedule it contains */
+  private void indexSchedules(String cacheName, Object key, Object value) {
+    Set<Long> ids = scheduleIds(value);
+    if (ids.isEmpty()) {
+      return;
+    }
+
+    byte[] member = (cacheName + SEPARATOR + key).getBytes(StandardCharsets.UTF_8);
+    try {
+      stringRedisTemplate.executePipelined(
+          (RedisCallback<Object>)
+              connection -> {
+                for (Long id : ids) {
+                  byte[] indexKey = (SCHEDULE_INDEX_PREFIX + id).getBytes(StandardCharsets.UTF_8);
+                  connection.setCommands().sAdd(indexKey, member);
+                  // The index outlives none of the entries it points to by more than one TTL
+                  connection.keyCommands().expire(indexKey, indexTimeToLive.getSeconds());
+                }
+                return null;
+              });
+    } catch (Exception e) {
+      logger.warn("Error indexing schedules of {} in cache {}: {}", key, cacheName, e.getMessage());
+    }
+  }
+
+  /**
+   * Apply a schedule's new seat count to every cached entry holding it. Collections are candidate
+   * sets filtered per request, so they are replaced by a copy with the new seat count, keeping the
+   * age of the entry so it still refreshes and expires on time. Pages were already filtered by a
+   * seat count, so they are evicted, as are entries without an age. Either way peers drop their
+   * local copies.
+   */
+  public void updateScheduleAvailability(Long scheduleId, Integer availableSeats) {
+    String indexKey = SCHEDULE_INDEX_PREFIX + scheduleId;
+    Set<String> members;
+    try {
+      members = stringRedisTemplate.opsForSet().members(indexKey);
+    } catch (Exception e) {
+      logger.warn("Error reading cache index of schedule {}: {}", scheduleId, e.getMessage());
+      return;
+    }
+    if (members == null || members.isEmpty()) {
+      return;
+    }
+
+    List<String> stale = new ArrayList<>();
+    int patched = 0;
+    for (String member : members) {
+      String[] parts = member.split(SEPARATOR, 2);
+      if (parts.length != 2) {
+        stale.add(member);
+        continue;
+      }
+
+      TwoTierCache cache = caches.computeIfAbsent(parts[0], this::createCache);
+      Cache.ValueWrapper wrapper = cache.get(parts[1]);
+      Object value = wrapper != null ? wrapper.get() : null;
+      List<FlightSearchResult> copy =
+          value instanceof Collection
+              ? withSeats((Collection<?>) value, scheduleId, availableSeats)
+              : null;
+      if (copy != null && cache.replace(parts[1], copy)) {
+        patched++;
+      } else {
+        if (value != null) {
+          cache.evict(parts[1]);
+        }
+        stale.add(member);
+      }
+    }
+
+    if (!stale.isEmpty()) {
+      try {
+        stringRedisTemplate.opsForSet().remove(indexKey, stale.toArray());
+      } catch (Exception e) {
+        logger.debug("Error pruning cache index of schedule {}: {}", scheduleId, e.getMessage());
+      }
+    }
+    logger.info(
+        "Seat change of schedule {} patched {} and evicted {} cached entries",
+        scheduleId,
+        patched,
+        stale.size());
+  }
+
+  /**
+   * Evict every cached entry holding one of the schedules, e.g. after their times, fares or route
+   * changed, which a seat patch cannot apply. Peers drop their local copies.
+   */
+  public void evictSchedules(Collection<Long> scheduleIds) {
+    int evicted = 0;
+    for (Long scheduleId : scheduleIds) {
+      String indexKey = SCHEDULE_INDEX_PREFIX + scheduleId;
+      Set<String> members;
+      try {
+        members = stringRedisTemplate.opsForSet().members(indexKey);
+      } catch (Exception e) {
+        logger.warn("Error reading cache index of schedule {}: {}", scheduleId, e.getMessage());
+        continue;
+      }
+      if (members == null || members.isEmpty()) {
+        continue;
+      }
+
+      for (String member : members) {
+        String[] parts = member.split(SEPARATOR, 2);
+        if (parts.length == 2) {
+          getCache(parts[0]).evict(parts[1]);
+          evicted++;
+        }
+      }
+      try {
+        stringRedisTemplate.delete(indexKey);
+      } catch (Exception e) {
+        logger.debug("Error deleting cache index of schedule {}: {}", scheduleId, e.getMessage());
+      }
+    }
+    if (evicted > 0) {
+      logger.info("Changes of {} schedules evicted {} cached entries", scheduleIds.size(), evicted);
+    }
+  }
+
+  /**
+   * Copy of cached results with the schedule's seat count changed, or null when they are not search
+   * results or do not hold the schedule. The cached value may be the local instance other searches
+   * are reading, so only the copies of the results and legs holding the schedule are changed.
+   */
+  private static List<FlightSearchResult> withSeats(
+      Collection<?> results, Long scheduleId, Integer seats) {
+    List<FlightSearchResult> copy = new ArrayList<>(results.size());
+    boolean patched = false;
+    for (Object item : results) {
+      if (!(item instanceof FlightSearchResult)) {
+        return null;
+      }
+      FlightSearchResult result = (FlightSearchResult) item;
+      if (result.getSchedules() == null
+          || result.getSchedules().stream().noneMatch(l -> scheduleId.equals(l.getScheduleId()))) {
+        copy.add(result);
+        continue;
+      }
+      List<ScheduleDto> legs = new ArrayList<>(result.getSchedules().size());
+      for (ScheduleDto leg : result.getSchedules()) {
+        legs.add(
+            scheduleId.equals(leg.getScheduleId())
+                ? new ScheduleDto(
+                    leg.getScheduleId(),
+                    leg.getSource(),
+                    leg.getDestination(),
+                    leg.getDepartureTime(),
+                    leg.getArrivalTime(),
+                    seats)
+                : leg);
+      }
+      FlightSearchResult patchedResult =
+          new FlightSearchResult(
+              result.getFlightNumber(),
+              result.getAirline(),
+              result.getDepartureTime(),
+              result.getArrivalTime(),
+              result.getPrice(),
+              result.getNumberOfHops(),
+              legs);
+      patchedResult.setUuid(result.getUuid());
+      copy.add(patchedResult);
+      patched = true;
+    }
+    return patched ? copy : null;
+  }
+
+  private void publishInvalidation(String cacheName, Object key) {
+    try {
+      String payload =
+          String.join(SEPARATOR, instanceId, cacheName, key != null ? key.toString() : "");
+      stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, payload);
+    } catch (Exception e) {
+      logger.warn("Error publishing cache invalidation: {}", e.getMessage());
+    }
+  }
+
+  /** Drop the local entries a peer instance invalidated */
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String[] parts = new String(message.getBody()).split(SEPARATOR, -1);
+    if (parts.length != 3 || instanceId.equals(parts[0])) {
+      return;
+    }
+
+    TwoTierCache cache = caches.get(parts[1]);
+    if (cache != null) {
+      // A cleared cache moved to a new generation, which must be seen before L1 refills from L2
+      if (parts[2].isEmpty() && remoteCacheManager instanceof GenerationalRedisCacheManager) {
+        ((GenerationalRedisCacheManager) remoteCacheManager).refreshGeneration(parts[1]);
+      }
+      cache.invalidateLocal(parts[2].isEmpty() ? null : parts[2]);
+      logger.debug("Invalidated local cache {} entry {}", parts[1], parts[2]);
+    }
+  }
+}
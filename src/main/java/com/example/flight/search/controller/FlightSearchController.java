@@ -2,6 +2,8 @@ package com.example.flight.search.controller;
 
 import com.example.flight.search.dto.FlightSearchRequest;
 import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.SearchMode;
+import com.example.flight.search.service.CacheWarmupService;
 import com.example.flight.search.service.FlightSearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -23,13 +25,17 @@ import org.springframework.web.bind.annotation.*;
 @RestController
 @RequestMapping("/search")
 @Tag(name = "Flight Search API", description = "High-performance flight search operations")
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = "X-Continuation-Token")
 public class FlightSearchController {
 
   private static final Logger logger = LoggerFactory.getLogger(FlightSearchController.class);
+  private static final String CONTINUATION_TOKEN_HEADER = "X-Continuation-Token";
 
   @Autowired private FlightSearchService flightSearchService;
 
+  @Autowired(required = false)
+  private CacheWarmupService cacheWarmupService;
+
   @Operation(
       summary = "Search for flights",
       description =
@@ -37,7 +43,12 @@ public class FlightSearchController {
       tags = {"Flight Search"})
   @ApiResponses(
       value = {
-        @ApiResponse(responseCode = "200", description = "Flights found successfully"),
+        @ApiResponse(
+            responseCode = "200",
+            description =
+                "Flights found successfully. With top-K search or a continuation token, "
+                    + "totalElements is a lower bound on the number of matching flights; "
+                    + "use last or the X-Continuation-Token header to find the next page"),
         @ApiResponse(responseCode = "400", description = "Invalid search parameters"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
       })
@@ -113,7 +124,18 @@ public class FlightSearchController {
           Integer maxHops,
       @Parameter(description = "Preferred airline (partial match supported)", example = "Air India")
           @RequestParam(required = false)
-          String airline) {
+          String airline,
+      @Parameter(
+              description =
+                  "Search engine: ROUTE (route enumeration + validation), CSA (connection scan) or RAPTOR (Pareto-optimal rounds). Defaults to the configured engine",
+              example = "CSA")
+          @RequestParam(required = false)
+          SearchMode searchMode,
+      @Parameter(
+              description =
+                  "Continuation token from the X-Continuation-Token header of the previous page. Fetches the page after it without recomputing the pages before")
+          @RequestParam(required = false)
+          String continuationToken) {
     // Determine the actual departure time to use
     LocalDateTime actualTime;
     try {
@@ -151,11 +173,17 @@ public class FlightSearchController {
       request.setMaxPrice(maxPrice);
       request.setMaxHops(maxHops);
       request.setAirline(airline);
+      request.setSearchMode(searchMode);
+      request.setContinuationToken(continuationToken);
 
+      recordSearch(request);
       Page<FlightSearchResult> results = flightSearchService.searchFlights(request);
 
       logger.info("Found {} flights for search criteria", results.getTotalElements());
-      return ResponseEntity.ok(results);
+      return withContinuationToken(request, results);
+    } catch (IllegalArgumentException e) {
+      logger.warn("Invalid request parameters: {}", e.getMessage());
+      return ResponseEntity.badRequest().build();
     } catch (Exception e) {
       logger.error("Error processing flight search request", e);
       return ResponseEntity.internalServerError().build();
@@ -179,7 +207,10 @@ public class FlightSearchController {
 
   @Operation(
       summary = "Search flights with POST",
-      description = "Alternative POST endpoint for complex flight search")
+      description =
+          "Alternative POST endpoint for complex flight search. With top-K search or a "
+              + "continuation token, totalElements is a lower bound on the number of matching "
+              + "flights")
   @PostMapping
   public ResponseEntity<Page<FlightSearchResult>> searchFlightsPost(
       @Valid @RequestBody FlightSearchRequest request) {
@@ -194,10 +225,34 @@ public class FlightSearchController {
     request.setSource(request.getSource().toUpperCase());
     request.setDestination(request.getDestination().toUpperCase());
 
-    Page<FlightSearchResult> results = flightSearchService.searchFlights(request);
+    try {
+      recordSearch(request);
+      Page<FlightSearchResult> results = flightSearchService.searchFlights(request);
+
+      logger.info("Found {} flights for POST search criteria", results.getTotalElements());
+      return withContinuationToken(request, results);
+    } catch (IllegalArgumentException e) {
+      // e.g. a malformed continuation token or one issued for another search
+      logger.warn("Invalid POST request parameters: {}", e.getMessage());
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  /** Count the search towards its route's popularity, which drives cache warm-up */
+  private void recordSearch(FlightSearchRequest request) {
+    if (cacheWarmupService != null) {
+      cacheWarmupService.recordSearch(request);
+    }
+  }
 
-    logger.info("Found {} flights for POST search criteria", results.getTotalElements());
-    return ResponseEntity.ok(results);
+  /** Respond with the page, exposing the token for the next page when there is one */
+  private ResponseEntity<Page<FlightSearchResult>> withContinuationToken(
+      FlightSearchRequest request, Page<FlightSearchResult> results) {
+    String nextToken = flightSearchService.nextContinuationToken(request, results);
+    if (nextToken == null) {
+      return ResponseEntity.ok(results);
+    }
+    return ResponseEntity.ok().header(CONTINUATION_TOKEN_HEADER, nextToken).body(results);
   }
 
   @Operation(
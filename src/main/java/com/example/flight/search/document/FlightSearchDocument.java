@@ -9,7 +9,8 @@ import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 
-@Document(indexName = "flight_search")
+// An alias of the live versioned index, created by FlightSearchIndexManager
+@Document(indexName = "flight_search", createIndex = false)
 public class FlightSearchDocument {
 
   @Id private String id; // Combined flight_id + schedule_id
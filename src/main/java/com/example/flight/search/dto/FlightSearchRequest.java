@@ -62,6 +62,14 @@ public class FlightSearchRequest {
   @Schema(description = "Preferred airline", example = "Air India")
   private String airline;
 
+  @Schema(description = "Search engine to use; defaults to the configured engine", example = "CSA")
+  private SearchMode searchMode;
+
+  @Schema(
+      description =
+          "Opaque token from the X-Continuation-Token header of the previous page; fetches the page after it")
+  private String continuationToken;
+
   // Constructors
   public FlightSearchRequest() {}
 
@@ -194,4 +202,20 @@ public class FlightSearchRequest {
   public void setAirline(String airline) {
     this.airline = airline;
   }
+
+  public SearchMode getSearchMode() {
+    return searchMode;
+  }
+
+  public void setSearchMode(SearchMode searchMode) {
+    this.searchMode = searchMode;
+  }
+
+  public String getContinuationToken() {
+    return continuationToken;
+  }
+
+  public void setContinuationToken(String continuationToken) {
+    this.continuationToken = continuationToken;
+  }
 }
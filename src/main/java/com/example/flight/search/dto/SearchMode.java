@@ -0,0 +1,15 @@
+package com.example.flight.search.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Itinerary search engine")
+public enum SearchMode {
+  /** Enumerate airport routes per hop count, then validate schedule combinations */
+  ROUTE,
+
+  /** Single Connection Scan over departure-sorted connections for all hop counts */
+  CSA,
+
+  /** Round-based search keeping only Pareto-optimal itineraries (arrival, hops, fare) */
+  RAPTOR
+}
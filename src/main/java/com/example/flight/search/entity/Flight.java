@@ -1,10 +1,13 @@
 package com.example.flight.search.entity;
 
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "flights")
+@Table(
+    name = "flights",
+    indexes = {@Index(name = "idx_flight_updated_at", columnList = "updated_at, id")})
 public class Flight {
 
   @Id
@@ -29,6 +32,15 @@ public class Flight {
   @OneToMany(mappedBy = "flight", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
   private List<Seat> seats;
 
+  // Maintained by MySQL on every insert and update, whichever service writes the row
+  @Column(
+      name = "updated_at",
+      insertable = false,
+      updatable = false,
+      columnDefinition =
+          "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+  private LocalDateTime updatedAt;
+
   // Constructors
   public Flight() {}
 
@@ -94,4 +106,8 @@ public class Flight {
   public void setSeats(List<Seat> seats) {
     this.seats = seats;
   }
+
+  public LocalDateTime getUpdatedAt() {
+    return updatedAt;
+  }
 }
@@ -13,7 +13,8 @@ import java.util.List;
           name = "idx_schedule_source_dest_time",
           columnList = "source, destination, departure_time"),
       @Index(name = "idx_schedule_departure_time", columnList = "departure_time"),
-      @Index(name = "idx_schedule_available_seats", columnList = "available_seats")
+      @Index(name = "idx_schedule_available_seats", columnList = "available_seats"),
+      @Index(name = "idx_schedule_updated_at", columnList = "updated_at, id")
     })
 public class Schedule {
 
@@ -46,6 +47,15 @@ public class Schedule {
   @OneToMany(mappedBy = "schedule", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
   private List<Hop> hops;
 
+  // Maintained by MySQL on every insert and update, whichever service writes the row
+  @Column(
+      name = "updated_at",
+      insertable = false,
+      updatable = false,
+      columnDefinition =
+          "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+  private LocalDateTime updatedAt;
+
   // Constructors
   public Schedule() {}
 
@@ -138,4 +148,8 @@ public class Schedule {
   public void setHops(List<Hop> hops) {
     this.hops = hops;
   }
+
+  public LocalDateTime getUpdatedAt() {
+    return updatedAt;
+  }
 }
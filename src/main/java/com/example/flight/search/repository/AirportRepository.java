@@ -54,4 +54,18 @@ public interface AirportRepository extends Neo4jRepository<Airport, String> {
       @Param("destination") String destination,
       @Param("hops") int hops,
       @Param("maxResults") int maxResults);
+
+  /** Add the route between two airports, and the airports themselves, unless it exists */
+  @Query(
+      "MERGE (start:Airport {code: $source}) "
+          + "MERGE (end:Airport {code: $destination}) "
+          + "MERGE (start)-[r:CONNECTED_TO]->(end) "
+          + "ON CREATE SET r.airline = $airline, r.flightNumber = $flightNumber, "
+          + "r.avgPrice = $avgPrice, r.frequency = 1")
+  void mergeRoute(
+      @Param("source") String source,
+      @Param("destination") String destination,
+      @Param("airline") String airline,
+      @Param("flightNumber") String flightNumber,
+      @Param("avgPrice") Double avgPrice);
 }
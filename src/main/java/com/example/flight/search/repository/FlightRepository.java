@@ -1,8 +1,10 @@
 package com.example.flight.search.repository;
 
 import com.example.flight.search.entity.Flight;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -34,4 +36,15 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
       @Param("source") String source,
       @Param("destination") String destination,
       @Param("requiredSeats") Integer requiredSeats);
+
+  /** Flights changed after a (updatedAt, id) position, as id and updatedAt, in change order */
+  @Query(
+      "SELECT f.id, f.updatedAt FROM Flight f "
+          + "WHERE f.updatedAt > :since OR (f.updatedAt = :since AND f.id > :afterId) "
+          + "ORDER BY f.updatedAt ASC, f.id ASC")
+  List<Object[]> findChangedSince(
+      @Param("since") LocalDateTime since, @Param("afterId") Long afterId, Pageable pageable);
+
+  @Query("SELECT MAX(f.updatedAt) FROM Flight f")
+  LocalDateTime findLatestUpdatedAt();
 }
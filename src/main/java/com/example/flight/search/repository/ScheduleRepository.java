@@ -2,7 +2,9 @@ package com.example.flight.search.repository;
 
 import com.example.flight.search.entity.Schedule;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,7 +14,7 @@ import org.springframework.stereotype.Repository;
 public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
 
   @Query(
-      "SELECT s FROM Schedule s "
+      "SELECT s FROM Schedule s JOIN FETCH s.flight "
           + "WHERE s.source = :source "
           + "AND s.destination = :destination "
           + "AND s.departureTime >= :departureTime "
@@ -25,7 +27,7 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
       @Param("requiredSeats") Integer requiredSeats);
 
   @Query(
-      "SELECT s FROM Schedule s "
+      "SELECT s FROM Schedule s JOIN FETCH s.flight "
           + "WHERE s.source = :source "
           + "AND s.departureTime >= :fromTime "
           + "AND s.departureTime <= :toTime "
@@ -72,4 +74,59 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
 
   @Query("SELECT DISTINCT s.destination FROM Schedule s WHERE s.source = :source")
   List<String> findDestinationsBySource(@Param("source") String source);
+
+  @Query("SELECT DISTINCT s.source, s.destination FROM Schedule s")
+  List<Object[]> findDistinctSegments();
+
+  @Query(
+      "SELECT s FROM Schedule s JOIN FETCH s.flight "
+          + "WHERE s.departureTime >= :fromTime "
+          + "AND s.departureTime < :toTime "
+          + "ORDER BY s.departureTime ASC")
+  List<Schedule> findSchedulesWithFlightDepartingBetween(
+      @Param("fromTime") LocalDateTime fromTime, @Param("toTime") LocalDateTime toTime);
+
+  @Query(
+      "SELECT s FROM Schedule s JOIN FETCH s.flight "
+          + "WHERE s.source IN :sources "
+          + "AND s.destination IN :destinations "
+          + "AND s.departureTime >= :fromTime "
+          + "AND s.departureTime <= :toTime "
+          + "AND s.availableSeats >= :requiredSeats "
+          + "ORDER BY s.departureTime ASC")
+  List<Schedule> findDepartureSchedulesForSegments(
+      @Param("sources") Collection<String> sources,
+      @Param("destinations") Collection<String> destinations,
+      @Param("fromTime") LocalDateTime fromTime,
+      @Param("toTime") LocalDateTime toTime,
+      @Param("requiredSeats") Integer requiredSeats);
+
+  @Query("SELECT s FROM Schedule s JOIN FETCH s.flight WHERE s.id IN :ids")
+  List<Schedule> findAllWithFlightByIdIn(@Param("ids") Collection<Long> ids);
+
+  /** Keyset page of schedule ids, for walking the whole table in chunks without offsets */
+  @Query("SELECT s.id FROM Schedule s WHERE s.id > :afterId ORDER BY s.id ASC")
+  List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+  /** Schedules changed after a (updatedAt, id) position, as id and updatedAt, in change order */
+  @Query(
+      "SELECT s.id, s.updatedAt FROM Schedule s "
+          + "WHERE s.updatedAt > :since OR (s.updatedAt = :since AND s.id > :afterId) "
+          + "ORDER BY s.updatedAt ASC, s.id ASC")
+  List<Object[]> findChangedSince(
+      @Param("since") LocalDateTime since, @Param("afterId") Long afterId, Pageable pageable);
+
+  @Query("SELECT MAX(s.updatedAt) FROM Schedule s")
+  LocalDateTime findLatestUpdatedAt();
+
+  @Query("SELECT s.id FROM Schedule s WHERE s.flight.id IN :flightIds")
+  List<Long> findIdsByFlightIdIn(@Param("flightIds") Collection<Long> flightIds);
+
+  @Query(
+      "SELECT DISTINCT s FROM Schedule s JOIN FETCH s.flight LEFT JOIN FETCH s.hops "
+          + "WHERE s.id IN :ids")
+  List<Schedule> findAllWithFlightAndHopsByIdIn(@Param("ids") Collection<Long> ids);
+
+  @Query("SELECT s.id, s.availableSeats FROM Schedule s WHERE s.id IN :ids")
+  List<Object[]> findAvailableSeatsByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,460 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.graph.Airport;
+import com.example.flight.search.graph.FlightRoute;
+import com.example.flight.search.repository.AirportRepository;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resident copy of the airport route graph. Airport codes are interned to int ids and outgoing
+ * edges are stored in compressed sparse row form, so enumerating the simple routes between two
+ * airports is a depth-first walk over int arrays with a bitset of visited airports, without any
+ * Neo4j or database round trip. Built from the CONNECTED_TO edges in Neo4j, or from the distinct
+ * segments of the schedule table when the graph is unavailable or empty.
+ */
+@Service
+public class AirportGraph {
+
+  private static final Logger logger = LoggerFactory.getLogger(AirportGraph.class);
+  private static final double EARTH_RADIUS_KM = 6371.0;
+
+  @Autowired(required = false)
+  private AirportRepository airportRepository;
+
+  @Autowired private ScheduleRepository scheduleRepository;
+
+  @Autowired(required = false)
+  private ApplicationEventPublisher eventPublisher;
+
+  // Fields with @Value are initialized to their defaults too, for instances built without Spring
+  @Value("${flight.search.airport-graph.enabled:true}")
+  private boolean enabled = true;
+
+  @Value("${flight.search.route-pruning.circuity-factor:0}")
+  private double circuityFactor;
+
+  @Value("${flight.search.route-pruning.candidates-per-result:10}")
+  private int candidatesPerResult = 10;
+
+  private volatile Snapshot snapshot;
+
+  /** Reload the route graph, atomically swap in the new snapshot and announce the change */
+  @Scheduled(
+      initialDelayString = "${flight.search.airport-graph.initial-delay-ms:0}",
+      fixedDelayString = "${flight.search.airport-graph.refresh-ms:300000}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+
+    try {
+      long started = System.currentTimeMillis();
+      Map<String, double[]> coordinates = new HashMap<>();
+      Map<String, Map<String, RouteEdge>> edges = loadGraphEdges(coordinates);
+      String origin = "Neo4j";
+      if (edges.isEmpty()) {
+        edges = loadScheduleEdges();
+        origin = "schedules";
+      }
+      Snapshot previous = snapshot;
+      snapshot = Snapshot.build(edges, coordinates);
+      logger.info(
+          "Airport graph refreshed from {} with {} airports and {} routes in {} ms",
+          origin,
+          snapshot.size(),
+          snapshot.targets.length,
+          System.currentTimeMillis() - started);
+
+      if (eventPublisher != null) {
+        eventPublisher.publishEvent(new AirportGraphRefreshedEvent(this, previous, snapshot));
+      }
+    } catch (Exception e) {
+      logger.warn("Error refreshing airport graph: {}", e.getMessage());
+    }
+  }
+
+  public boolean isReady() {
+    return snapshot != null;
+  }
+
+  Snapshot snapshot() {
+    return snapshot;
+  }
+
+  /** Whether the current snapshot has a direct route from source to destination */
+  public boolean hasRoute(String source, String destination) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return false;
+    }
+    int from = current.idOf(source);
+    int to = current.idOf(destination);
+    if (from < 0 || to < 0) {
+      return false;
+    }
+    for (int e = current.firstEdge(from); e < current.endEdge(from); e++) {
+      if (current.target(e) == to) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Edges from Neo4j; the coordinates of every airport that has them are put in the given map */
+  private Map<String, Map<String, RouteEdge>> loadGraphEdges(Map<String, double[]> coordinates) {
+    Map<String, Map<String, RouteEdge>> edges = new HashMap<>();
+    if (airportRepository == null) {
+      return edges;
+    }
+
+    try {
+      for (Airport airport : airportRepository.findAll()) {
+        Map<String, RouteEdge> targets =
+            edges.computeIfAbsent(airport.getCode(), k -> new LinkedHashMap<>());
+        if (airport.getLatitude() != null && airport.getLongitude() != null) {
+          coordinates.put(
+              airport.getCode(), new double[] {airport.getLatitude(), airport.getLongitude()});
+        }
+        if (airport.getRoutes() == null) {
+          continue;
+        }
+        for (FlightRoute route : airport.getRoutes()) {
+          if (route.getDestination() != null) {
+            // Several airlines may fly a pair; the route is as short and cheap as the best
+            targets.merge(route.getDestination().getCode(), RouteEdge.of(route), RouteEdge::min);
+          }
+        }
+      }
+    } catch (Exception e) {
+      logger.warn("Cannot read the route graph from Neo4j: {}", e.getMessage());
+      edges.clear();
+    }
+    // Airports without a single route are no graph at all
+    return edges.values().stream().allMatch(Map::isEmpty) ? new HashMap<>() : edges;
+  }
+
+  private Map<String, Map<String, RouteEdge>> loadScheduleEdges() {
+    Map<String, Map<String, RouteEdge>> edges = new HashMap<>();
+    for (Object[] segment : scheduleRepository.findDistinctSegments()) {
+      String source = (String) segment[0];
+      edges
+          .computeIfAbsent(source, k -> new LinkedHashMap<>())
+          .put((String) segment[1], RouteEdge.UNKNOWN);
+    }
+    return edges;
+  }
+
+  /**
+   * Non-circular routes from source to destination with exactly the given number of intermediate
+   * stops, as airport codes from source to destination, at most maxResults of them. Empty when
+   * either airport is not in the graph.
+   *
+   * <p>When both airports have coordinates, routes whose great-circle length exceeds the circuity
+   * factor times the direct distance are pruned during the walk, and the routes are returned
+   * shortest first.
+   */
+  public List<List<String>> findRoutes(
+      String source, String destination, int hops, int maxResults) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+
+    Integer from = current.ids.get(source);
+    Integer to = current.ids.get(destination);
+    if (from == null || to == null || from.equals(to) || hops < 0) {
+      return Collections.emptyList();
+    }
+
+    double direct = current.greatCircleKm(from, to);
+    double maxDistance =
+        circuityFactor > 0 && !Double.isNaN(direct) ? circuityFactor * direct : Double.NaN;
+    boolean ordered = !Double.isNaN(direct);
+    // Keep walking past maxResults when the routes get ordered, so the shortest ones survive
+    int limit = ordered ? maxResults * Math.max(1, candidatesPerResult) : maxResults;
+
+    List<ScoredRoute> routes = new ArrayList<>();
+    int[] path = new int[hops + 2];
+    path[0] = from;
+    BitSet visited = new BitSet(current.size());
+    visited.set(from);
+    current.walk(path, 1, to, 0, maxDistance, visited, routes, limit);
+
+    if (ordered) {
+      routes.sort(Comparator.comparingDouble(route -> route.distance));
+    }
+    List<List<String>> result = new ArrayList<>(Math.min(routes.size(), maxResults));
+    for (int i = 0; i < routes.size() && i < maxResults; i++) {
+      result.add(routes.get(i).airports);
+    }
+    return result;
+  }
+
+  /** A route with its great-circle length, zero when unknown */
+  private static final class ScoredRoute {
+
+    private final List<String> airports;
+    private final double distance;
+
+    private ScoredRoute(List<String> airports, double distance) {
+      this.airports = airports;
+      this.distance = distance;
+    }
+  }
+
+  /** Great-circle distance in kilometres between two coordinates in degrees (haversine) */
+  static double greatCircleKm(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a =
+        Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2)
+                * Math.sin(dLon / 2);
+    return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /** Distance and average price of the best service on a route; zero when unknown */
+  static final class RouteEdge {
+
+    static final RouteEdge UNKNOWN = new RouteEdge(0, 0);
+
+    final int distance;
+    final double avgPrice;
+
+    RouteEdge(int distance, double avgPrice) {
+      this.distance = distance;
+      this.avgPrice = avgPrice;
+    }
+
+    static RouteEdge of(FlightRoute route) {
+      return new RouteEdge(
+          route.getDistance() != null ? route.getDistance() : 0,
+          route.getAvgPrice() != null ? route.getAvgPrice().doubleValue() : 0);
+    }
+
+    /** The smaller known distance and price of two services on the same route */
+    static RouteEdge min(RouteEdge a, RouteEdge b) {
+      int distance =
+          a.distance == 0 || b.distance == 0
+              ? Math.max(a.distance, b.distance)
+              : Math.min(a.distance, b.distance);
+      double avgPrice =
+          a.avgPrice == 0 || b.avgPrice == 0
+              ? Math.max(a.avgPrice, b.avgPrice)
+              : Math.min(a.avgPrice, b.avgPrice);
+      return new RouteEdge(distance, avgPrice);
+    }
+  }
+
+  /** Immutable view of the route graph; replaced wholesale on every refresh */
+  static final class Snapshot {
+
+    private final String[] codes;
+    private final Map<String, Integer> ids;
+    // Edges of airport i are targets[offsets[i]] .. targets[offsets[i + 1] - 1]
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] distances;
+    private final double[] avgPrices;
+    // NaN for airports without coordinates
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private Snapshot(
+        String[] codes,
+        Map<String, Integer> ids,
+        int[] offsets,
+        int[] targets,
+        int[] distances,
+        double[] avgPrices,
+        double[] latitudes,
+        double[] longitudes) {
+      this.codes = codes;
+      this.ids = ids;
+      this.offsets = offsets;
+      this.targets = targets;
+      this.distances = distances;
+      this.avgPrices = avgPrices;
+      this.latitudes = latitudes;
+      this.longitudes = longitudes;
+    }
+
+    static Snapshot build(Map<String, Map<String, RouteEdge>> edges) {
+      return build(edges, Collections.emptyMap());
+    }
+
+    /** Snapshot of the edges, with coordinates as {latitude, longitude} by airport code */
+    static Snapshot build(
+        Map<String, Map<String, RouteEdge>> edges, Map<String, double[]> coordinates) {
+      Map<String, Integer> ids = new HashMap<>();
+      List<String> codes = new ArrayList<>();
+      for (Map.Entry<String, Map<String, RouteEdge>> entry : edges.entrySet()) {
+        intern(entry.getKey(), ids, codes);
+        for (String target : entry.getValue().keySet()) {
+          intern(target, ids, codes);
+        }
+      }
+
+      int[] offsets = new int[codes.size() + 1];
+      List<Integer> targets = new ArrayList<>();
+      List<RouteEdge> attributes = new ArrayList<>();
+      for (int id = 0; id < codes.size(); id++) {
+        offsets[id] = targets.size();
+        Map<String, RouteEdge> outgoing = edges.getOrDefault(codes.get(id), Collections.emptyMap());
+        for (Map.Entry<String, RouteEdge> edge : outgoing.entrySet()) {
+          if (edge.getKey() != null && !edge.getKey().equals(codes.get(id))) {
+            targets.add(ids.get(edge.getKey()));
+            attributes.add(edge.getValue());
+          }
+        }
+      }
+      offsets[codes.size()] = targets.size();
+
+      int[] targetIds = new int[targets.size()];
+      int[] distances = new int[targets.size()];
+      double[] avgPrices = new double[targets.size()];
+      for (int e = 0; e < targetIds.length; e++) {
+        targetIds[e] = targets.get(e);
+        distances[e] = attributes.get(e).distance;
+        avgPrices[e] = attributes.get(e).avgPrice;
+      }
+
+      double[] latitudes = new double[codes.size()];
+      double[] longitudes = new double[codes.size()];
+      for (int id = 0; id < codes.size(); id++) {
+        double[] position = coordinates.get(codes.get(id));
+        latitudes[id] = position != null ? position[0] : Double.NaN;
+        longitudes[id] = position != null ? position[1] : Double.NaN;
+      }
+
+      return new Snapshot(
+          codes.toArray(new String[0]),
+          ids,
+          offsets,
+          targetIds,
+          distances,
+          avgPrices,
+          latitudes,
+          longitudes);
+    }
+
+    private static void intern(String code, Map<String, Integer> ids, List<String> codes) {
+      if (code != null && !ids.containsKey(code)) {
+        ids.put(code, codes.size());
+        codes.add(code);
+      }
+    }
+
+    int size() {
+      return codes.length;
+    }
+
+    /** Id of an airport code, or -1 when the airport is not in the graph */
+    int idOf(String code) {
+      Integer id = ids.get(code);
+      return id != null ? id : -1;
+    }
+
+    String code(int id) {
+      return codes[id];
+    }
+
+    int firstEdge(int id) {
+      return offsets[id];
+    }
+
+    int endEdge(int id) {
+      return offsets[id + 1];
+    }
+
+    int target(int edge) {
+      return targets[edge];
+    }
+
+    int distance(int edge) {
+      return distances[edge];
+    }
+
+    double avgPrice(int edge) {
+      return avgPrices[edge];
+    }
+
+    /** Great-circle distance between two airports, NaN when either has no coordinates */
+    double greatCircleKm(int from, int to) {
+      if (Double.isNaN(latitudes[from]) || Double.isNaN(latitudes[to])) {
+        return Double.NaN;
+      }
+      return AirportGraph.greatCircleKm(
+          latitudes[from], longitudes[from], latitudes[to], longitudes[to]);
+    }
+
+    /**
+     * Extend path[0 .. depth - 1], travelled km long so far, one edge at a time until it reaches
+     * the destination. With a maximum distance, a partial route is dropped as soon as its length
+     * plus the great-circle distance still to go exceeds it.
+     */
+    private void walk(
+        int[] path,
+        int depth,
+        int destination,
+        double travelled,
+        double maxDistance,
+        BitSet visited,
+        List<ScoredRoute> routes,
+        int maxResults) {
+      int current = path[depth - 1];
+      boolean last = depth == path.length - 1;
+
+      for (int e = offsets[current]; e < offsets[current + 1] && routes.size() < maxResults; e++) {
+        int next = targets[e];
+        if (last ? next != destination : next == destination || visited.get(next)) {
+          continue;
+        }
+
+        double leg = greatCircleKm(current, next);
+        double length = Double.isNaN(leg) ? travelled : travelled + leg;
+        if (!Double.isNaN(maxDistance)) {
+          double remaining = last ? 0 : greatCircleKm(next, destination);
+          if (!Double.isNaN(remaining) && length + remaining > maxDistance) {
+            continue;
+          }
+        }
+
+        path[depth] = next;
+        if (last) {
+          routes.add(new ScoredRoute(toCodes(path, path.length), length));
+        } else {
+          visited.set(next);
+          walk(path, depth + 1, destination, length, maxDistance, visited, routes, maxResults);
+          visited.clear(next);
+        }
+      }
+    }
+
+    /** Airport codes of the first length ids of a path */
+    List<String> toCodes(int[] path, int length) {
+      List<String> route = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        route.add(codes[path[i]]);
+      }
+      return route;
+    }
+  }
+}
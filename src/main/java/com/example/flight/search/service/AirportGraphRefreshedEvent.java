@@ -0,0 +1,26 @@
+package com.example.flight.search.service;
+
+import org.springframework.context.ApplicationEvent;
+
+/** Published after {@link AirportGraph} swapped in a new snapshot of the route graph */
+public class AirportGraphRefreshedEvent extends ApplicationEvent {
+
+  private final transient AirportGraph.Snapshot previous;
+  private final transient AirportGraph.Snapshot current;
+
+  AirportGraphRefreshedEvent(
+      AirportGraph source, AirportGraph.Snapshot previous, AirportGraph.Snapshot current) {
+    super(source);
+    this.previous = previous;
+    this.current = current;
+  }
+
+  /** The snapshot that was replaced, or null after the first load */
+  AirportGraph.Snapshot getPrevious() {
+    return previous;
+  }
+
+  AirportGraph.Snapshot getCurrent() {
+    return current;
+  }
+}
@@ -0,0 +1,218 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.config.TwoTierCacheManager;
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Coalesces seat count changes per schedule and writes them as bulk partial updates. A booking
+ * spike updates the same schedule many times a second; only the latest count submitted within a
+ * flush window is written, as a partial update of the availableSeats field without reading the
+ * document first.
+ *
+ * <p>At most max-pending schedules wait for a flush. Updates of further schedules are dropped and
+ * counted: the seat counts are already in MySQL, so the incremental sync of {@link
+ * ChangeDataSyncService} still brings them into the index.
+ */
+@Service
+public class AvailabilityUpdateCoalescer {
+
+  private static final Logger logger = LoggerFactory.getLogger(AvailabilityUpdateCoalescer.class);
+  private static final String METRIC = "flight.search.availability.updates";
+
+  @Autowired private ElasticsearchOperations elasticsearchOperations;
+
+  @Autowired private ScheduleRepository scheduleRepository;
+
+  @Autowired(required = false)
+  private FlightSearchIndexManager flightSearchIndexManager;
+
+  @Autowired(required = false)
+  private SegmentAvailabilityCache segmentAvailabilityCache;
+
+  @Autowired(required = false)
+  private TwoTierCacheManager cacheManager;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  @Value("${flight.search.availability.max-pending:10000}")
+  private int maxPending;
+
+  @Value("${flight.search.availability.batch-size:500}")
+  private int batchSize;
+
+  private final Map<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushing = new AtomicBoolean();
+
+  /** Latest seat count submitted for a schedule */
+  private static final class PendingUpdate {
+    private final Long flightId;
+    private final Long scheduleId;
+    private final Integer availableSeats;
+
+    private PendingUpdate(Long flightId, Long scheduleId, Integer availableSeats) {
+      this.flightId = flightId;
+      this.scheduleId = scheduleId;
+      this.availableSeats = availableSeats;
+    }
+
+    private String documentId() {
+      return flightId + "_" + scheduleId;
+    }
+  }
+
+  @PostConstruct
+  void registerMetrics() {
+    if (meterRegistry != null) {
+      Gauge.builder("flight.search.availability.pending", pending, Map::size)
+          .description("Schedules whose seat count waits for the next flush")
+          .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Queue the new seat count of a schedule, replacing one still waiting for it
+   *
+   * @return false when the update was dropped because too many schedules are pending
+   */
+  public boolean submit(Long flightId, Long scheduleId, Integer availableSeats) {
+    PendingUpdate update = new PendingUpdate(flightId, scheduleId, availableSeats);
+    if (pending.size() >= maxPending && !pending.containsKey(scheduleId)) {
+      count("dropped", 1);
+      logger.warn("Dropped seat update of schedule {}: {} pending", scheduleId, pending.size());
+      return false;
+    }
+    if (pending.put(scheduleId, update) != null) {
+      count("merged", 1);
+    }
+    return true;
+  }
+
+  /** Write every pending update with bulk partial updates of at most batch-size documents */
+  @Scheduled(fixedDelayString = "${flight.search.availability.flush-ms:200}")
+  public void flush() {
+    if (pending.isEmpty() || !flushing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      List<PendingUpdate> batch = new ArrayList<>();
+      Iterator<Long> scheduleIds = pending.keySet().iterator();
+      while (scheduleIds.hasNext()) {
+        // Removing takes the latest value; later submits wait for the next flush
+        PendingUpdate update = pending.remove(scheduleIds.next());
+        if (update == null) {
+          continue;
+        }
+        batch.add(update);
+        if (batch.size() >= Math.max(1, batchSize)) {
+          write(batch);
+          batch = new ArrayList<>();
+        }
+      }
+      if (!batch.isEmpty()) {
+        write(batch);
+      }
+    } finally {
+      flushing.set(false);
+    }
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    flush();
+  }
+
+  private void write(List<PendingUpdate> batch) {
+    // A rebuild running now may already have copied the old seat counts
+    if (flightSearchIndexManager != null) {
+      batch.forEach(update -> flightSearchIndexManager.recordChange(update.scheduleId));
+    }
+
+    List<UpdateQuery> queries = new ArrayList<>(batch.size());
+    for (PendingUpdate update : batch) {
+      queries.add(
+          UpdateQuery.builder(update.documentId())
+              .withDocument(Document.create().append("availableSeats", update.availableSeats))
+              .build());
+    }
+    IndexCoordinates index =
+        elasticsearchOperations.getIndexCoordinatesFor(FlightSearchDocument.class);
+    try {
+      elasticsearchOperations.bulkUpdate(
+          queries, BulkOptions.builder().withRefreshPolicy(RefreshPolicy.NONE).build(), index);
+      count("written", queries.size());
+    } catch (BulkFailureException e) {
+      // Documents not indexed yet are written whole by the next sync or rebuild
+      int failed = e.getFailedDocuments().size();
+      count("written", queries.size() - failed);
+      count("failed", failed);
+      logger.warn("{} of {} seat updates rejected by bulk request", failed, queries.size());
+    } catch (Exception e) {
+      count("failed", queries.size());
+      logger.error("Bulk update of {} seat counts failed: {}", queries.size(), e.getMessage());
+    }
+
+    patchCaches(batch);
+  }
+
+  /**
+   * Patch the seat counts into the segment buckets and cached searches holding the updated legs.
+   * The partial updates become searchable only with the next index refresh, so dropping the buckets
+   * instead would let a search in between cache the old counts again for a whole TTL.
+   */
+  private void patchCaches(List<PendingUpdate> batch) {
+    if (segmentAvailabilityCache != null && segmentAvailabilityCache.isEnabled()) {
+      try {
+        Map<Long, PendingUpdate> updates = new HashMap<>();
+        batch.forEach(update -> updates.put(update.scheduleId, update));
+        for (Schedule schedule : scheduleRepository.findAllById(updates.keySet())) {
+          segmentAvailabilityCache.updateSeats(
+              schedule.getId(),
+              schedule.getSource(),
+              schedule.getDestination(),
+              schedule.getDepartureTime(),
+              updates.get(schedule.getId()).availableSeats);
+        }
+      } catch (Exception e) {
+        logger.warn("Error patching segment cache for seat updates: {}", e.getMessage());
+      }
+    }
+    if (cacheManager != null) {
+      for (PendingUpdate update : batch) {
+        cacheManager.updateScheduleAvailability(update.scheduleId, update.availableSeats);
+      }
+    }
+  }
+
+  private void count(String outcome, double amount) {
+    if (meterRegistry != null && amount > 0) {
+      meterRegistry.counter(METRIC, "outcome", outcome).increment(amount);
+    }
+  }
+}
@@ -1,23 +1,55 @@
 package com.example.flight.search.service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+/**
+ * Search results cached in Redis under a versioned namespace, {@code flight_search:v<generation>:}.
+ * Evicting everything bumps the generation instead of deleting keys, so it costs one INCR however
+ * many entries exist; entries of older generations are never read again and expire with their TTL,
+ * or earlier when the optional sweeper is enabled. The search caches behind {@code @Cacheable} are
+ * cleared along with them, which moves them to a new generation the same way.
+ */
 @Service
 @ConditionalOnClass(RedisTemplate.class)
 public class CacheService {
 
   private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
   private static final String CACHE_PREFIX = "flight_search:";
+  private static final String GENERATION_KEY = CACHE_PREFIX + "generation";
+  private static final String VERSION_PREFIX = CACHE_PREFIX + "v";
 
   @Autowired(required = false)
   private RedisTemplate<String, Object> redisTemplate;
 
+  @Autowired(required = false)
+  private CacheManager cacheManager;
+
+  @Value("${flight.search.cache.generation-refresh-ms:1000}")
+  private long generationRefreshMs;
+
+  @Value("${flight.search.cache.sweeper.enabled:false}")
+  private boolean sweeperEnabled;
+
+  @Value("${flight.search.cache.sweeper.batch-size:500}")
+  private int sweepBatchSize;
+
+  private volatile long generation;
+  private volatile long generationReadAt;
+
   public void cacheSearchResult(String key, Object result, long timeoutMinutes) {
     if (redisTemplate == null) {
       logger.debug("Redis not available - skipping cache operation");
@@ -25,7 +57,7 @@ public class CacheService {
     }
 
     try {
-      String cacheKey = CACHE_PREFIX + key;
+      String cacheKey = cacheKey(currentGeneration(), key);
       redisTemplate.opsForValue().set(cacheKey, result, timeoutMinutes, TimeUnit.MINUTES);
       logger.debug("Cached search result with key: {}", cacheKey);
     } catch (Exception e) {
@@ -40,7 +72,7 @@ public class CacheService {
     }
 
     try {
-      String cacheKey = CACHE_PREFIX + key;
+      String cacheKey = cacheKey(currentGeneration(), key);
       Object result = redisTemplate.opsForValue().get(cacheKey);
       if (result != null) {
         logger.debug("Cache hit for key: {}", cacheKey);
@@ -54,7 +86,7 @@ public class CacheService {
 
   public void evictCache(String key) {
     try {
-      String cacheKey = CACHE_PREFIX + key;
+      String cacheKey = cacheKey(currentGeneration(), key);
       redisTemplate.delete(cacheKey);
       logger.debug("Evicted cache for key: {}", cacheKey);
     } catch (Exception e) {
@@ -62,12 +94,108 @@ public class CacheService {
     }
   }
 
+  /**
+   * Evict every search result by moving to a new generation, here and in the search caches; nothing
+   * is scanned or deleted
+   */
   public void evictAllFlightSearchCache() {
+    if (cacheManager != null) {
+      for (String cacheName :
+          List.of(FlightSearchService.SEARCH_CACHE, FlightSearchService.CANDIDATE_CACHE)) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+          cache.clear();
+        }
+      }
+    }
+    if (redisTemplate == null) {
+      return;
+    }
     try {
-      redisTemplate.delete(redisTemplate.keys(CACHE_PREFIX + "*"));
-      logger.info("Evicted all flight search cache");
+      Long next = redisTemplate.opsForValue().increment(GENERATION_KEY);
+      if (next != null) {
+        generation = next;
+        generationReadAt = System.currentTimeMillis();
+      }
+      logger.info("Evicted all flight search cache, now at generation {}", next);
     } catch (Exception e) {
       logger.error("Error evicting all cache: {}", e.getMessage());
     }
   }
+
+  /**
+   * Delete the entries of older generations with an incremental SCAN, in batches, instead of
+   * waiting for their TTL. Never blocks Redis the way KEYS does.
+   */
+  @Scheduled(
+      initialDelayString = "${flight.search.cache.sweeper.interval-ms:600000}",
+      fixedDelayString = "${flight.search.cache.sweeper.interval-ms:600000}")
+  public void sweepStaleGenerations() {
+    if (!sweeperEnabled || redisTemplate == null) {
+      return;
+    }
+
+    long current = currentGeneration();
+    ScanOptions options =
+        ScanOptions.scanOptions().match(VERSION_PREFIX + "*").count(sweepBatchSize).build();
+    List<String> stale = new ArrayList<>();
+    long swept = 0;
+
+    try (Cursor<String> cursor = redisTemplate.scan(options)) {
+      while (cursor.hasNext()) {
+        String key = cursor.next();
+        Long keyGeneration = generationOf(key);
+        if (keyGeneration != null && keyGeneration < current) {
+          stale.add(key);
+        }
+        if (stale.size() >= sweepBatchSize) {
+          swept += unlink(stale);
+        }
+      }
+      swept += unlink(stale);
+      logger.info("Swept {} cache entries older than generation {}", swept, current);
+    } catch (Exception e) {
+      logger.warn("Error sweeping stale cache generations: {}", e.getMessage());
+    }
+  }
+
+  private long unlink(List<String> keys) {
+    if (keys.isEmpty()) {
+      return 0;
+    }
+    Long removed = redisTemplate.unlink(keys);
+    keys.clear();
+    return removed != null ? removed : 0;
+  }
+
+  /**
+   * Current generation, re-read from Redis at most once per refresh interval. INCRBY 0 returns the
+   * counter without changing it, and starts it at 0 when it does not exist yet.
+   */
+  private long currentGeneration() {
+    long now = System.currentTimeMillis();
+    if (generationReadAt == 0 || now - generationReadAt >= generationRefreshMs) {
+      Long value = redisTemplate.opsForValue().increment(GENERATION_KEY, 0);
+      generation = value != null ? value : 0;
+      generationReadAt = now;
+    }
+    return generation;
+  }
+
+  private static String cacheKey(long generation, String key) {
+    return VERSION_PREFIX + generation + ":" + key;
+  }
+
+  /** Generation embedded in a versioned key, or null for a key outside the scheme */
+  static Long generationOf(String key) {
+    int end = key.indexOf(':', VERSION_PREFIX.length());
+    if (!key.startsWith(VERSION_PREFIX) || end < 0) {
+      return null;
+    }
+    try {
+      return Long.parseLong(key.substring(VERSION_PREFIX.length(), end));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
 }
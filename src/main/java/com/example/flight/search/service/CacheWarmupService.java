@@ -0,0 +1,257 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.SearchMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the most searched routes warm. Every search counts towards its route, (source, destination,
+ * maxHops, engine), in a Redis sorted set shared by all instances; counts are buffered locally and
+ * flushed periodically so a search costs no extra round trip. After a deploy, after test data is
+ * refreshed and ahead of the departure-day rollover, the top routes are searched again in the
+ * background, a few at a time, so the first real users find them cached.
+ */
+@Service
+public class CacheWarmupService {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheWarmupService.class);
+  static final String POPULAR_ROUTES_KEY = "flight_search:popular";
+  private static final String SEPARATOR = "_";
+
+  @Autowired(required = false)
+  private StringRedisTemplate redisTemplate;
+
+  @Autowired(required = false)
+  private CacheService cacheService;
+
+  @Autowired private FlightSearchService flightSearchService;
+
+  @Autowired
+  @Qualifier("cacheWarmupExecutor") private Executor warmupExecutor;
+
+  @Value("${flight.search.cache.warmup.enabled:false}")
+  private boolean enabled;
+
+  @Value("${flight.search.cache.warmup.top-routes:50}")
+  private int topRoutes;
+
+  @Value("${flight.search.cache.warmup.days:2}")
+  private int days;
+
+  @Value("${flight.search.cache.warmup.concurrency:2}")
+  private int concurrency;
+
+  @Value("${flight.search.cache.warmup.max-tracked:10000}")
+  private int maxTracked;
+
+  @Value("${flight.search.cache.warmup.decay:0.5}")
+  private double decay;
+
+  private final Map<String, LongAdder> pendingCounts = new ConcurrentHashMap<>();
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  public boolean isEnabled() {
+    return enabled && redisTemplate != null;
+  }
+
+  /** Count a search towards the popularity of its route */
+  public void recordSearch(FlightSearchRequest request) {
+    if (!isEnabled() || request.getSource() == null || request.getDestination() == null) {
+      return;
+    }
+    pendingCounts
+        .computeIfAbsent(
+            routeKey(
+                request.getSource(),
+                request.getDestination(),
+                request.getMaxHops(),
+                request.getSearchMode()),
+            route -> new LongAdder())
+        .increment();
+  }
+
+  /** Add the buffered counts to the shared sorted set and keep only the most searched routes */
+  @Scheduled(
+      initialDelayString = "${flight.search.cache.warmup.flush-ms:10000}",
+      fixedDelayString = "${flight.search.cache.warmup.flush-ms:10000}")
+  public void flushCounts() {
+    if (!isEnabled() || pendingCounts.isEmpty()) {
+      return;
+    }
+
+    Map<String, Long> counts = new HashMap<>();
+    for (String route : new ArrayList<>(pendingCounts.keySet())) {
+      LongAdder adder = pendingCounts.remove(route);
+      if (adder != null) {
+        counts.put(route, adder.sum());
+      }
+    }
+
+    try {
+      ZSetOperations<String, String> zSet = redisTemplate.opsForZSet();
+      counts.forEach((route, count) -> zSet.incrementScore(POPULAR_ROUTES_KEY, route, count));
+      // Ranks are ascending, so this drops everything below the top maxTracked
+      zSet.removeRange(POPULAR_ROUTES_KEY, 0, -(maxTracked + 1L));
+      logger.debug("Recorded searches of {} routes", counts.size());
+    } catch (Exception e) {
+      logger.warn("Error recording popular routes: {}", e.getMessage());
+    }
+  }
+
+  /** Most searched routes, most popular first */
+  List<String> topRoutes() {
+    Set<String> routes =
+        redisTemplate.opsForZSet().reverseRange(POPULAR_ROUTES_KEY, 0, topRoutes - 1L);
+    return routes != null ? new ArrayList<>(routes) : Collections.emptyList();
+  }
+
+  /** Warm the top routes once the application has started, e.g. after a deploy */
+  @Async
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUpOnStartup() {
+    warmUp(LocalDate.now());
+  }
+
+  /**
+   * Data was replaced, so cached searches are cleared before the top routes are recomputed;
+   * otherwise the warm-up would only find the old entries
+   */
+  @Async
+  public void warmUpAfterRefresh() {
+    if (!isEnabled()) {
+      return;
+    }
+    if (cacheService != null) {
+      cacheService.evictAllFlightSearchCache();
+    }
+    warmUp(LocalDate.now());
+  }
+
+  /**
+   * Before midnight, age the popularity counts so older trends fade, and warm the searches from the
+   * next day on, which are the ones users start making after the rollover
+   */
+  @Scheduled(cron = "${flight.search.cache.warmup.rollover-cron:0 30 23 * * *}")
+  public void warmUpBeforeRollover() {
+    if (!isEnabled()) {
+      return;
+    }
+    try {
+      redisTemplate
+          .opsForZSet()
+          .unionAndStore(
+              POPULAR_ROUTES_KEY,
+              Collections.emptyList(),
+              POPULAR_ROUTES_KEY,
+              Aggregate.SUM,
+              Weights.of(decay));
+    } catch (Exception e) {
+      logger.warn("Error decaying popular routes: {}", e.getMessage());
+    }
+    warmUp(LocalDate.now().plusDays(1));
+  }
+
+  /**
+   * Search each top route for each of the configured days from the first day, with at most
+   * concurrency searches in flight. Searches go through the cached service, so with the candidate
+   * cache enabled one search caches every variant of a route and day. A warm-up already running
+   * makes this a no-op.
+   */
+  public void warmUp(LocalDate firstDay) {
+    if (!isEnabled() || !running.compareAndSet(false, true)) {
+      return;
+    }
+
+    long started = System.currentTimeMillis();
+    Semaphore permits = new Semaphore(Math.max(1, concurrency));
+    int searches = 0;
+    try {
+      List<String> routes = topRoutes();
+      for (String route : routes) {
+        for (int day = 0; day < days; day++) {
+          FlightSearchRequest request = toRequest(route, firstDay.plusDays(day));
+          if (request == null) {
+            break;
+          }
+          permits.acquire();
+          searches++;
+          warmupExecutor.execute(
+              () -> {
+                try {
+                  flightSearchService.searchFlights(request);
+                } catch (Exception e) {
+                  logger.debug("Warm-up search for {} failed: {}", route, e.getMessage());
+                } finally {
+                  permits.release();
+                }
+              });
+        }
+      }
+      // Wait for the last searches before allowing another warm-up
+      permits.acquire(Math.max(1, concurrency));
+      logger.info(
+          "Warmed {} searches of {} popular routes in {} ms",
+          searches,
+          routes.size(),
+          System.currentTimeMillis() - started);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      logger.warn("Error warming popular routes: {}", e.getMessage());
+    } finally {
+      running.set(false);
+    }
+  }
+
+  static String routeKey(String source, String destination, Integer maxHops, SearchMode mode) {
+    return source
+        + SEPARATOR
+        + destination
+        + SEPARATOR
+        + (maxHops != null ? maxHops : "")
+        + SEPARATOR
+        + (mode != null ? mode.name() : "");
+  }
+
+  /** The search a route key stands for on the given day, or null for a malformed key */
+  static FlightSearchRequest toRequest(String route, LocalDate day) {
+    String[] parts = route.split(SEPARATOR, -1);
+    if (parts.length != 4) {
+      return null;
+    }
+    try {
+      FlightSearchRequest request =
+          new FlightSearchRequest(parts[0], parts[1], day.atStartOfDay(), 1);
+      request.setMaxHops(parts[2].isEmpty() ? null : Integer.valueOf(parts[2]));
+      request.setSearchMode(parts[3].isEmpty() ? null : SearchMode.valueOf(parts[3]));
+      return request;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.SearchMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Normalized key of a cached candidate set: every itinerary between two airports whose first leg
+ * departs on the given day or the day after, with at most maxHops stops. Seat count, departure time
+ * within the day, price and airline filters, sorting and paging are applied per request on top of
+ * the cached set, so all of those variants share one entry.
+ */
+public final class CandidateQuery {
+
+  private final String source;
+  private final String destination;
+  private final LocalDate departureDay;
+  private final int maxHops;
+  private final SearchMode searchMode;
+
+  CandidateQuery(
+      String source, String destination, LocalDate departureDay, int maxHops, SearchMode mode) {
+    this.source = source;
+    this.destination = destination;
+    this.departureDay = departureDay;
+    this.maxHops = maxHops;
+    this.searchMode = mode;
+  }
+
+  static CandidateQuery of(FlightSearchRequest request, int maxHops, SearchMode mode) {
+    return new CandidateQuery(
+        request.getSource(),
+        request.getDestination(),
+        request.getDepartureDateTime().toLocalDate(),
+        maxHops,
+        mode);
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getDestination() {
+    return destination;
+  }
+
+  public LocalDate getDepartureDay() {
+    return departureDay;
+  }
+
+  public int getMaxHops() {
+    return maxHops;
+  }
+
+  public SearchMode getSearchMode() {
+    return searchMode;
+  }
+
+  /** Search request that computes the candidate set: one seat, from the start of the day */
+  FlightSearchRequest toRequest() {
+    LocalDateTime dayStart = departureDay.atStartOfDay();
+    FlightSearchRequest request = new FlightSearchRequest(source, destination, dayStart, 1);
+    request.setMaxHops(maxHops);
+    request.setSearchMode(searchMode);
+    return request;
+  }
+
+  public String cacheKey() {
+    return source + "_" + destination + "_" + departureDay + "_" + maxHops + "_" + searchMode;
+  }
+
+  @Override
+  public String toString() {
+    return cacheKey();
+  }
+}
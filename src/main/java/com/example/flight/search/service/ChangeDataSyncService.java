@@ -0,0 +1,526 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.config.TwoTierCacheManager;
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.document.HopDocument;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.AirportRepository;
+import com.example.flight.search.repository.FlightRepository;
+import com.example.flight.search.repository.ScheduleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Incremental sync of schedule and flight changes from MySQL to Elasticsearch and Neo4j. MySQL
+ * stamps every row with updated_at on insert and update, whichever service writes it, and a
+ * scheduled poller reads the rows changed since its (updated_at, id) position in keyset order. The
+ * affected schedules are compared with their indexed documents: unchanged ones are skipped, and the
+ * rest are upserted with bulk requests through the search alias. Seat-only changes, e.g. bookings,
+ * are patched into the cached searches and segment buckets; other changes evict them once the index
+ * has been refreshed, and routes between airports the graph does not connect yet are merged into
+ * Neo4j. Each poll costs in proportion to the rows changed since the last one.
+ *
+ * <p>The position never passes rows stamped within the last overlap-ms, so rows committed late with
+ * an earlier timestamp are still seen; the comparison makes the repeats cheap. Deleted rows leave
+ * no timestamp and are only dropped by the next full rebuild. The position is kept in Redis, where
+ * a lease lets one instance poll at a time; it also publishes when it last caught up, so every
+ * instance reports the same lag.
+ */
+@Service
+public class ChangeDataSyncService {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChangeDataSyncService.class);
+  private static final String KEY_PREFIX = "flight_search:cdc:";
+  private static final String LEASE_KEY = KEY_PREFIX + "lease";
+  private static final String CAUGHT_UP_KEY = KEY_PREFIX + "caught-up-at";
+  private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+  @Autowired private ScheduleRepository scheduleRepository;
+
+  @Autowired private FlightRepository flightRepository;
+
+  @Autowired private FlightSearchReindexer flightSearchReindexer;
+
+  @Autowired private ElasticsearchOperations elasticsearchOperations;
+
+  @Autowired(required = false)
+  private FlightSearchIndexManager flightSearchIndexManager;
+
+  @Autowired(required = false)
+  private AirportRepository airportRepository;
+
+  @Autowired(required = false)
+  private AirportGraph airportGraph;
+
+  @Autowired(required = false)
+  private NegativeRouteCache negativeRouteCache;
+
+  @Autowired(required = false)
+  private SegmentAvailabilityCache segmentAvailabilityCache;
+
+  @Autowired(required = false)
+  private TwoTierCacheManager cacheManager;
+
+  @Autowired(required = false)
+  private StringRedisTemplate redisTemplate;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  @Value("${flight.search.cdc.enabled:false}")
+  private boolean enabled;
+
+  @Value("${flight.search.cdc.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${flight.search.cdc.overlap-ms:5000}")
+  private long overlapMs;
+
+  @Value("${flight.search.cdc.lease-ms:30000}")
+  private long leaseMs;
+
+  private final AtomicBoolean polling = new AtomicBoolean();
+  private final Map<String, Position> positions = new LinkedHashMap<>();
+  private volatile long caughtUpAt = System.currentTimeMillis();
+
+  /** Keyset position in a table's changes: every row up to (updatedAt, id) has been synced */
+  static final class Position {
+    private final LocalDateTime updatedAt;
+    private final long id;
+
+    Position(LocalDateTime updatedAt, long id) {
+      this.updatedAt = updatedAt;
+      this.id = id;
+    }
+
+    boolean isAfter(Position other) {
+      int compared = updatedAt.compareTo(other.updatedAt);
+      return compared > 0 || (compared == 0 && id > other.id);
+    }
+
+    /** Parses "updatedAt,id", or a bare updatedAt written before ids were kept */
+    static Position parse(String value) {
+      int comma = value.indexOf(',');
+      return comma < 0
+          ? new Position(LocalDateTime.parse(value), 0)
+          : new Position(
+              LocalDateTime.parse(value.substring(0, comma)),
+              Long.parseLong(value.substring(comma + 1)));
+    }
+
+    @Override
+    public String toString() {
+      return updatedAt + "," + id;
+    }
+  }
+
+  /** Rows of a table changed after a (updatedAt, id) position, as id and updatedAt */
+  @FunctionalInterface
+  private interface ChangeQuery {
+    List<Object[]> find(LocalDateTime since, Long afterId, Pageable pageable);
+  }
+
+  @PostConstruct
+  void registerMetrics() {
+    if (enabled && meterRegistry != null) {
+      Gauge.builder("flight.search.cdc.lag", this, ChangeDataSyncService::lagSeconds)
+          .description("Seconds since the search index and graph last caught up with MySQL")
+          .baseUnit("seconds")
+          .register(meterRegistry);
+    }
+  }
+
+  double lagSeconds() {
+    return (System.currentTimeMillis() - caughtUpAt) / 1000.0;
+  }
+
+  @Scheduled(
+      initialDelayString = "${flight.search.cdc.poll-ms:2000}",
+      fixedDelayString = "${flight.search.cdc.poll-ms:2000}")
+  public void poll() {
+    if (!enabled || !polling.compareAndSet(false, true)) {
+      return;
+    }
+    long started = System.currentTimeMillis();
+    try {
+      if (!acquireLease()) {
+        // Another instance polls; report the lag it last published
+        readCaughtUp();
+        return;
+      }
+      boolean routesAdded =
+          drain(
+              "flights",
+              flightRepository::findChangedSince,
+              flightRepository::findLatestUpdatedAt,
+              scheduleRepository::findIdsByFlightIdIn);
+      routesAdded |=
+          drain(
+              "schedules",
+              scheduleRepository::findChangedSince,
+              scheduleRepository::findLatestUpdatedAt,
+              Function.identity());
+      if (routesAdded) {
+        if (negativeRouteCache != null) {
+          negativeRouteCache.invalidateAll();
+        }
+        airportGraph.refresh();
+      }
+      publishCaughtUp(started);
+    } catch (Exception e) {
+      logger.error("Error syncing changes from MySQL: {}", e.getMessage(), e);
+    } finally {
+      polling.set(false);
+    }
+  }
+
+  /**
+   * Sync every row of a table changed since its position, page by page. After each page the
+   * position moves past the rows read, but no further than overlap-ms ago, so the rows of the last
+   * few seconds are read again until no late commit can land before them.
+   *
+   * @param scheduleIds schedules affected by the changed rows of the table
+   * @return whether routes were added to the graph
+   */
+  private boolean drain(
+      String table,
+      ChangeQuery changes,
+      Supplier<LocalDateTime> latest,
+      Function<List<Long>, List<Long>> scheduleIds) {
+    Position position = loadPosition(table, latest);
+    Position settled = new Position(LocalDateTime.now().minus(Duration.ofMillis(overlapMs)), 0);
+    LocalDateTime since = position.updatedAt;
+    long afterId = position.id;
+    int pageSize = Math.max(1, batchSize);
+    boolean routesAdded = false;
+    int synced = 0;
+
+    while (true) {
+      List<Object[]> rows = changes.find(since, afterId, PageRequest.of(0, pageSize));
+      if (rows.isEmpty()) {
+        break;
+      }
+      List<Long> ids = new ArrayList<>(rows.size());
+      for (Object[] row : rows) {
+        ids.add((Long) row[0]);
+      }
+      routesAdded |= sync(scheduleIds.apply(ids));
+      synced += rows.size();
+
+      Object[] last = rows.get(rows.size() - 1);
+      afterId = (Long) last[0];
+      since = (LocalDateTime) last[1];
+      Position read = new Position(since, afterId);
+      Position next = read.isAfter(settled) ? settled : read;
+      if (next.isAfter(position)) {
+        position = next;
+        savePosition(table, position);
+      }
+      if (rows.size() < pageSize) {
+        break;
+      }
+    }
+
+    if (synced > 0) {
+      if (meterRegistry != null) {
+        meterRegistry.counter("flight.search.cdc.changes", "table", table).increment(synced);
+      }
+      logger.debug("Synced {} changed {} up to {}", synced, table, position);
+    }
+    return routesAdded;
+  }
+
+  /**
+   * Upsert the schedules that differ from their indexed documents and bring the caches holding them
+   * up to date
+   */
+  private boolean sync(List<Long> scheduleIds) {
+    IndexCoordinates index =
+        elasticsearchOperations.getIndexCoordinatesFor(FlightSearchDocument.class);
+    int chunkSize = Math.max(1, batchSize);
+    boolean routesAdded = false;
+    for (int from = 0; from < scheduleIds.size(); from += chunkSize) {
+      List<Schedule> schedules =
+          scheduleRepository.findAllWithFlightAndHopsByIdIn(
+              scheduleIds.subList(from, Math.min(scheduleIds.size(), from + chunkSize)));
+      Map<String, FlightSearchDocument> indexed = findIndexed(schedules, index);
+
+      List<Schedule> seatsChanged = new ArrayList<>();
+      List<Schedule> changed = new ArrayList<>();
+      List<FlightSearchDocument> replaced = new ArrayList<>();
+      for (Schedule schedule : schedules) {
+        FlightSearchDocument document = FlightSearchReindexer.toDocument(schedule);
+        FlightSearchDocument current = indexed.get(document.getId());
+        if (current == null || !sameExceptSeats(current, document)) {
+          changed.add(schedule);
+          if (current != null) {
+            replaced.add(current);
+          }
+        } else if (!Objects.equals(current.getAvailableSeats(), document.getAvailableSeats())) {
+          seatsChanged.add(schedule);
+        }
+      }
+      List<Schedule> written = new ArrayList<>(changed);
+      written.addAll(seatsChanged);
+      if (written.isEmpty()) {
+        continue;
+      }
+
+      flightSearchReindexer.index(written, index);
+      if (flightSearchIndexManager != null) {
+        written.forEach(schedule -> flightSearchIndexManager.recordChange(schedule.getId()));
+      }
+      patchSeats(seatsChanged);
+      if (!changed.isEmpty()) {
+        // Evicted entries are recomputed from the index, so they must see the new documents
+        elasticsearchOperations.indexOps(index).refresh();
+        evict(changed, replaced);
+        routesAdded |= mergeNewRoutes(changed);
+      }
+    }
+    return routesAdded;
+  }
+
+  /** Indexed documents of the schedules by id; none when the index cannot be read */
+  private Map<String, FlightSearchDocument> findIndexed(
+      List<Schedule> schedules, IndexCoordinates index) {
+    Map<String, FlightSearchDocument> indexed = new HashMap<>();
+    List<String> ids = new ArrayList<>(schedules.size());
+    for (Schedule schedule : schedules) {
+      ids.add(schedule.getFlight().getId() + "_" + schedule.getId());
+    }
+    try {
+      for (MultiGetItem<FlightSearchDocument> item :
+          elasticsearchOperations.multiGet(
+              CriteriaQuery.builder(new Criteria()).withIds(ids).build(),
+              FlightSearchDocument.class,
+              index)) {
+        if (item.hasItem()) {
+          indexed.put(item.getItem().getId(), item.getItem());
+        }
+      }
+    } catch (Exception e) {
+      logger.debug("Error reading indexed schedules, treating all as changed: {}", e.getMessage());
+    }
+    return indexed;
+  }
+
+  /** Whether a document matches the indexed one in every field but the seat count */
+  static boolean sameExceptSeats(FlightSearchDocument indexed, FlightSearchDocument document) {
+    return Objects.equals(indexed.getFlightId(), document.getFlightId())
+        && Objects.equals(indexed.getFlightNumber(), document.getFlightNumber())
+        && Objects.equals(indexed.getAirline(), document.getAirline())
+        && Objects.equals(indexed.getSource(), document.getSource())
+        && Objects.equals(indexed.getDestination(), document.getDestination())
+        // The index keeps times to the second
+        && Objects.equals(
+            toSeconds(indexed.getDepartureTime()), toSeconds(document.getDepartureTime()))
+        && Objects.equals(toSeconds(indexed.getArrivalTime()), toSeconds(document.getArrivalTime()))
+        && indexed.getPrice() != null
+        && document.getPrice() != null
+        && indexed.getPrice().compareTo(document.getPrice()) == 0
+        && Objects.equals(indexed.getNumberOfHops(), document.getNumberOfHops())
+        && hopRoute(indexed).equals(hopRoute(document));
+  }
+
+  private static LocalDateTime toSeconds(LocalDateTime time) {
+    return time != null ? time.truncatedTo(ChronoUnit.SECONDS) : null;
+  }
+
+  private static List<String> hopRoute(FlightSearchDocument document) {
+    List<String> route = new ArrayList<>();
+    if (document.getHops() != null) {
+      for (HopDocument hop : document.getHops()) {
+        route.add(hop.getHopOrder() + ":" + hop.getSource() + "-" + hop.getDestination());
+      }
+    }
+    return route;
+  }
+
+  /** Apply new seat counts to the segment buckets and cached searches holding the schedules */
+  private void patchSeats(List<Schedule> schedules) {
+    for (Schedule schedule : schedules) {
+      if (segmentAvailabilityCache != null) {
+        segmentAvailabilityCache.updateSeats(
+            schedule.getId(),
+            schedule.getSource(),
+            schedule.getDestination(),
+            schedule.getDepartureTime(),
+            schedule.getAvailableSeats());
+      }
+      if (cacheManager != null) {
+        cacheManager.updateScheduleAvailability(schedule.getId(), schedule.getAvailableSeats());
+      }
+    }
+  }
+
+  /**
+   * Evict the segment buckets and cached searches holding schedules whose times, fares or routes
+   * changed, which a seat patch would not apply, including the buckets of their old departures
+   */
+  private void evict(List<Schedule> schedules, List<FlightSearchDocument> replaced) {
+    if (segmentAvailabilityCache != null) {
+      for (Schedule schedule : schedules) {
+        segmentAvailabilityCache.evict(
+            schedule.getSource(), schedule.getDestination(), schedule.getDepartureTime());
+      }
+      for (FlightSearchDocument document : replaced) {
+        segmentAvailabilityCache.evict(
+            document.getSource(), document.getDestination(), document.getDepartureTime());
+      }
+    }
+    if (cacheManager != null) {
+      cacheManager.evictSchedules(schedules.stream().map(Schedule::getId).toList());
+    }
+  }
+
+  /** Merge the routes of schedules between airports the graph does not connect yet */
+  private boolean mergeNewRoutes(List<Schedule> schedules) {
+    if (airportGraph == null || !airportGraph.isReady()) {
+      return false;
+    }
+    Map<String, Schedule> newRoutes = new LinkedHashMap<>();
+    for (Schedule schedule : schedules) {
+      if (!airportGraph.hasRoute(schedule.getSource(), schedule.getDestination())) {
+        newRoutes.putIfAbsent(schedule.getSource() + "-" + schedule.getDestination(), schedule);
+      }
+    }
+    if (newRoutes.isEmpty()) {
+      return false;
+    }
+
+    if (airportRepository != null) {
+      for (Schedule schedule : newRoutes.values()) {
+        try {
+          airportRepository.mergeRoute(
+              schedule.getSource(),
+              schedule.getDestination(),
+              schedule.getFlight().getAirline(),
+              schedule.getFlight().getFlightNumber(),
+              schedule.getBaseFare().doubleValue());
+        } catch (Exception e) {
+          logger.warn(
+              "Error adding route {} to the graph: {}",
+              schedule.getSource() + "-" + schedule.getDestination(),
+              e.getMessage());
+        }
+      }
+    }
+    logger.info("Adding {} new routes to the airport graph", newRoutes.size());
+    return true;
+  }
+
+  /** Own the polling lease, taking it when free and extending it when already held */
+  private boolean acquireLease() {
+    if (redisTemplate == null) {
+      return true;
+    }
+    try {
+      Duration lease = Duration.ofMillis(leaseMs);
+      if (Boolean.TRUE.equals(
+          redisTemplate.opsForValue().setIfAbsent(LEASE_KEY, INSTANCE_ID, lease))) {
+        return true;
+      }
+      if (INSTANCE_ID.equals(redisTemplate.opsForValue().get(LEASE_KEY))) {
+        redisTemplate.expire(LEASE_KEY, lease);
+        return true;
+      }
+      return false;
+    } catch (Exception e) {
+      // Without Redis every instance polls; the upserts are idempotent
+      logger.debug("Error acquiring sync lease: {}", e.getMessage());
+      return true;
+    }
+  }
+
+  /** Record when the index last caught up, shared with the instances not polling */
+  private void publishCaughtUp(long at) {
+    caughtUpAt = at;
+    if (redisTemplate != null) {
+      try {
+        redisTemplate.opsForValue().set(CAUGHT_UP_KEY, Long.toString(at));
+      } catch (Exception e) {
+        logger.debug("Error writing sync progress: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void readCaughtUp() {
+    try {
+      String value = redisTemplate.opsForValue().get(CAUGHT_UP_KEY);
+      if (value != null) {
+        caughtUpAt = Long.parseLong(value);
+      }
+    } catch (Exception e) {
+      logger.debug("Error reading sync progress: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Shared position in the table, else this instance's; a first poll starts from the newest row, as
+   * everything before it was loaded by the last rebuild, less the overlap
+   */
+  private Position loadPosition(String table, Supplier<LocalDateTime> latest) {
+    if (redisTemplate != null) {
+      try {
+        String value = redisTemplate.opsForValue().get(KEY_PREFIX + "watermark:" + table);
+        if (value != null) {
+          return Position.parse(value);
+        }
+      } catch (Exception e) {
+        logger.debug("Error reading sync position in {}: {}", table, e.getMessage());
+      }
+    }
+    Position position = positions.get(table);
+    if (position == null) {
+      LocalDateTime newest = latest.get();
+      position =
+          new Position(
+              newest != null
+                  ? newest.minus(Duration.ofMillis(overlapMs))
+                  : LocalDateTime.of(1970, 1, 1, 0, 0),
+              0);
+      savePosition(table, position);
+    }
+    return position;
+  }
+
+  private void savePosition(String table, Position position) {
+    positions.put(table, position);
+    if (redisTemplate != null) {
+      try {
+        redisTemplate.opsForValue().set(KEY_PREFIX + "watermark:" + table, position.toString());
+      } catch (Exception e) {
+        logger.debug("Error writing sync position in {}: {}", table, e.getMessage());
+      }
+    }
+  }
+}
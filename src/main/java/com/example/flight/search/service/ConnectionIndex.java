@@ -0,0 +1,240 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resident index of every schedule in the bookable horizon. Departures are grouped by origin
+ * airport and sorted by departure epoch-minute, so expanding a route segment is a binary search
+ * instead of a database round trip. Seat counts are a snapshot taken at refresh time; callers must
+ * re-check live availability before returning results.
+ */
+@Service
+public class ConnectionIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionIndex.class);
+  private static final Comparator<Schedule> BY_DEPARTURE =
+      Comparator.comparing(Schedule::getDepartureTime);
+
+  @Autowired private ScheduleRepository scheduleRepository;
+
+  @Value("${flight.search.connection-index.enabled:true}")
+  private boolean enabled;
+
+  @Value("${flight.search.connection-index.horizon-days:30}")
+  private int horizonDays;
+
+  private volatile Snapshot snapshot;
+
+  /** Reload all schedules for the bookable horizon and atomically swap in the new snapshot */
+  @Scheduled(
+      initialDelayString = "${flight.search.connection-index.initial-delay-ms:0}",
+      fixedDelayString = "${flight.search.connection-index.refresh-ms:300000}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+
+    LocalDateTime windowStart = LocalDate.now().atStartOfDay();
+    LocalDateTime windowEnd = windowStart.plusDays(horizonDays);
+
+    try {
+      long started = System.currentTimeMillis();
+      List<Schedule> schedules =
+          scheduleRepository.findSchedulesWithFlightDepartingBetween(windowStart, windowEnd);
+      snapshot = Snapshot.build(schedules, windowStart, windowEnd);
+      logger.info(
+          "Connection index refreshed with {} schedules from {} airports in {} ms",
+          schedules.size(),
+          snapshot.departuresByOrigin.size(),
+          System.currentTimeMillis() - started);
+    } catch (Exception e) {
+      logger.warn("Error refreshing connection index: {}", e.getMessage());
+    }
+  }
+
+  public boolean isReady() {
+    return snapshot != null;
+  }
+
+  /** Whether the whole [from, to] window lies inside the indexed horizon */
+  public boolean covers(LocalDateTime from, LocalDateTime to) {
+    Snapshot current = snapshot;
+    return current != null && !from.isBefore(current.windowStart) && to.isBefore(current.windowEnd);
+  }
+
+  /** Departures from an airport in [from, to] with at least the required seats, by departure */
+  public List<Schedule> findDepartures(
+      String source, LocalDateTime from, LocalDateTime to, Integer requiredSeats) {
+    return findDepartures(source, null, from, to, requiredSeats);
+  }
+
+  /**
+   * Departures on a single segment in [from, to] with at least the required seats, ordered by
+   * departure time. A null destination matches every destination.
+   */
+  public List<Schedule> findDepartures(
+      String source,
+      String destination,
+      LocalDateTime from,
+      LocalDateTime to,
+      Integer requiredSeats) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+
+    Schedule[] departures = current.departuresByOrigin.get(source);
+    if (departures == null) {
+      return Collections.emptyList();
+    }
+
+    int[] minutes = current.departureMinutesByOrigin.get(source);
+    int seats = requiredSeats != null ? requiredSeats : 1;
+    List<Schedule> result = new ArrayList<>();
+
+    for (int i = lowerBound(minutes, toEpochMinute(from)); i < departures.length; i++) {
+      Schedule schedule = departures[i];
+      if (schedule.getDepartureTime().isAfter(to)) {
+        break;
+      }
+      if (schedule.getDepartureTime().isBefore(from)
+          || schedule.getAvailableSeats() < seats
+          || (destination != null && !destination.equals(schedule.getDestination()))) {
+        continue;
+      }
+      result.add(schedule);
+    }
+
+    return result;
+  }
+
+  /**
+   * Every departure in [from, to] with at least the required seats, across all airports, ordered by
+   * departure time. This is the connection array scanned by {@link ConnectionScanSearchEngine}.
+   */
+  public List<Schedule> findAllDepartures(
+      LocalDateTime from, LocalDateTime to, Integer requiredSeats) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+
+    Schedule[] departures = current.allDepartures;
+    int seats = requiredSeats != null ? requiredSeats : 1;
+    List<Schedule> result = new ArrayList<>();
+
+    for (int i = lowerBound(current.allDepartureMinutes, toEpochMinute(from));
+        i < departures.length;
+        i++) {
+      Schedule schedule = departures[i];
+      if (schedule.getDepartureTime().isAfter(to)) {
+        break;
+      }
+      if (!schedule.getDepartureTime().isBefore(from) && schedule.getAvailableSeats() >= seats) {
+        result.add(schedule);
+      }
+    }
+
+    return result;
+  }
+
+  public static int toEpochMinute(LocalDateTime time) {
+    return (int) (time.toEpochSecond(ZoneOffset.UTC) / 60);
+  }
+
+  /** First index whose value is greater than or equal to the key */
+  static int lowerBound(int[] values, int key) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Immutable view of the indexed horizon; replaced wholesale on every refresh */
+  private static final class Snapshot {
+
+    private final LocalDateTime windowStart;
+    private final LocalDateTime windowEnd;
+    private final Map<String, Schedule[]> departuresByOrigin;
+    private final Map<String, int[]> departureMinutesByOrigin;
+    private final Schedule[] allDepartures;
+    private final int[] allDepartureMinutes;
+
+    private Snapshot(
+        LocalDateTime windowStart,
+        LocalDateTime windowEnd,
+        Map<String, Schedule[]> departuresByOrigin,
+        Map<String, int[]> departureMinutesByOrigin,
+        Schedule[] allDepartures,
+        int[] allDepartureMinutes) {
+      this.windowStart = windowStart;
+      this.windowEnd = windowEnd;
+      this.departuresByOrigin = departuresByOrigin;
+      this.departureMinutesByOrigin = departureMinutesByOrigin;
+      this.allDepartures = allDepartures;
+      this.allDepartureMinutes = allDepartureMinutes;
+    }
+
+    private static Snapshot build(
+        List<Schedule> schedules, LocalDateTime windowStart, LocalDateTime windowEnd) {
+      Schedule[] allDepartures = schedules.toArray(new Schedule[0]);
+      Arrays.sort(allDepartures, BY_DEPARTURE);
+      int[] allDepartureMinutes = departureMinutes(allDepartures);
+
+      Map<String, List<Schedule>> grouped = new HashMap<>();
+      for (Schedule schedule : allDepartures) {
+        grouped.computeIfAbsent(schedule.getSource(), k -> new ArrayList<>()).add(schedule);
+      }
+
+      Map<String, Schedule[]> departuresByOrigin = new HashMap<>(grouped.size() * 2);
+      Map<String, int[]> departureMinutesByOrigin = new HashMap<>(grouped.size() * 2);
+
+      for (Map.Entry<String, List<Schedule>> entry : grouped.entrySet()) {
+        // Grouped from the globally sorted array, so each origin list is already ordered
+        Schedule[] departures = entry.getValue().toArray(new Schedule[0]);
+        departuresByOrigin.put(entry.getKey(), departures);
+        departureMinutesByOrigin.put(entry.getKey(), departureMinutes(departures));
+      }
+
+      return new Snapshot(
+          windowStart,
+          windowEnd,
+          departuresByOrigin,
+          departureMinutesByOrigin,
+          allDepartures,
+          allDepartureMinutes);
+    }
+
+    private static int[] departureMinutes(Schedule[] departures) {
+      int[] minutes = new int[departures.length];
+      for (int i = 0; i < departures.length; i++) {
+        minutes[i] = toEpochMinute(departures[i].getDepartureTime());
+      }
+      return minutes;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.entity.Schedule;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Connection Scan Algorithm over the departure-sorted connections of the {@link ConnectionIndex}. A
+ * single pass produces every itinerary with up to maxHops stops, instead of enumerating airport
+ * routes and validating schedule combinations once per hop count.
+ */
+@Service
+public class ConnectionScanSearchEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionScanSearchEngine.class);
+
+  @Autowired private ConnectionIndex connectionIndex;
+
+  /** Whether the index covers every connection a scan starting at this time could use */
+  public boolean canSearch(LocalDateTime departureTime, int maxHops) {
+    return canSearch(departureTime, Duration.ofDays(1), maxHops);
+  }
+
+  /** Whether the index covers every connection a scan with this first-leg window could use */
+  public boolean canSearch(LocalDateTime departureTime, Duration firstLegWindow, int maxHops) {
+    return connectionIndex.covers(departureTime, scanEnd(departureTime, firstLegWindow, maxHops));
+  }
+
+  /**
+   * Find all itineraries from source to destination whose first leg departs within 24 hours of the
+   * departure time, with at most maxHops stops and a valid layover at every stop.
+   *
+   * @return the legs of each itinerary, in travel order
+   */
+  public List<List<Schedule>> search(
+      String source,
+      String destination,
+      LocalDateTime departureTime,
+      Integer requiredSeats,
+      int maxHops) {
+    return search(source, destination, departureTime, Duration.ofDays(1), requiredSeats, maxHops);
+  }
+
+  /**
+   * Find all itineraries from source to destination whose first leg departs within the given window
+   * after the departure time, with at most maxHops stops and a valid layover at every stop.
+   *
+   * @return the legs of each itinerary, in travel order
+   */
+  public List<List<Schedule>> search(
+      String source,
+      String destination,
+      LocalDateTime departureTime,
+      Duration firstLegWindow,
+      Integer requiredSeats,
+      int maxHops) {
+    LocalDateTime firstDepartureLimit = departureTime.plus(firstLegWindow);
+    List<Schedule> connections =
+        connectionIndex.findAllDepartures(
+            departureTime, scanEnd(departureTime, firstLegWindow, maxHops), requiredSeats);
+
+    // Partial journeys waiting at each airport for an onward connection
+    Map<String, List<Journey>> waiting = new HashMap<>();
+    List<List<Schedule>> itineraries = new ArrayList<>();
+
+    for (Schedule connection : connections) {
+      String from = connection.getSource();
+
+      if (from.equals(source)) {
+        // Journeys never pass back through the origin, so only first legs depart from it
+        if (!connection.getDepartureTime().isAfter(firstDepartureLimit)) {
+          extend(null, connection, destination, maxHops, waiting, itineraries);
+        }
+        continue;
+      }
+
+      List<Journey> journeys = waiting.get(from);
+      if (journeys == null) {
+        continue;
+      }
+
+      // Connections are scanned in departure order, so an expired layover never becomes valid
+      LocalDateTime departure = connection.getDepartureTime();
+      journeys.removeIf(
+          journey ->
+              layoverMinutes(journey.arrivalTime, departure)
+                  > FlightSearchService.MAX_LAYOVER_HOURS * 60);
+
+      for (Journey journey : journeys) {
+        long layover = layoverMinutes(journey.arrivalTime, departure);
+        if (layover >= FlightSearchService.MIN_LAYOVER_MINUTES
+            && !journey.visits(connection.getDestination())) {
+          extend(journey, connection, destination, maxHops, waiting, itineraries);
+        }
+      }
+    }
+
+    logger.info(
+        "Connection scan over {} connections found {} itineraries from {} to {}",
+        connections.size(),
+        itineraries.size(),
+        source,
+        destination);
+    return itineraries;
+  }
+
+  private void extend(
+      Journey journey,
+      Schedule connection,
+      String destination,
+      int maxHops,
+      Map<String, List<Journey>> waiting,
+      List<List<Schedule>> itineraries) {
+    Journey extended = new Journey(journey, connection);
+
+    if (connection.getDestination().equals(destination)) {
+      itineraries.add(extended.legs());
+    } else if (extended.legCount <= maxHops) {
+      // Another leg would still be within maxHops stops
+      waiting.computeIfAbsent(connection.getDestination(), k -> new ArrayList<>()).add(extended);
+    }
+  }
+
+  /** Latest departure a scan can use: the first-leg window plus a day per additional leg */
+  private LocalDateTime scanEnd(LocalDateTime departureTime, Duration firstLegWindow, int maxHops) {
+    return departureTime.plus(firstLegWindow).plusDays(maxHops);
+  }
+
+  private static long layoverMinutes(LocalDateTime arrival, LocalDateTime departure) {
+    return Duration.between(arrival, departure).toMinutes();
+  }
+
+  /** Immutable partial itinerary sharing its prefix with the journey it extends */
+  private static final class Journey {
+
+    private final Journey previous;
+    private final Schedule leg;
+    private final LocalDateTime arrivalTime;
+    private final int legCount;
+
+    private Journey(Journey previous, Schedule leg) {
+      this.previous = previous;
+      this.leg = leg;
+      this.arrivalTime = leg.getArrivalTime();
+      this.legCount = previous == null ? 1 : previous.legCount + 1;
+    }
+
+    private boolean visits(String airport) {
+      for (Journey journey = this; journey != null; journey = journey.previous) {
+        if (journey.leg.getSource().equals(airport)
+            || journey.leg.getDestination().equals(airport)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private List<Schedule> legs() {
+      LinkedList<Schedule> legs = new LinkedList<>();
+      for (Journey journey = this; journey != null; journey = journey.previous) {
+        legs.addFirst(journey.leg);
+      }
+      return new ArrayList<>(legs);
+    }
+  }
+}
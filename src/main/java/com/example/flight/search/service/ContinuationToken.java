@@ -0,0 +1,120 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.FlightSearchResult;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Opaque cursor to the last itinerary of a page. The next page is the best itineraries ranking
+ * after it, so a client paging forward never needs the search to hold the pages before it. The
+ * token is bound to the search criteria it was issued for.
+ */
+final class ContinuationToken {
+
+  private static final String VERSION = "v1";
+  private static final String SEPARATOR = "|";
+
+  private final String fingerprint;
+  private final LocalDateTime departureTime;
+  private final BigDecimal price;
+  private final int hops;
+  private final String signature;
+
+  private ContinuationToken(
+      String fingerprint,
+      LocalDateTime departureTime,
+      BigDecimal price,
+      int hops,
+      String signature) {
+    this.fingerprint = fingerprint;
+    this.departureTime = departureTime;
+    this.price = price;
+    this.hops = hops;
+    this.signature = signature;
+  }
+
+  /** Token pointing at the given itinerary of a search */
+  static String encode(FlightSearchRequest request, FlightSearchResult last) {
+    String raw =
+        String.join(
+            SEPARATOR,
+            VERSION,
+            fingerprint(request),
+            last.getDepartureTime().toString(),
+            last.getPrice().toPlainString(),
+            String.valueOf(last.getNumberOfHops()),
+            ItineraryOrder.signature(last));
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a token issued for the same search criteria
+   *
+   * @throws IllegalArgumentException if the token is malformed or was issued for another search
+   */
+  static ContinuationToken decode(String token, FlightSearchRequest request) {
+    String[] parts;
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      parts = raw.split("\\" + SEPARATOR, -1);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid continuation token");
+    }
+
+    if (parts.length != 6 || !VERSION.equals(parts[0])) {
+      throw new IllegalArgumentException("Invalid continuation token");
+    }
+    if (!fingerprint(request).equals(parts[1])) {
+      throw new IllegalArgumentException("Continuation token was issued for a different search");
+    }
+
+    try {
+      return new ContinuationToken(
+          parts[1],
+          LocalDateTime.parse(parts[2]),
+          new BigDecimal(parts[3]),
+          Integer.parseInt(parts[4]),
+          parts[5]);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid continuation token");
+    }
+  }
+
+  /** Criteria that must not change between the pages of one search */
+  private static String fingerprint(FlightSearchRequest request) {
+    return Integer.toHexString(
+        Objects.hash(
+            request.getSource(),
+            request.getDestination(),
+            request.getDepartureDateTime(),
+            request.getNoOfSeats(),
+            request.getMaxHops(),
+            request.getSearchMode(),
+            request.getSortByPrice(),
+            request.getSortByHops(),
+            request.getMaxPrice(),
+            request.getAirline()));
+  }
+
+  LocalDateTime getDepartureTime() {
+    return departureTime;
+  }
+
+  BigDecimal getPrice() {
+    return price;
+  }
+
+  int getHops() {
+    return hops;
+  }
+
+  String getSignature() {
+    return signature;
+  }
+}
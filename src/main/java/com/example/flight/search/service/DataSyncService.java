@@ -1,17 +1,10 @@
 package com.example.flight.search.service;
 
-import com.example.flight.search.document.FlightSearchDocument;
-import com.example.flight.search.document.HopDocument;
-import com.example.flight.search.entity.Flight;
-import com.example.flight.search.entity.Schedule;
 import com.example.flight.search.graph.Airport;
 import com.example.flight.search.repository.AirportRepository;
-import com.example.flight.search.repository.FlightRepository;
-import com.example.flight.search.repository.FlightSearchRepository;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,27 +16,29 @@ public class DataSyncService {
 
   private static final Logger logger = LoggerFactory.getLogger(DataSyncService.class);
 
-  @Autowired private FlightRepository flightRepository;
+  @Autowired private FlightSearchIndexManager flightSearchIndexManager;
 
-  @Autowired private FlightSearchRepository flightSearchRepository;
+  @Autowired private AvailabilityUpdateCoalescer availabilityUpdateCoalescer;
 
   @Autowired private AirportRepository airportRepository;
 
+  @Autowired(required = false)
+  private NegativeRouteCache negativeRouteCache;
+
+  @Autowired(required = false)
+  private AirportGraph airportGraph;
+
   @Async
   public void syncFlightDataToElasticsearch() {
     logger.info("Starting flight data synchronization to Elasticsearch");
 
     try {
-      List<Flight> flights = flightRepository.findAll();
-
-      for (Flight flight : flights) {
-        for (Schedule schedule : flight.getSchedules()) {
-          FlightSearchDocument document = convertToSearchDocument(flight, schedule);
-          flightSearchRepository.save(document);
-        }
+      // Searches keep reading the live version until the new one is complete
+      if (flightSearchIndexManager.rebuild()) {
+        logger.info("Successfully synchronized flight data to Elasticsearch");
+      } else {
+        logger.warn("Elasticsearch synchronization did not replace the live index");
       }
-
-      logger.info("Successfully synchronized {} flights to Elasticsearch", flights.size());
     } catch (Exception e) {
       logger.error("Error synchronizing flight data to Elasticsearch", e);
     }
@@ -55,6 +50,13 @@ public class DataSyncService {
 
     try {
       createSampleAirportData();
+      // Pairs without routes in the old graph may be connected now
+      if (negativeRouteCache != null) {
+        negativeRouteCache.invalidateAll();
+      }
+      if (airportGraph != null) {
+        airportGraph.refresh();
+      }
       logger.info("Successfully synchronized airport data to Neo4j");
     } catch (Exception e) {
       logger.error("Error synchronizing airport data to Neo4j", e);
@@ -198,73 +200,16 @@ public class DataSyncService {
         frequency);
   }
 
-  private FlightSearchDocument convertToSearchDocument(Flight flight, Schedule schedule) {
-    FlightSearchDocument document =
-        new FlightSearchDocument(
-            flight.getFlightNumber(),
-            flight.getAirline(),
-            schedule.getSource(),
-            schedule.getDestination(),
-            schedule.getDepartureTime(),
-            schedule.getArrivalTime(),
-            schedule.getBaseFare(),
-            schedule.getAvailableSeats(),
-            calculateHops(schedule),
-            schedule.getId(),
-            flight.getId());
-
-    // Add hop information
-    List<HopDocument> hopDocuments =
-        schedule.getHops().stream()
-            .map(
-                hop ->
-                    new HopDocument(
-                        hop.getHopOrder(), hop.getSource(), hop.getDestination(), hop.getId()))
-            .collect(Collectors.toList());
-
-    document.setHops(hopDocuments);
-
-    // Add search tags
-    List<String> searchTags = generateSearchTags(schedule);
-    document.setSearchTags(searchTags);
-
-    return document;
-  }
-
-  private Integer calculateHops(Schedule schedule) {
-    return schedule.getHops() != null ? schedule.getHops().size() - 1 : 0;
-  }
-
-  private List<String> generateSearchTags(Schedule schedule) {
-    List<String> tags =
-        List.of(
-            schedule.getHops().isEmpty() ? "direct" : "connecting",
-            schedule.getFlight().getAirline().toLowerCase().replace(" ", "_"),
-            schedule.getSource().toLowerCase(),
-            schedule.getDestination().toLowerCase());
-    return tags;
-  }
-
-  @Async
+  /**
+   * Apply a schedule's new seat count to the search index and caches. Updates are coalesced per
+   * schedule and written in bulk shortly after, so a burst of bookings costs one partial update.
+   */
   public void updateFlightAvailability(Long flightId, Long scheduleId, Integer newAvailableSeats) {
-    logger.info(
+    logger.debug(
         "Updating flight availability for flight: {}, schedule: {}, seats: {}",
         flightId,
         scheduleId,
         newAvailableSeats);
-
-    try {
-      // Update Elasticsearch document
-      String documentId = flightId + "_" + scheduleId;
-      FlightSearchDocument document = flightSearchRepository.findById(documentId).orElse(null);
-
-      if (document != null) {
-        document.setAvailableSeats(newAvailableSeats);
-        flightSearchRepository.save(document);
-        logger.info("Updated Elasticsearch document for flight availability");
-      }
-    } catch (Exception e) {
-      logger.error("Error updating flight availability in Elasticsearch", e);
-    }
+    availabilityUpdateCoalescer.submit(flightId, scheduleId, newAvailableSeats);
   }
 }
@@ -0,0 +1,264 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexInformation;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Blue/green versions of the flight search index. Searches and writes go through the index name of
+ * {@link FlightSearchDocument}, which is an alias of one versioned physical index such as
+ * flight_search_v20250101030000000. A rebuild loads a new version in the background with refreshes
+ * and replicas off, validates its document count and moves the alias in one atomic request, so
+ * searches never read a partially loaded or emptied index and never compete with the load.
+ *
+ * <p>Schedules whose availability changes during a rebuild are copied into the new version again
+ * before and right after the swap. An index left by older releases under the alias name itself is
+ * replaced by the first rebuild.
+ */
+@Service
+public class FlightSearchIndexManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(FlightSearchIndexManager.class);
+  private static final DateTimeFormatter VERSION_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+  @Autowired private ElasticsearchOperations elasticsearchOperations;
+
+  @Autowired private FlightSearchReindexer flightSearchReindexer;
+
+  @Autowired private ScheduleRepository scheduleRepository;
+
+  @Value("${flight.search.index.nightly-rebuild.enabled:false}")
+  private boolean nightlyRebuildEnabled;
+
+  // A new version needs at least this share of the schedules and of the live version's documents
+  @Value("${flight.search.index.min-document-ratio:0.95}")
+  private double minDocumentRatio;
+
+  // Previous versions kept for rollback
+  @Value("${flight.search.index.retained-versions:1}")
+  private int retainedVersions;
+
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+  private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+  /** Create a first version behind the alias when neither an alias nor an index exists yet */
+  @EventListener(ApplicationReadyEvent.class)
+  public void ensureIndex() {
+    String alias = aliasName();
+    try {
+      if (elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).exists()) {
+        return;
+      }
+      String version = createVersion(alias, Map.of());
+      elasticsearchOperations
+          .indexOps(IndexCoordinates.of(version))
+          .alias(new AliasActions(new AliasAction.Add(parameters(version, alias))));
+      logger.info("Created flight search index {} behind alias {}", version, alias);
+    } catch (Exception e) {
+      logger.warn("Error ensuring flight search index {}: {}", alias, e.getMessage());
+    }
+  }
+
+  @Scheduled(cron = "${flight.search.index.rebuild-cron:0 0 3 * * *}")
+  public void nightlyRebuild() {
+    if (nightlyRebuildEnabled) {
+      rebuild();
+    }
+  }
+
+  /** Remember a schedule whose document changed, so a running rebuild copies it again */
+  public void recordChange(Long scheduleId) {
+    if (rebuilding.get() && scheduleId != null) {
+      changedDuringRebuild.add(scheduleId);
+    }
+  }
+
+  /**
+   * Build, validate and swap in a new version of the index.
+   *
+   * @return whether the alias now points at a new version; false when the new version was rejected
+   *     or failed, or another rebuild was running
+   */
+  public boolean rebuild() {
+    if (!rebuilding.compareAndSet(false, true)) {
+      logger.info("Flight search index rebuild already running");
+      return false;
+    }
+
+    long started = System.currentTimeMillis();
+    String alias = aliasName();
+    String version = null;
+    boolean swapped = false;
+    try {
+      changedDuringRebuild.clear();
+      Set<String> live = aliasedIndices(alias);
+      boolean exists = indexExists(alias);
+      boolean legacy = live.isEmpty() && exists;
+      long liveCount = exists ? count(IndexCoordinates.of(alias)) : 0;
+      long sourceCount = scheduleRepository.count();
+
+      version =
+          createVersion(
+              alias, Map.of("index.refresh_interval", "-1", "index.number_of_replicas", "0"));
+      IndexCoordinates target = IndexCoordinates.of(version);
+      flightSearchReindexer.reindex(target);
+      copyChanges(target);
+
+      long built = count(target);
+      long required = (long) Math.ceil(Math.max(sourceCount, liveCount) * minDocumentRatio);
+      if (built < required) {
+        logger.error(
+            "Rejected flight search index {} with {} documents for {} schedules and {} live",
+            version,
+            built,
+            sourceCount,
+            liveCount);
+        elasticsearchOperations.indexOps(target).delete();
+        return false;
+      }
+
+      swap(alias, version, live, legacy);
+      swapped = true;
+      // Changes that raced with the swap were written to the previous version
+      copyChanges(target);
+      deleteOldVersions(alias, version);
+
+      logger.info(
+          "Swapped alias {} to {} with {} documents in {} ms",
+          alias,
+          version,
+          built,
+          System.currentTimeMillis() - started);
+      return true;
+    } catch (Exception e) {
+      logger.error("Error rebuilding flight search index {}", version, e);
+      if (!swapped) {
+        deleteQuietly(version);
+      }
+      return swapped;
+    } finally {
+      changedDuringRebuild.clear();
+      rebuilding.set(false);
+    }
+  }
+
+  private String aliasName() {
+    return elasticsearchOperations
+        .getIndexCoordinatesFor(FlightSearchDocument.class)
+        .getIndexName();
+  }
+
+  /** Create an empty version with the mapping of {@link FlightSearchDocument} */
+  private String createVersion(String alias, Map<String, Object> settings) {
+    String version = alias + "_v" + LocalDateTime.now().format(VERSION_FORMAT);
+    Document mapping = elasticsearchOperations.indexOps(FlightSearchDocument.class).createMapping();
+    elasticsearchOperations.indexOps(IndexCoordinates.of(version)).create(settings, mapping);
+    return version;
+  }
+
+  private void copyChanges(IndexCoordinates target) {
+    Set<Long> changed = new HashSet<>(changedDuringRebuild);
+    changedDuringRebuild.removeAll(changed);
+    if (!changed.isEmpty()) {
+      flightSearchReindexer.reindex(changed, target);
+      logger.info("Copied {} schedules changed during the rebuild", changed.size());
+    }
+  }
+
+  /** Point the alias at the new version only, in one atomic request */
+  private void swap(String alias, String version, Set<String> live, boolean legacy) {
+    List<AliasAction> actions = new ArrayList<>();
+    if (legacy) {
+      // An index cannot share its name with an alias, so it is dropped in the same request
+      actions.add(new AliasAction.RemoveIndex(parameters(alias, alias)));
+    }
+    for (String index : live) {
+      actions.add(new AliasAction.Remove(parameters(index, alias)));
+    }
+    actions.add(new AliasAction.Add(parameters(version, alias)));
+    elasticsearchOperations
+        .indexOps(IndexCoordinates.of(version))
+        .alias(new AliasActions(actions.toArray(new AliasAction[0])));
+  }
+
+  /** Delete versions older than the live one beyond the retained ones */
+  private void deleteOldVersions(String alias, String version) {
+    List<String> previous = new ArrayList<>();
+    for (IndexInformation information :
+        elasticsearchOperations
+            .indexOps(IndexCoordinates.of(alias))
+            .getInformation(IndexCoordinates.of(alias + "_v*"))) {
+      if (information.getName().compareTo(version) < 0) {
+        previous.add(information.getName());
+      }
+    }
+    previous.sort(Comparator.reverseOrder());
+    for (int i = Math.max(0, retainedVersions); i < previous.size(); i++) {
+      deleteQuietly(previous.get(i));
+    }
+  }
+
+  /** Physical indices the alias points at, empty when it does not exist */
+  private Set<String> aliasedIndices(String alias) {
+    try {
+      return new HashSet<>(
+          elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).getAliases(alias).keySet());
+    } catch (Exception e) {
+      return new HashSet<>();
+    }
+  }
+
+  private boolean indexExists(String name) {
+    return elasticsearchOperations.indexOps(IndexCoordinates.of(name)).exists();
+  }
+
+  private long count(IndexCoordinates index) {
+    return elasticsearchOperations.count(Query.findAll(), index);
+  }
+
+  private void deleteQuietly(String index) {
+    if (index == null) {
+      return;
+    }
+    try {
+      IndexOperations indexOps = elasticsearchOperations.indexOps(IndexCoordinates.of(index));
+      if (indexOps.exists()) {
+        indexOps.delete();
+        logger.info("Deleted flight search index {}", index);
+      }
+    } catch (Exception e) {
+      logger.warn("Error deleting flight search index {}: {}", index, e.getMessage());
+    }
+  }
+
+  private static AliasActionParameters parameters(String index, String alias) {
+    return AliasActionParameters.builder().withIndices(index).withAliases(alias).build();
+  }
+}
@@ -0,0 +1,47 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import java.lang.reflect.Method;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache key of a flight search. Shared by the flightSearch cache and the request coalescer, so
+ * requests that would read the same cache entry also share one in-flight computation.
+ */
+@Component("flightSearchKeyGenerator")
+public class FlightSearchKeyGenerator implements KeyGenerator {
+
+  @Override
+  public Object generate(Object target, Method method, Object... params) {
+    return keyFor((FlightSearchRequest) params[0]);
+  }
+
+  public static String keyFor(FlightSearchRequest request) {
+    return request.getSource()
+        + "_"
+        + request.getDestination()
+        + "_"
+        + request.getDepartureDateTime()
+        + "_"
+        + request.getNoOfSeats()
+        + "_"
+        + request.getMaxHops()
+        + "_"
+        + request.getSearchMode()
+        + "_"
+        + request.getSortByPrice()
+        + "_"
+        + request.getSortByHops()
+        + "_"
+        + request.getMaxPrice()
+        + "_"
+        + request.getAirline()
+        + "_"
+        + request.getPage()
+        + "_"
+        + request.getSize()
+        + "_"
+        + request.getContinuationToken();
+  }
+}
@@ -0,0 +1,253 @@
+package com.example.flight.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.document.HopDocument;
+import com.example.flight.search.entity.Hop;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams every schedule into the flight search index. The reading thread walks the schedules table
+ * in keyset-paginated chunks, each fetched with its flight and hops in one query, and hands every
+ * chunk to the reindex pool, which converts it and writes it with a single bulk request. No more
+ * chunks than the pool has threads are in flight at once, so a slow cluster stalls the reader
+ * instead of buffering the table in memory.
+ *
+ * <p>Refreshes and replicas are disabled on the index for the duration of the load and restored
+ * afterwards, followed by one refresh.
+ */
+@Service
+public class FlightSearchReindexer {
+
+  private static final Logger logger = LoggerFactory.getLogger(FlightSearchReindexer.class);
+
+  @Autowired private ScheduleRepository scheduleRepository;
+
+  @Autowired private ElasticsearchOperations elasticsearchOperations;
+
+  @Autowired(required = false)
+  private ElasticsearchClient elasticsearchClient;
+
+  @Autowired(required = false)
+  @Qualifier("reindexExecutor") private Executor reindexExecutor;
+
+  @Value("${flight.search.reindex.batch-size:5000}")
+  private int batchSize;
+
+  @Value("${flight.search.reindex.concurrency:4}")
+  private int concurrency;
+
+  @Value("${flight.search.reindex.refresh-interval:1s}")
+  private String refreshInterval;
+
+  @Value("${flight.search.reindex.replicas:1}")
+  private String replicas;
+
+  /** Index every schedule into the given index, returning the documents written */
+  public long reindex(IndexCoordinates index) {
+    long started = System.currentTimeMillis();
+    int permits = Math.max(1, concurrency);
+    Executor executor = reindexExecutor != null ? reindexExecutor : Runnable::run;
+    Semaphore inFlight = new Semaphore(permits);
+    AtomicLong indexed = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    long chunks = 0;
+
+    updateSettings(index, "-1", "0");
+    try {
+      long afterId = 0;
+      while (true) {
+        List<Long> ids =
+            scheduleRepository.findIdsAfter(afterId, PageRequest.of(0, Math.max(1, batchSize)));
+        if (ids.isEmpty()) {
+          break;
+        }
+        afterId = ids.get(ids.size() - 1);
+        List<Schedule> schedules = scheduleRepository.findAllWithFlightAndHopsByIdIn(ids);
+
+        // Backpressure: wait for a chunk to finish before reading past the pool
+        inFlight.acquire();
+        try {
+          executor.execute(
+              () -> {
+                try {
+                  write(schedules, index, indexed, failed);
+                } finally {
+                  inFlight.release();
+                }
+              });
+        } catch (RejectedExecutionException e) {
+          inFlight.release();
+          throw e;
+        }
+        chunks++;
+      }
+      inFlight.acquire(permits);
+      inFlight.release(permits);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.warn("Reindex of {} interrupted after {} chunks", index.getIndexName(), chunks);
+    } finally {
+      updateSettings(index, refreshInterval, replicas);
+      elasticsearchOperations.indexOps(index).refresh();
+    }
+
+    logger.info(
+        "Reindexed {} schedules into {} in {} chunks and {} ms, {} failed",
+        indexed.get(),
+        index.getIndexName(),
+        chunks,
+        System.currentTimeMillis() - started,
+        failed.get());
+    return indexed.get();
+  }
+
+  /** Copy the given schedules into the index again, e.g. after they changed during a load */
+  public long reindex(Collection<Long> scheduleIds, IndexCoordinates index) {
+    long indexed = 0;
+    List<Long> ids = new ArrayList<>(scheduleIds);
+    int chunkSize = Math.max(1, batchSize);
+    for (int from = 0; from < ids.size(); from += chunkSize) {
+      List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + chunkSize));
+      indexed += index(scheduleRepository.findAllWithFlightAndHopsByIdIn(chunk), index);
+    }
+    elasticsearchOperations.indexOps(index).refresh();
+    return indexed;
+  }
+
+  /**
+   * Upsert the documents of schedules whose flight and hops are loaded with one bulk request,
+   * returning the documents written. They become searchable with the next periodic refresh.
+   */
+  public long index(List<Schedule> schedules, IndexCoordinates index) {
+    if (schedules.isEmpty()) {
+      return 0;
+    }
+    AtomicLong indexed = new AtomicLong();
+    write(schedules, index, indexed, new AtomicLong());
+    return indexed.get();
+  }
+
+  /** Convert one chunk and write it with a single bulk request */
+  private void write(
+      List<Schedule> schedules, IndexCoordinates index, AtomicLong indexed, AtomicLong failed) {
+    List<IndexQuery> queries = new ArrayList<>(schedules.size());
+    for (Schedule schedule : schedules) {
+      FlightSearchDocument document = toDocument(schedule);
+      queries.add(new IndexQueryBuilder().withId(document.getId()).withObject(document).build());
+    }
+
+    try {
+      elasticsearchOperations.bulkIndex(
+          queries, BulkOptions.builder().withRefreshPolicy(RefreshPolicy.NONE).build(), index);
+      indexed.addAndGet(queries.size());
+    } catch (BulkFailureException e) {
+      int rejected = e.getFailedDocuments().size();
+      indexed.addAndGet(queries.size() - rejected);
+      failed.addAndGet(rejected);
+      logger.warn("{} of {} documents rejected by bulk request", rejected, queries.size());
+    } catch (Exception e) {
+      failed.addAndGet(queries.size());
+      logger.error("Bulk request of {} documents failed: {}", queries.size(), e.getMessage());
+    }
+  }
+
+  /** Set the refresh interval and replica count of the index, e.g. to speed up a bulk load */
+  private void updateSettings(IndexCoordinates index, String interval, String replicaCount) {
+    if (elasticsearchClient == null) {
+      return;
+    }
+    try {
+      elasticsearchClient
+          .indices()
+          .putSettings(
+              request ->
+                  request
+                      .index(index.getIndexName())
+                      .settings(
+                          settings ->
+                              settings
+                                  .refreshInterval(time -> time.time(interval))
+                                  .numberOfReplicas(replicaCount)));
+      logger.debug(
+          "Set refresh interval {} and {} replicas on {}",
+          interval,
+          replicaCount,
+          index.getIndexName());
+    } catch (Exception e) {
+      logger.warn("Error updating settings of {}: {}", index.getIndexName(), e.getMessage());
+    }
+  }
+
+  /** Search document of a schedule whose flight and hops are loaded */
+  static FlightSearchDocument toDocument(Schedule schedule) {
+    FlightSearchDocument document =
+        new FlightSearchDocument(
+            schedule.getFlight().getFlightNumber(),
+            schedule.getFlight().getAirline(),
+            schedule.getSource(),
+            schedule.getDestination(),
+            schedule.getDepartureTime(),
+            schedule.getArrivalTime(),
+            schedule.getBaseFare(),
+            schedule.getAvailableSeats(),
+            calculateHops(schedule),
+            schedule.getId(),
+            schedule.getFlight().getId());
+
+    // Add hop information
+    List<HopDocument> hopDocuments =
+        hopsOf(schedule).stream()
+            .map(
+                hop ->
+                    new HopDocument(
+                        hop.getHopOrder(), hop.getSource(), hop.getDestination(), hop.getId()))
+            .collect(Collectors.toList());
+
+    document.setHops(hopDocuments);
+
+    // Add search tags
+    document.setSearchTags(generateSearchTags(schedule));
+
+    return document;
+  }
+
+  private static List<Hop> hopsOf(Schedule schedule) {
+    return schedule.getHops() != null ? schedule.getHops() : List.of();
+  }
+
+  private static Integer calculateHops(Schedule schedule) {
+    return schedule.getHops() != null ? schedule.getHops().size() - 1 : 0;
+  }
+
+  private static List<String> generateSearchTags(Schedule schedule) {
+    return List.of(
+        hopsOf(schedule).isEmpty() ? "direct" : "connecting",
+        schedule.getFlight().getAirline().toLowerCase().replace(" ", "_"),
+        schedule.getSource().toLowerCase(),
+        schedule.getDestination().toLowerCase());
+  }
+}
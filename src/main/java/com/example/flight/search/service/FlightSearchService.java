@@ -4,46 +4,258 @@ import com.example.flight.search.document.FlightSearchDocument;
 import com.example.flight.search.dto.FlightSearchRequest;
 import com.example.flight.search.dto.FlightSearchResult;
 import com.example.flight.search.dto.ScheduleDto;
+import com.example.flight.search.dto.SearchMode;
+import com.example.flight.search.entity.Flight;
 import com.example.flight.search.entity.Schedule;
 import com.example.flight.search.repository.FlightSearchRepository;
 import com.example.flight.search.repository.ScheduleRepository;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
 @Service
 public class FlightSearchService {
 
   private static final Logger logger = LoggerFactory.getLogger(FlightSearchService.class);
-  private static final int MIN_LAYOVER_MINUTES = 60; // Minimum 1 hour layover
-  private static final int MAX_LAYOVER_HOURS = 6; // Maximum 6 hours layover
+  static final int MIN_LAYOVER_MINUTES = 60; // Minimum 1 hour layover
+  static final int MAX_LAYOVER_HOURS = 6; // Maximum 6 hours layover
+  static final String SEARCH_CACHE = "flightSearch";
+  static final String CANDIDATE_CACHE = "flightCandidates";
+  private static final Duration DEPARTURE_WINDOW = Duration.ofDays(1); // First leg within 24h
+  // Candidate sets cover a request at any time of their day, plus that request's 24h window
+  private static final Duration CANDIDATE_WINDOW = Duration.ofDays(2);
+  private static final int SEGMENT_RESULTS_LIMIT = 100; // Elasticsearch hits per segment
 
   @Autowired private FlightSearchRepository flightSearchRepository;
 
+  @Autowired(required = false)
+  private ElasticsearchOperations elasticsearchOperations;
+
   @Autowired private PathFindingService pathFindingService;
 
+  @Autowired private ScheduleRepository scheduleRepository;
+
   @Autowired(required = false)
-  private CacheService cacheService;
+  private ConnectionIndex connectionIndex;
 
-  @Autowired private ScheduleRepository scheduleRepository;
+  @Autowired(required = false)
+  private ConnectionScanSearchEngine connectionScanSearchEngine;
 
-  @Cacheable(
-      value = "flightSearch",
-      key =
-          "#request.source + '_' + #request.destination + '_' + #request.getDepartureDateTime() + '_' + #request.noOfSeats + '_' + #request.maxHops")
+  @Autowired(required = false)
+  private RaptorSearchEngine raptorSearchEngine;
+
+  @Autowired(required = false)
+  private SearchRequestCoalescer searchRequestCoalescer;
+
+  @Autowired(required = false)
+  private SegmentAvailabilityCache segmentAvailabilityCache;
+
+  @Autowired(required = false)
+  @Qualifier("searchExecutor") private Executor searchExecutor;
+
+  @Value("${flight.search.engine:ROUTE}")
+  private SearchMode defaultSearchMode;
+
+  @Value("${flight.search.deadline-ms:5000}")
+  private long searchDeadlineMs;
+
+  @Value("${flight.search.top-k.enabled:false}")
+  private boolean topKEnabled;
+
+  @Value("${flight.search.candidate-cache.enabled:false}")
+  private boolean candidateCacheEnabled;
+
+  // Proxy of this service, so searches and candidate lookups go through the cache
+  @Lazy @Autowired private FlightSearchService self;
+
+  /**
+   * Search itineraries, through the search cache. A search cut short by the deadline or by a failed
+   * hop stage still answers with what it found, but that answer is never cached.
+   */
+  @SuppressWarnings("unchecked")
   public Page<FlightSearchResult> searchFlights(FlightSearchRequest request) {
+    try {
+      return self != null ? self.findFlights(request) : findFlights(request);
+    } catch (PartialResultException e) {
+      return (Page<FlightSearchResult>) e.getResult();
+    }
+  }
+
+  /**
+   * Cached search of {@link #searchFlights}. Throws {@link PartialResultException} with the results
+   * found so far when a hop stage did not complete, so the cache skips them.
+   */
+  @Cacheable(
+      value = SEARCH_CACHE,
+      keyGenerator = "flightSearchKeyGenerator",
+      condition = "!@flightSearchService.candidateCacheEnabled",
+      sync = true)
+  public Page<FlightSearchResult> findFlights(FlightSearchRequest request) {
+    if (candidateCacheEnabled) {
+      return searchCandidates(request);
+    }
+    long deadline = deadlineFromNow();
+    if (searchRequestCoalescer == null) {
+      return executeSearch(request, deadline);
+    }
+    // Identical concurrent searches that missed the cache share one computation
+    return searchRequestCoalescer.execute(
+        SEARCH_CACHE,
+        FlightSearchKeyGenerator.keyFor(request),
+        deadline,
+        () -> executeSearch(request, deadline));
+  }
+
+  public boolean isCandidateCacheEnabled() {
+    return candidateCacheEnabled;
+  }
+
+  /**
+   * Every itinerary of a normalized query, unsorted and unpaginated, for at least one seat. Cached
+   * per query, so searches that differ only in seats, time of day, filters, sort or page share one
+   * computation and one cache entry. Throws {@link PartialResultException} with the candidates
+   * found so far when a hop stage did not complete, so the cache skips them.
+   */
+  @Cacheable(value = CANDIDATE_CACHE, key = "#query.cacheKey()", sync = true)
+  public List<FlightSearchResult> findCandidates(CandidateQuery query) {
+    long deadline = deadlineFromNow();
+    if (searchRequestCoalescer == null) {
+      return computeCandidates(query, deadline);
+    }
+    return searchRequestCoalescer.execute(
+        CANDIDATE_CACHE, query.cacheKey(), deadline, () -> computeCandidates(query, deadline));
+  }
+
+  /** Time by which a search starting now must answer, in epoch milliseconds */
+  private long deadlineFromNow() {
+    return searchDeadlineMs > 0 ? System.currentTimeMillis() + searchDeadlineMs : Long.MAX_VALUE;
+  }
+
+  private List<FlightSearchResult> computeCandidates(CandidateQuery query, long deadline) {
+    logger.info("Computing candidate itineraries for {}", query);
+    FlightSearchRequest request = query.toRequest();
+
+    List<FlightSearchResult> candidates;
+    List<List<Schedule>> indexedItineraries =
+        searchIndexedItineraries(request, query.getMaxHops(), CANDIDATE_WINDOW);
+    if (indexedItineraries != null) {
+      candidates = toConfirmedResults(indexedItineraries, request);
+    } else {
+      StageResults stages =
+          searchHopCountsConcurrently(
+              request, query.getMaxHops(), CANDIDATE_WINDOW, null, deadline);
+      candidates = stages.results;
+      if (!stages.complete) {
+        throw new PartialResultException(distinct(candidates));
+      }
+    }
+
+    return distinct(candidates);
+  }
+
+  private static List<FlightSearchResult> distinct(List<FlightSearchResult> results) {
+    return results.stream().distinct().collect(Collectors.toCollection(ArrayList::new));
+  }
+
+  /**
+   * Answer a search from the candidate set of its normalized query: keep the itineraries whose
+   * first leg departs within 24 hours of the requested time and whose legs all have the requested
+   * seats, then apply the price and airline filters, sort and page
+   */
+  private Page<FlightSearchResult> searchCandidates(FlightSearchRequest request) {
+    int maxHops = request.getMaxHops() != null ? request.getMaxHops() : 3;
+    CandidateQuery query = CandidateQuery.of(request, maxHops, resolveSearchMode(request));
+    List<FlightSearchResult> candidates;
+    try {
+      candidates = self != null ? self.findCandidates(query) : findCandidates(query);
+    } catch (PartialResultException e) {
+      @SuppressWarnings("unchecked")
+      List<FlightSearchResult> partial = (List<FlightSearchResult>) e.getResult();
+      candidates = partial;
+    }
+
+    LocalDateTime from = request.getDepartureDateTime();
+    LocalDateTime to = from.plus(DEPARTURE_WINDOW);
+    ItineraryCollector collector = createCollector(request);
+    List<FlightSearchResult> matching = new ArrayList<>();
+
+    for (FlightSearchResult candidate : candidates) {
+      LocalDateTime departure = candidate.getDepartureTime();
+      if (departure.isBefore(from)
+          || departure.isAfter(to)
+          || !hasSeats(candidate, request.getNoOfSeats())) {
+        continue;
+      }
+      if (collector != null) {
+        collector.offer(candidate);
+      } else if (isValidFlight(candidate, request)) {
+        matching.add(candidate);
+      }
+    }
+
+    logger.info(
+        "{} of {} candidate itineraries match the search from {} to {}",
+        collector != null ? collector.getAccepted() : matching.size(),
+        candidates.size(),
+        request.getSource(),
+        request.getDestination());
+
+    if (collector != null) {
+      return collectedPage(collector, request);
+    }
+    sortResults(matching, request);
+    return paginateResults(matching, createPageable(request));
+  }
+
+  private static boolean hasSeats(FlightSearchResult result, Integer requiredSeats) {
+    int seats = requiredSeats != null ? requiredSeats : 1;
+    for (ScheduleDto leg : result.getSchedules()) {
+      if (leg.getAvailableSeats() == null || leg.getAvailableSeats() < seats) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Page<FlightSearchResult> executeSearch(FlightSearchRequest request, long deadline) {
     logger.info(
         "Searching flights from {} to {} for {} seats with maxHops: {}",
         request.getSource(),
@@ -58,20 +270,30 @@ public class FlightSearchService {
     int maxHopsToSearch =
         request.getMaxHops() != null ? request.getMaxHops() : 3; // Default max 3 hops
 
-    // Search for flights with 0 to maxHops - explicit hop calculation
-    for (int currentHops = 0; currentHops <= maxHopsToSearch; currentHops++) {
-      logger.info("Searching for flights with exactly {} hops", currentHops);
-
-      if (currentHops == 0) {
-        // Direct flights - search in Elasticsearch first, then database
-        List<FlightSearchResult> directFlights = searchDirectFlights(request);
-        allResults.addAll(directFlights);
+    // Bounded top-K collection of the requested page, or null to materialize every result
+    ItineraryCollector collector = createCollector(request);
+
+    boolean complete = true;
+    List<List<Schedule>> indexedItineraries =
+        searchIndexedItineraries(request, maxHopsToSearch, null);
+    if (indexedItineraries != null) {
+      // In-memory engines yield itineraries for every hop count in one pass
+      List<FlightSearchResult> confirmed = toConfirmedResults(indexedItineraries, request);
+      if (collector != null) {
+        collector.offerAll(confirmed);
       } else {
-        // Multi-hop flights - use Neo4j to find routes, then validate with Elasticsearch/Database
-        List<FlightSearchResult> multiHopFlights =
-            searchMultiHopFlightsWithExactHops(request, currentHops);
-        allResults.addAll(multiHopFlights);
+        allResults.addAll(confirmed);
       }
+    } else {
+      // Search for flights with 0 to maxHops - one concurrent stage per hop count
+      StageResults stages =
+          searchHopCountsConcurrently(request, maxHopsToSearch, null, collector, deadline);
+      allResults.addAll(stages.results);
+      complete = stages.complete;
+    }
+
+    if (collector != null) {
+      return completeOrPartial(collectedPage(collector, request), complete);
     }
 
     // Remove duplicates and apply additional filters
@@ -86,7 +308,265 @@ public class FlightSearchService {
 
     // Apply pagination
     Pageable pageable = createPageable(request);
-    return paginateResults(allResults, pageable);
+    return completeOrPartial(paginateResults(allResults, pageable), complete);
+  }
+
+  /** The page itself, or a {@link PartialResultException} carrying it when it is incomplete */
+  private static Page<FlightSearchResult> completeOrPartial(
+      Page<FlightSearchResult> page, boolean complete) {
+    if (!complete) {
+      throw new PartialResultException(page);
+    }
+    return page;
+  }
+
+  /**
+   * Token for the page after the given page of a search, or null when it is the last page. Pass it
+   * back as the continuation token of the same search to fetch that page.
+   */
+  public String nextContinuationToken(FlightSearchRequest request, Page<FlightSearchResult> page) {
+    if (!page.hasNext() || page.getContent().isEmpty()) {
+      return null;
+    }
+    return ContinuationToken.encode(request, page.getContent().get(page.getContent().size() - 1));
+  }
+
+  /**
+   * Collector keeping only the itineraries the requested page needs: the first (page + 1) * size by
+   * offset, or the first size after the cursor when the request carries a continuation token, plus
+   * one more that tells whether a next page exists. Returns null when top-K search is disabled and
+   * the request has no token.
+   */
+  private ItineraryCollector createCollector(FlightSearchRequest request) {
+    String token = request.getContinuationToken();
+    boolean hasToken = token != null && !token.isBlank();
+    if (!topKEnabled && !hasToken) {
+      return null;
+    }
+
+    ContinuationToken after = hasToken ? ContinuationToken.decode(token, request) : null;
+    int capacity = after != null ? request.getSize() : (request.getPage() + 1) * request.getSize();
+    return new ItineraryCollector(
+        ItineraryOrder.of(request),
+        capacity + 1,
+        after,
+        request.getMaxPrice(),
+        result -> isValidFlight(result, request));
+  }
+
+  /**
+   * Page of collected itineraries. The total only counts itineraries that were not pruned, so it is
+   * a lower bound; the extra itinerary collected beyond the page makes it exceed the page whenever
+   * another page exists.
+   */
+  private Page<FlightSearchResult> collectedPage(
+      ItineraryCollector collector, FlightSearchRequest request) {
+    Pageable pageable = createPageable(request);
+    List<FlightSearchResult> best = collector.sortedResults();
+
+    if (collector.hasCursor()) {
+      // The cursor already skipped the previous pages
+      List<FlightSearchResult> content =
+          best.subList(0, Math.min(pageable.getPageSize(), best.size()));
+      return new PageImpl<>(
+          new ArrayList<>(content), pageable, pageable.getOffset() + collector.getAccepted());
+    }
+
+    int start = (int) Math.min(pageable.getOffset(), best.size());
+    int end = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), best.size());
+    return new PageImpl<>(
+        new ArrayList<>(best.subList(start, end)), pageable, collector.getAccepted());
+  }
+
+  /**
+   * Run the direct search and each multi-hop search as independent stages on the search executor,
+   * merging results as stages complete. Stages still running at the request deadline are cancelled:
+   * they stop at their next route or layer and their results are dropped. The results merged by
+   * then are returned marked incomplete, as they are when a stage fails or the executor rejects it.
+   *
+   * <p>First legs depart within the given window after the requested time. A null window keeps the
+   * request semantics: multi-hop first legs within 24 hours and direct flights at any later time.
+   */
+  private StageResults searchHopCountsConcurrently(
+      FlightSearchRequest request,
+      int maxHops,
+      Duration firstLegWindow,
+      ItineraryCollector collector,
+      long deadline) {
+    Executor executor = searchExecutor != null ? searchExecutor : Runnable::run;
+    // Segments resolved by one stage are reused by the others, e.g. every first leg
+    Map<SegmentKey, List<Schedule>> segmentMemo = new ConcurrentHashMap<>();
+    Queue<FlightSearchResult> merged = new ConcurrentLinkedQueue<>();
+    List<CompletableFuture<Void>> stages = new ArrayList<>();
+    Consumer<List<FlightSearchResult>> merge =
+        collector != null ? collector::offerAll : merged::addAll;
+    AtomicBoolean cancelled = new AtomicBoolean();
+
+    for (int currentHops = 0; currentHops <= maxHops; currentHops++) {
+      int hops = currentHops;
+      CompletableFuture<List<FlightSearchResult>> stage;
+      try {
+        stage =
+            CompletableFuture.supplyAsync(
+                () ->
+                    searchHopStage(
+                        request, hops, firstLegWindow, segmentMemo, collector, cancelled),
+                executor);
+      } catch (RejectedExecutionException e) {
+        // A saturated pool fails the stage rather than running it where no deadline applies
+        stage = CompletableFuture.failedFuture(e);
+      }
+      stages.add(
+          stage.thenAccept(
+              results -> {
+                if (!cancelled.get()) {
+                  merge.accept(results);
+                }
+              }));
+    }
+
+    CompletableFuture<Void> all = CompletableFuture.allOf(stages.toArray(new CompletableFuture[0]));
+    boolean complete = false;
+    try {
+      if (deadline != Long.MAX_VALUE) {
+        // Time spent waiting for another node's result counts against the deadline
+        all.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } else {
+        all.get();
+      }
+      complete = true;
+    } catch (TimeoutException e) {
+      long pending = stages.stream().filter(stage -> !stage.isDone()).count();
+      logger.warn(
+          "Search deadline of {} ms reached with {} of {} hop stages pending",
+          searchDeadlineMs,
+          pending,
+          stages.size());
+      cancelled.set(true);
+    } catch (ExecutionException e) {
+      // A failed stage must not discard the results of the others
+      logger.warn("Hop stage failed: {}", e.getCause().getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancelled.set(true);
+    }
+
+    return new StageResults(new ArrayList<>(merged), complete);
+  }
+
+  /** Results merged from the hop stages, and whether every stage completed */
+  private static final class StageResults {
+
+    private final List<FlightSearchResult> results;
+    private final boolean complete;
+
+    private StageResults(List<FlightSearchResult> results, boolean complete) {
+      this.results = results;
+      this.complete = complete;
+    }
+  }
+
+  /**
+   * Thrown through the search caches with the results of a search that did not complete, so the
+   * cache does not store them; {@link #searchFlights} answers with them instead.
+   */
+  static final class PartialResultException extends RuntimeException {
+
+    private final transient Object result;
+
+    PartialResultException(Object result) {
+      super("Search incomplete", null, false, false);
+      this.result = result;
+    }
+
+    Object getResult() {
+      return result;
+    }
+  }
+
+  private List<FlightSearchResult> searchHopStage(
+      FlightSearchRequest request,
+      int hops,
+      Duration firstLegWindow,
+      Map<SegmentKey, List<Schedule>> segmentMemo,
+      ItineraryCollector collector,
+      AtomicBoolean cancelled) {
+    if (cancelled.get()) {
+      return List.of();
+    }
+    logger.info("Searching for flights with exactly {} hops", hops);
+
+    if (pathFindingService.isUnreachable(request.getSource(), request.getDestination(), hops)) {
+      logger.info("No {}-hop routes from the source to the destination", hops);
+      return List.of();
+    }
+
+    if (hops == 0) {
+      // Direct flights - search in Elasticsearch first, then database
+      return searchDirectFlights(request, firstLegWindow);
+    }
+
+    // Multi-hop flights - use Neo4j to find routes, then validate with Elasticsearch/Database
+    Duration window = firstLegWindow != null ? firstLegWindow : DEPARTURE_WINDOW;
+    return searchMultiHopFlightsWithExactHops(
+        request, hops, window, segmentMemo, collector, cancelled);
+  }
+
+  private SearchMode resolveSearchMode(FlightSearchRequest request) {
+    if (request.getSearchMode() != null) {
+      return request.getSearchMode();
+    }
+    return defaultSearchMode != null ? defaultSearchMode : SearchMode.ROUTE;
+  }
+
+  /**
+   * Run the in-memory engine selected for the request across all hop counts, or return null when
+   * the route path should be used because no engine is selected or the index cannot serve it
+   */
+  private List<List<Schedule>> searchIndexedItineraries(
+      FlightSearchRequest request, int maxHops, Duration firstLegWindow) {
+    SearchMode mode = resolveSearchMode(request);
+    LocalDateTime departureTime = request.getDepartureDateTime();
+    Duration window = firstLegWindow != null ? firstLegWindow : DEPARTURE_WINDOW;
+
+    if (mode == SearchMode.CSA
+        && connectionScanSearchEngine != null
+        && connectionScanSearchEngine.canSearch(departureTime, window, maxHops)) {
+      logger.info("Searching flights with connection scan up to {} hops", maxHops);
+      return connectionScanSearchEngine.search(
+          request.getSource(),
+          request.getDestination(),
+          departureTime,
+          window,
+          request.getNoOfSeats(),
+          maxHops);
+    }
+
+    if (mode == SearchMode.RAPTOR
+        && raptorSearchEngine != null
+        && raptorSearchEngine.canSearch(departureTime, window, maxHops)) {
+      logger.info("Searching Pareto-optimal flights with RAPTOR up to {} hops", maxHops);
+      return raptorSearchEngine.search(
+          request.getSource(),
+          request.getDestination(),
+          departureTime,
+          window,
+          request.getNoOfSeats(),
+          maxHops);
+    }
+
+    return null;
+  }
+
+  /** Build results for itineraries found in the index and confirm their live seat counts */
+  private List<FlightSearchResult> toConfirmedResults(
+      List<List<Schedule>> itineraries, FlightSearchRequest request) {
+    List<FlightSearchResult> results =
+        itineraries.stream()
+            .map(legs -> createMultiHopFlightResult(legs, legs.size() - 1))
+            .collect(Collectors.toList());
+
+    return confirmSeatAvailability(results, request.getNoOfSeats());
   }
 
   /**
@@ -94,7 +574,12 @@ public class FlightSearchService {
    * routes and Elasticsearch/Database to validate flights
    */
   private List<FlightSearchResult> searchMultiHopFlightsWithExactHops(
-      FlightSearchRequest request, int exactHops) {
+      FlightSearchRequest request,
+      int exactHops,
+      Duration firstLegWindow,
+      Map<SegmentKey, List<Schedule>> segmentMemo,
+      ItineraryCollector collector,
+      AtomicBoolean cancelled) {
     logger.info("Searching multi-hop flights with exactly {} hops", exactHops);
 
     // Step 1: Get all possible non-circular routes from Neo4j with exact hop count
@@ -102,162 +587,419 @@ public class FlightSearchService {
         pathFindingService.findRoutesWithHops(
             request.getSource(), request.getDestination(), exactHops);
 
-    List<FlightSearchResult> results = new ArrayList<>();
-
-    // Step 2: For each route, check if flights exist in correct sequence with timing validation
+    List<RouteCandidate> candidates = new ArrayList<>();
     for (List<String> route : routes) {
-      logger.debug("Validating route with {} hops: {}", exactHops, route);
+      // A route with N intermediate stops visits N + 2 airports
+      if (route.size() != exactHops + 2) {
+        logger.warn("Route size {} doesn't match expected hops {}", route.size(), exactHops);
+        continue;
+      }
+      LocalDateTime departureTime = request.getDepartureDateTime();
+      candidates.add(new RouteCandidate(route, departureTime, departureTime.plus(firstLegWindow)));
+    }
 
-      // Find actual flights for this route with timing validation
-      List<FlightSearchResult> routeFlights =
-          findAndValidateFlightsForRoute(route, request, exactHops);
-      results.addAll(routeFlights);
+    // Step 2: Resolve the segments of all routes layer by layer, one batch per layer. A stage
+    // cancelled at the deadline stops between layers and between routes.
+    for (int layer = 0; layer <= exactHops && !candidates.isEmpty(); layer++) {
+      if (cancelled.get()) {
+        return List.of();
+      }
+      Set<SegmentKey> layerSegments = new HashSet<>();
+      for (RouteCandidate candidate : candidates) {
+        layerSegments.add(candidate.segmentKey(layer));
+      }
+      resolveSegments(layerSegments, request.getNoOfSeats(), segmentMemo);
+
+      List<RouteCandidate> remaining = new ArrayList<>();
+      for (RouteCandidate candidate : candidates) {
+        SegmentKey segment = candidate.segmentKey(layer);
+        List<Schedule> segmentSchedules = segmentMemo.getOrDefault(segment, List.of());
+
+        if (segmentSchedules.isEmpty()) {
+          logger.debug(
+              "No flights found for segment {} -> {}",
+              segment.getSource(),
+              segment.getDestination());
+          continue; // Cannot complete this route
+        }
+
+        candidate.addSegmentOptions(segmentSchedules);
+        remaining.add(candidate);
+      }
+      candidates = remaining;
+    }
+
+    // Step 3: Generate all valid flight combinations with timing validation. In top-K mode only
+    // the best combinations of this stage are kept, and partial combinations that cannot rank
+    // among them are abandoned.
+    ItineraryCollector stageCollector = collector != null ? collector.newStageCollector() : null;
+    List<FlightSearchResult> results = new ArrayList<>();
+    for (RouteCandidate candidate : candidates) {
+      if (cancelled.get()) {
+        return List.of();
+      }
+      logger.debug("Validating route with {} hops: {}", exactHops, candidate.route);
+      results.addAll(
+          generateValidFlightCombinations(
+              candidate.segmentOptions, candidate.route, exactHops, stageCollector));
+    }
+    if (stageCollector != null) {
+      results = stageCollector.sortedResults();
+      // Itineraries the stage ranked out still count towards the total
+      collector.addRankedOut(stageCollector.getRankedOut());
+    }
+
+    // Segments resolved from the in-memory index carry snapshot seat counts
+    if (connectionIndex != null && connectionIndex.isReady()) {
+      results = confirmSeatAvailability(results, request.getNoOfSeats());
     }
 
     logger.info("Found {} valid multi-hop flights with exactly {} hops", results.size(), exactHops);
     return results;
   }
 
-  /** Find and validate flights for a specific route with timing constraints */
-  private List<FlightSearchResult> findAndValidateFlightsForRoute(
-      List<String> route, FlightSearchRequest request, int expectedHops) {
-    if (route.size() != expectedHops + 1) {
-      logger.warn("Route size {} doesn't match expected hops {}", route.size(), expectedHops);
-      return new ArrayList<>();
+  /**
+   * Resolve every segment not yet in the memo: from the resident index when it covers them,
+   * otherwise from the shared segment cache, then with one Elasticsearch multi-search for the rest
+   * of the batch and database queries for the segments Elasticsearch could not serve
+   */
+  private void resolveSegments(
+      Set<SegmentKey> segments, Integer requiredSeats, Map<SegmentKey, List<Schedule>> memo) {
+    List<SegmentKey> missing =
+        segments.stream()
+            .filter(segment -> !memo.containsKey(segment))
+            .collect(Collectors.toList());
+    if (missing.isEmpty()) {
+      return;
     }
 
-    List<FlightSearchResult> routeFlights = new ArrayList<>();
-    LocalDateTime currentSearchTime = request.getDepartureDateTime();
+    // Serve the segments from the resident index when it covers their windows
+    if (connectionIndex != null
+        && missing.stream()
+            .allMatch(
+                segment -> connectionIndex.covers(segment.getStartTime(), segment.getEndTime()))) {
+      for (SegmentKey segment : missing) {
+        memo.put(
+            segment,
+            connectionIndex.findDepartures(
+                segment.getSource(),
+                segment.getDestination(),
+                segment.getStartTime(),
+                segment.getEndTime(),
+                requiredSeats));
+      }
+      return;
+    }
 
-    // Try to find flights for each segment of the route
-    List<List<Schedule>> segmentOptions = new ArrayList<>();
+    if (segmentAvailabilityCache != null && segmentAvailabilityCache.isEnabled()) {
+      resolveSegmentsThroughCache(missing, requiredSeats, memo);
+      return;
+    }
 
-    // Step 1: Find all flight options for each segment
-    for (int i = 0; i < route.size() - 1; i++) {
-      String fromAirport = route.get(i);
-      String toAirport = route.get(i + 1);
+    memo.putAll(fetchSegments(missing, requiredSeats));
+  }
 
-      // Define search window for this segment
-      LocalDateTime segmentStartTime = currentSearchTime;
-      LocalDateTime segmentEndTime = currentSearchTime.plusDays(1); // Search within 24 hours
+  /**
+   * Serve segments from the shared segment cache. The others are fetched widened to whole hours for
+   * at least one seat, cached, and then narrowed to their own window and seat count.
+   */
+  private void resolveSegmentsThroughCache(
+      List<SegmentKey> segments, Integer requiredSeats, Map<SegmentKey, List<Schedule>> memo) {
+    Map<SegmentKey, List<Schedule>> cached =
+        segmentAvailabilityCache.findAll(segments, requiredSeats);
+    memo.putAll(cached);
+
+    Map<SegmentKey, List<SegmentKey>> segmentsByAligned = new HashMap<>();
+    for (SegmentKey segment : segments) {
+      if (!cached.containsKey(segment)) {
+        segmentsByAligned
+            .computeIfAbsent(SegmentAvailabilityCache.align(segment), k -> new ArrayList<>())
+            .add(segment);
+      }
+    }
+    if (segmentsByAligned.isEmpty()) {
+      return;
+    }
 
-      // Find flights for this segment using Elasticsearch first, then database
-      List<Schedule> segmentSchedules =
-          findFlightsForSegment(
-              fromAirport, toAirport, segmentStartTime, segmentEndTime, request.getNoOfSeats());
+    Map<SegmentKey, List<Schedule>> fetched =
+        fetchSegments(new ArrayList<>(segmentsByAligned.keySet()), 1);
+    segmentAvailabilityCache.putAll(fetched);
 
-      if (segmentSchedules.isEmpty()) {
-        logger.debug("No flights found for segment {} -> {}", fromAirport, toAirport);
-        return new ArrayList<>(); // Cannot complete this route
+    for (Map.Entry<SegmentKey, List<SegmentKey>> entry : segmentsByAligned.entrySet()) {
+      List<Schedule> legs = fetched.getOrDefault(entry.getKey(), List.of());
+      for (SegmentKey segment : entry.getValue()) {
+        memo.put(segment, SegmentAvailabilityCache.within(legs, segment, requiredSeats));
       }
+    }
+  }
 
-      segmentOptions.add(segmentSchedules);
+  /**
+   * Fetch a batch of segments from Elasticsearch, falling back to the database for the segments it
+   * could not serve or whose Elasticsearch results were truncated
+   */
+  private Map<SegmentKey, List<Schedule>> fetchSegments(
+      List<SegmentKey> segments, Integer requiredSeats) {
+    Map<SegmentKey, List<Schedule>> resolved = new HashMap<>();
 
-      // Update search time for next segment (minimum layover time)
-      if (i < route.size() - 2) { // Not the last segment
-        LocalDateTime earliestArrival =
-            segmentSchedules.stream()
-                .map(Schedule::getArrivalTime)
-                .min(LocalDateTime::compareTo)
-                .orElse(currentSearchTime);
-        currentSearchTime = earliestArrival.plusMinutes(MIN_LAYOVER_MINUTES);
-      }
+    // Try Elasticsearch first if available
+    if (elasticsearchOperations != null) {
+      resolved.putAll(findSchedulesFromElasticsearch(segments, requiredSeats));
     }
 
-    // Step 2: Generate all valid flight combinations with timing validation
-    routeFlights.addAll(generateValidFlightCombinations(segmentOptions, route, expectedHops));
+    // Segments without complete Elasticsearch results fall back to the database
+    List<SegmentKey> unresolved =
+        segments.stream()
+            .filter(segment -> resolved.getOrDefault(segment, List.of()).isEmpty())
+            .collect(Collectors.toList());
+    if (!unresolved.isEmpty()) {
+      resolved.putAll(findSchedulesFromDatabase(unresolved, requiredSeats));
+    }
 
-    return routeFlights;
+    logger.debug(
+        "Resolved {} segments with {} unresolved in Elasticsearch",
+        segments.size(),
+        unresolved.size());
+    return resolved;
   }
 
-  /** Find flights for a specific segment using Elasticsearch first, then database fallback */
-  private List<Schedule> findFlightsForSegment(
-      String source,
-      String destination,
-      LocalDateTime startTime,
-      LocalDateTime endTime,
-      Integer requiredSeats) {
-    List<Schedule> schedules = new ArrayList<>();
-
+  /**
+   * Query Elasticsearch for a batch of segments in one multi-search, one bounded query per segment
+   * ordered by departure time, and build the matching legs. Segments with more matches than a query
+   * returns are left out, so the database serves them whole.
+   */
+  private Map<SegmentKey, List<Schedule>> findSchedulesFromElasticsearch(
+      List<SegmentKey> segments, Integer requiredSeats) {
     try {
-      // Try Elasticsearch first if available
-      if (flightSearchRepository != null) {
-        schedules =
-            findSchedulesFromElasticsearch(source, destination, startTime, endTime, requiredSeats);
+      List<Query> queries = new ArrayList<>(segments.size());
+      for (SegmentKey segment : segments) {
+        Criteria criteria =
+            new Criteria("source")
+                .is(segment.getSource())
+                .and("destination")
+                .is(segment.getDestination())
+                .and("departureTime")
+                .between(segment.getStartTime(), segment.getEndTime())
+                .and("availableSeats")
+                .greaterThanEqual(requiredSeats);
+        queries.add(
+            new CriteriaQuery(
+                criteria,
+                PageRequest.of(0, SEGMENT_RESULTS_LIMIT, Sort.by("departureTime").ascending())));
       }
-
-      // If no results from Elasticsearch, try database
-      if (schedules.isEmpty()) {
-        schedules =
-            scheduleRepository
-                .findDepartureSchedules(source, startTime, endTime, requiredSeats)
-                .stream()
-                .filter(schedule -> schedule.getDestination().equals(destination))
-                .collect(Collectors.toList());
+      List<SearchHits<FlightSearchDocument>> responses =
+          elasticsearchOperations.multiSearch(queries, FlightSearchDocument.class);
+
+      // Documents carry every field of a leg; only those indexed without them are hydrated, in a
+      // single fetch-joined query
+      List<SegmentKey> complete = new ArrayList<>(segments.size());
+      List<Schedule> schedules = new ArrayList<>();
+      List<Long> legacyScheduleIds = new ArrayList<>();
+      for (int i = 0; i < segments.size(); i++) {
+        SearchHits<FlightSearchDocument> hits = responses.get(i);
+        if (hits.getTotalHits() > hits.getSearchHits().size()) {
+          logger.debug("Elasticsearch results of segment {} truncated", segments.get(i));
+          continue;
+        }
+        complete.add(segments.get(i));
+        for (SearchHit<FlightSearchDocument> hit : hits.getSearchHits()) {
+          FlightSearchDocument doc = hit.getContent();
+          Schedule leg = toSchedule(doc);
+          if (leg != null) {
+            schedules.add(leg);
+          } else if (doc.getScheduleId() != null) {
+            legacyScheduleIds.add(doc.getScheduleId());
+          }
+        }
       }
+      if (!legacyScheduleIds.isEmpty()) {
+        logger.debug("Hydrating {} incomplete search documents", legacyScheduleIds.size());
+        schedules.addAll(scheduleRepository.findAllWithFlightByIdIn(legacyScheduleIds));
+      }
+      return assignToSegments(schedules, complete);
     } catch (Exception e) {
-      logger.warn(
-          "Error finding flights for segment {} -> {}: {}", source, destination, e.getMessage());
-      // Fallback to database only
-      schedules =
-          scheduleRepository
-              .findDepartureSchedules(source, startTime, endTime, requiredSeats)
-              .stream()
-              .filter(schedule -> schedule.getDestination().equals(destination))
-              .collect(Collectors.toList());
+      logger.debug("Error querying Elasticsearch: {}", e.getMessage());
+      return new HashMap<>();
+    }
+  }
+
+  /**
+   * Build a detached leg from a search document without touching the database, or return null when
+   * the document lacks a field a leg needs
+   */
+  private Schedule toSchedule(FlightSearchDocument doc) {
+    if (doc.getScheduleId() == null
+        || doc.getFlightNumber() == null
+        || doc.getAirline() == null
+        || doc.getSource() == null
+        || doc.getDestination() == null
+        || doc.getDepartureTime() == null
+        || doc.getArrivalTime() == null
+        || doc.getAvailableSeats() == null
+        || doc.getPrice() == null) {
+      return null;
     }
 
-    logger.debug("Found {} flights for segment {} -> {}", schedules.size(), source, destination);
-    return schedules;
+    Flight flight = new Flight(doc.getFlightNumber(), doc.getAirline(), null);
+    flight.setId(doc.getFlightId());
+
+    Schedule schedule =
+        new Schedule(
+            flight,
+            doc.getSource(),
+            doc.getDestination(),
+            doc.getDepartureTime(),
+            doc.getArrivalTime(),
+            doc.getAvailableSeats(),
+            doc.getPrice());
+    schedule.setId(doc.getScheduleId());
+    return schedule;
   }
 
-  /** Convert Elasticsearch results to Schedule entities for segment validation */
-  private List<Schedule> findSchedulesFromElasticsearch(
-      String source,
-      String destination,
-      LocalDateTime startTime,
-      LocalDateTime endTime,
-      Integer requiredSeats) {
-    // This is a simplified conversion - in practice, you'd need to fetch full Schedule entities
-    // based on the Elasticsearch document IDs
-    List<Schedule> schedules = new ArrayList<>();
+  /**
+   * Query the database for a batch of segments, once per source or once per destination, whichever
+   * takes fewer queries, so each query asks only for airport pairs some segment needs
+   */
+  private Map<SegmentKey, List<Schedule>> findSchedulesFromDatabase(
+      List<SegmentKey> segments, Integer requiredSeats) {
+    Map<String, List<SegmentKey>> bySource =
+        segments.stream().collect(Collectors.groupingBy(SegmentKey::getSource));
+    Map<String, List<SegmentKey>> byDestination =
+        segments.stream().collect(Collectors.groupingBy(SegmentKey::getDestination));
+    Collection<List<SegmentKey>> groups =
+        bySource.size() <= byDestination.size() ? bySource.values() : byDestination.values();
+
+    Map<SegmentKey, List<Schedule>> resolved = new HashMap<>();
+    for (List<SegmentKey> group : groups) {
+      List<Schedule> schedules =
+          scheduleRepository.findDepartureSchedulesForSegments(
+              group.stream().map(SegmentKey::getSource).collect(Collectors.toSet()),
+              group.stream().map(SegmentKey::getDestination).collect(Collectors.toSet()),
+              earliestStart(group),
+              latestEnd(group),
+              requiredSeats);
+      resolved.putAll(assignToSegments(schedules, group));
+    }
+    return resolved;
+  }
 
-    try {
-      Pageable pageable = PageRequest.of(0, 100);
-      Page<FlightSearchDocument> docs =
-          flightSearchRepository
-              .findBySourceAndDestinationAndDepartureTimeBetweenAndAvailableSeatsGreaterThanEqual(
-                  source, destination, startTime, endTime, requiredSeats, pageable);
-
-      // Convert documents to schedules (you'd need to implement this conversion)
-      for (FlightSearchDocument doc : docs.getContent()) {
-        // Fetch the actual schedule entity using the schedule ID from the document
-        scheduleRepository.findById(doc.getScheduleId()).ifPresent(schedules::add);
+  /**
+   * Distribute the schedules of a batch query over the segments they serve. Every segment gets an
+   * entry, in departure order, even when nothing matched it.
+   */
+  private Map<SegmentKey, List<Schedule>> assignToSegments(
+      List<Schedule> schedules, List<SegmentKey> segments) {
+    Map<SegmentKey, List<Schedule>> bySegment = new HashMap<>();
+    Map<String, List<SegmentKey>> segmentsByPair = new HashMap<>();
+    for (SegmentKey segment : segments) {
+      bySegment.put(segment, new ArrayList<>());
+      segmentsByPair
+          .computeIfAbsent(
+              segment.getSource() + "-" + segment.getDestination(), k -> new ArrayList<>())
+          .add(segment);
+    }
+
+    List<Schedule> ordered = new ArrayList<>(schedules);
+    ordered.sort(Comparator.comparing(Schedule::getDepartureTime));
+    for (Schedule schedule : ordered) {
+      List<SegmentKey> pairSegments =
+          segmentsByPair.get(schedule.getSource() + "-" + schedule.getDestination());
+      if (pairSegments == null) {
+        continue;
       }
-    } catch (Exception e) {
-      logger.debug("Error querying Elasticsearch: {}", e.getMessage());
+      for (SegmentKey segment : pairSegments) {
+        if (segment.contains(schedule.getDepartureTime())) {
+          bySegment.get(segment).add(schedule);
+        }
+      }
+    }
+
+    return bySegment;
+  }
+
+  private static LocalDateTime earliestStart(List<SegmentKey> segments) {
+    return segments.stream()
+        .map(SegmentKey::getStartTime)
+        .min(LocalDateTime::compareTo)
+        .orElseThrow();
+  }
+
+  private static LocalDateTime latestEnd(List<SegmentKey> segments) {
+    return segments.stream()
+        .map(SegmentKey::getEndTime)
+        .max(LocalDateTime::compareTo)
+        .orElseThrow();
+  }
+
+  /**
+   * Re-check live seat availability for itineraries assembled from the connection index, dropping
+   * any whose legs no longer have enough seats and refreshing the seat counts of the rest
+   */
+  private List<FlightSearchResult> confirmSeatAvailability(
+      List<FlightSearchResult> results, Integer requiredSeats) {
+    if (results.isEmpty()) {
+      return results;
+    }
+
+    Set<Long> scheduleIds =
+        results.stream()
+            .flatMap(result -> result.getSchedules().stream())
+            .map(ScheduleDto::getScheduleId)
+            .collect(Collectors.toSet());
+
+    Map<Long, Integer> liveSeats = new HashMap<>();
+    for (Object[] row : scheduleRepository.findAvailableSeatsByIds(scheduleIds)) {
+      liveSeats.put((Long) row[0], (Integer) row[1]);
     }
 
-    return schedules;
+    List<FlightSearchResult> confirmed = new ArrayList<>();
+    for (FlightSearchResult result : results) {
+      boolean available = true;
+      for (ScheduleDto leg : result.getSchedules()) {
+        Integer seats = liveSeats.get(leg.getScheduleId());
+        if (seats == null || seats < requiredSeats) {
+          available = false;
+          break;
+        }
+        leg.setAvailableSeats(seats);
+      }
+      if (available) {
+        confirmed.add(result);
+      }
+    }
+
+    logger.debug("{} of {} indexed itineraries still available", confirmed.size(), results.size());
+    return confirmed;
   }
 
-  private List<FlightSearchResult> searchDirectFlights(FlightSearchRequest request) {
+  /** Direct flights departing within the window, or at any later time when it is null */
+  private List<FlightSearchResult> searchDirectFlights(
+      FlightSearchRequest request, Duration departureWindow) {
     logger.info(
         "Searching direct flights from {} to {}", request.getSource(), request.getDestination());
 
     List<FlightSearchResult> results = new ArrayList<>();
+    LocalDateTime departureTime = request.getDepartureDateTime();
 
     if (flightSearchRepository != null) {
       // Search in Elasticsearch
       Pageable pageable = PageRequest.of(0, 100); // Get up to 100 direct flights
       Page<FlightSearchDocument> directFlights =
-          flightSearchRepository
-              .findBySourceAndDestinationAndDepartureTimeAfterAndAvailableSeatsGreaterThanEqual(
-                  request.getSource(),
-                  request.getDestination(),
-                  request.getDepartureDateTime(),
-                  request.getNoOfSeats(),
-                  pageable);
+          departureWindow == null
+              ? flightSearchRepository
+                  .findBySourceAndDestinationAndDepartureTimeAfterAndAvailableSeatsGreaterThanEqual(
+                      request.getSource(),
+                      request.getDestination(),
+                      departureTime,
+                      request.getNoOfSeats(),
+                      pageable)
+              : flightSearchRepository
+                  .findBySourceAndDestinationAndDepartureTimeBetweenAndAvailableSeatsGreaterThanEqual(
+                      request.getSource(),
+                      request.getDestination(),
+                      departureTime,
+                      departureTime.plus(departureWindow),
+                      request.getNoOfSeats(),
+                      pageable);
 
       results =
           directFlights.stream()
@@ -266,6 +1008,10 @@ public class FlightSearchService {
     } else {
       // Fallback to database search
       results = searchDirectFlightsFromDatabase(request);
+      if (departureWindow != null) {
+        LocalDateTime departureLimit = departureTime.plus(departureWindow);
+        results.removeIf(result -> result.getDepartureTime().isAfter(departureLimit));
+      }
     }
 
     logger.info("Found {} direct flights", results.size());
@@ -402,15 +1148,38 @@ public class FlightSearchService {
     }
   }
 
-  /** Generate all valid flight combinations with strict timing validation */
+  /**
+   * Generate all valid flight combinations with strict timing validation. With a collector the
+   * combinations are offered to it instead of returned, and pruned against it.
+   */
   private List<FlightSearchResult> generateValidFlightCombinations(
-      List<List<Schedule>> segmentOptions, List<String> route, int expectedHops) {
+      List<List<Schedule>> segmentOptions,
+      List<String> route,
+      int expectedHops,
+      ItineraryCollector collector) {
 
     List<FlightSearchResult> validCombinations = new ArrayList<>();
 
+    // Cheapest fare of each segment, for a lower bound on the price of partial combinations
+    double[] minFares = new double[segmentOptions.size()];
+    for (int i = 0; i < minFares.length; i++) {
+      minFares[i] =
+          segmentOptions.get(i).stream()
+              .mapToDouble(s -> s.getBaseFare().doubleValue())
+              .min()
+              .orElse(0);
+    }
+
     // Use recursive approach to generate all valid timing combinations
     generateTimingValidatedCombinations(
-        segmentOptions, new ArrayList<>(), 0, route, expectedHops, validCombinations);
+        segmentOptions,
+        new ArrayList<>(),
+        0,
+        route,
+        expectedHops,
+        validCombinations,
+        collector,
+        minFares);
 
     return validCombinations;
   }
@@ -422,13 +1191,20 @@ public class FlightSearchService {
       int segmentIndex,
       List<String> route,
       int expectedHops,
-      List<FlightSearchResult> results) {
+      List<FlightSearchResult> results,
+      ItineraryCollector collector,
+      double[] minFares) {
 
     if (segmentIndex >= segmentOptions.size()) {
       // Complete combination found - create result
       if (isValidFlightCombination(currentCombination)) {
         FlightSearchResult result = createMultiHopFlightResult(currentCombination, expectedHops);
-        if (result != null) {
+        if (result == null) {
+          return;
+        }
+        if (collector != null) {
+          collector.offer(result);
+        } else {
           results.add(result);
         }
       }
@@ -442,13 +1218,44 @@ public class FlightSearchService {
       if (segmentIndex == 0
           || isValidTimingConnection(currentCombination.get(segmentIndex - 1), flightOption)) {
         currentCombination.add(flightOption);
-        generateTimingValidatedCombinations(
-            segmentOptions, currentCombination, segmentIndex + 1, route, expectedHops, results);
+        if (collector == null
+            || !cannotRank(collector, currentCombination, minFares, expectedHops)) {
+          generateTimingValidatedCombinations(
+              segmentOptions,
+              currentCombination,
+              segmentIndex + 1,
+              route,
+              expectedHops,
+              results,
+              collector,
+              minFares);
+        }
         currentCombination.remove(currentCombination.size() - 1); // Backtrack
       }
     }
   }
 
+  /**
+   * Whether no completion of a partial combination can be collected. Its price is at least the
+   * fares so far plus the cheapest fare of every remaining segment, summed in leg order as the
+   * final price is.
+   */
+  private boolean cannotRank(
+      ItineraryCollector collector,
+      List<Schedule> partialCombination,
+      double[] minFares,
+      int expectedHops) {
+    double minPrice = 0;
+    for (Schedule leg : partialCombination) {
+      minPrice += leg.getBaseFare().doubleValue();
+    }
+    for (int i = partialCombination.size(); i < minFares.length; i++) {
+      minPrice += minFares[i];
+    }
+    return collector.rejectsAll(
+        partialCombination.get(0).getDepartureTime(), minPrice, expectedHops);
+  }
+
   /** Enhanced timing validation for connections */
   private boolean isValidTimingConnection(Schedule prevFlight, Schedule nextFlight) {
     // Verify airport connection
@@ -528,7 +1335,7 @@ public class FlightSearchService {
 
   private Page<FlightSearchResult> paginateResults(
       List<FlightSearchResult> results, Pageable pageable) {
-    int start = (int) pageable.getOffset();
+    int start = (int) Math.min(pageable.getOffset(), results.size());
     int end = Math.min((start + pageable.getPageSize()), results.size());
 
     return new PageImpl<>(results.subList(start, end), pageable, results.size());
@@ -645,4 +1452,47 @@ public class FlightSearchService {
         totalHops,
         scheduleDtos);
   }
+
+  /** A route whose segments are being resolved, with the options found so far */
+  private static final class RouteCandidate {
+
+    private final List<String> route;
+    private final List<List<Schedule>> segmentOptions = new ArrayList<>();
+    private LocalDateTime windowStart;
+    private LocalDateTime windowEnd;
+
+    private RouteCandidate(List<String> route, LocalDateTime windowStart, LocalDateTime windowEnd) {
+      this.route = route;
+      this.windowStart = windowStart;
+      this.windowEnd = windowEnd;
+    }
+
+    /** The segment at the given layer, searched within the current departure window */
+    private SegmentKey segmentKey(int layer) {
+      return new SegmentKey(route.get(layer), route.get(layer + 1), windowStart, windowEnd);
+    }
+
+    private void addSegmentOptions(List<Schedule> segmentSchedules) {
+      segmentOptions.add(segmentSchedules);
+
+      // Update search window for next segment (minimum layover time)
+      LocalDateTime earliestArrival =
+          segmentSchedules.stream()
+              .map(Schedule::getArrivalTime)
+              .min(LocalDateTime::compareTo)
+              .orElse(windowStart);
+      LocalDateTime latestArrival =
+          segmentSchedules.stream()
+              .map(Schedule::getArrivalTime)
+              .max(LocalDateTime::compareTo)
+              .orElse(windowStart);
+      windowStart = earliestArrival.plusMinutes(MIN_LAYOVER_MINUTES);
+      // At least 24 hours, and long enough for the latest arrival to use its maximum layover
+      LocalDateTime latestConnection = latestArrival.plusHours(MAX_LAYOVER_HOURS);
+      windowEnd =
+          latestConnection.isAfter(windowStart.plusDays(1))
+              ? latestConnection
+              : windowStart.plusDays(1);
+    }
+  }
 }
@@ -0,0 +1,122 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.dto.FlightSearchResult;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Bounded collector of the best itineraries of a search. Only the first capacity itineraries after
+ * the continuation cursor are kept, in a heap whose head is the worst of them, so generators can
+ * abandon partial itineraries that could never rank ahead of it. Hop stages offer concurrently, so
+ * every method is synchronized.
+ */
+final class ItineraryCollector {
+
+  private final ItineraryOrder order;
+  private final int capacity;
+  private final ContinuationToken after;
+  private final Double maxPrice;
+  private final Predicate<FlightSearchResult> filter;
+  private final ItineraryCollector parent;
+  private final PriorityQueue<FlightSearchResult> heap;
+  private int accepted;
+
+  ItineraryCollector(
+      ItineraryOrder order,
+      int capacity,
+      ContinuationToken after,
+      Double maxPrice,
+      Predicate<FlightSearchResult> filter) {
+    this(order, capacity, after, maxPrice, filter, null);
+  }
+
+  private ItineraryCollector(
+      ItineraryOrder order,
+      int capacity,
+      ContinuationToken after,
+      Double maxPrice,
+      Predicate<FlightSearchResult> filter,
+      ItineraryCollector parent) {
+    this.order = order;
+    this.capacity = Math.max(capacity, 1);
+    this.after = after;
+    this.maxPrice = maxPrice;
+    this.filter = filter;
+    this.parent = parent;
+    this.heap = new PriorityQueue<>(this.capacity, order.reversed());
+  }
+
+  /**
+   * Collector for the itineraries of one hop stage before they are merged here. It prunes against
+   * its own heap and against everything already merged into this collector.
+   */
+  ItineraryCollector newStageCollector() {
+    return new ItineraryCollector(order, capacity, after, maxPrice, filter, this);
+  }
+
+  boolean hasCursor() {
+    return after != null;
+  }
+
+  synchronized void offer(FlightSearchResult result) {
+    if (!filter.test(result) || (after != null && order.compare(result, after) <= 0)) {
+      return;
+    }
+
+    accepted++;
+    if (heap.size() < capacity) {
+      heap.add(result);
+    } else if (order.compare(result, heap.peek()) < 0) {
+      heap.poll();
+      heap.add(result);
+    }
+  }
+
+  void offerAll(Collection<FlightSearchResult> results) {
+    results.forEach(this::offer);
+  }
+
+  /**
+   * Whether every itinerary whose sort keys are at best these would be rejected, because it exceeds
+   * the price filter or the heap is full and its worst entry already ranks ahead of them
+   */
+  synchronized boolean rejectsAll(LocalDateTime departureTime, double minPrice, int hops) {
+    if (maxPrice != null && minPrice > maxPrice) {
+      return true;
+    }
+    if (heap.size() >= capacity && order.ranksAfter(departureTime, minPrice, hops, heap.peek())) {
+      return true;
+    }
+    return parent != null && parent.rejectsAll(departureTime, minPrice, hops);
+  }
+
+  /** Collected itineraries, best first */
+  synchronized List<FlightSearchResult> sortedResults() {
+    List<FlightSearchResult> results = new ArrayList<>(heap);
+    results.sort(order);
+    return results;
+  }
+
+  /**
+   * Number of itineraries that passed the filters and ranked after the cursor, including those
+   * stage collectors ranked out before merging. Pruned partial itineraries are never counted, so
+   * this is a lower bound on the full result count.
+   */
+  synchronized int getAccepted() {
+    return accepted;
+  }
+
+  /** Number of accepted itineraries that fell out of the heap */
+  synchronized int getRankedOut() {
+    return accepted - heap.size();
+  }
+
+  /** Count the itineraries a stage collector ranked out; its kept ones are offered separately */
+  synchronized void addRankedOut(int count) {
+    accepted += count;
+  }
+}
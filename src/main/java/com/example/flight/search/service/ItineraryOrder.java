@@ -0,0 +1,120 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+/**
+ * Total order of itineraries for a request's sort. The requested key ranks first; departure time,
+ * price, hops and the schedule ids of the legs break ties, so every itinerary has a stable position
+ * a continuation token can point at.
+ */
+enum ItineraryOrder implements Comparator<FlightSearchResult> {
+  DEPARTURE,
+  PRICE,
+  HOPS;
+
+  static ItineraryOrder of(FlightSearchRequest request) {
+    if (Boolean.TRUE.equals(request.getSortByPrice())) {
+      return PRICE;
+    }
+    if (Boolean.TRUE.equals(request.getSortByHops())) {
+      return HOPS;
+    }
+    return DEPARTURE;
+  }
+
+  @Override
+  public int compare(FlightSearchResult a, FlightSearchResult b) {
+    return compare(
+        a.getDepartureTime(),
+        a.getPrice(),
+        a.getNumberOfHops(),
+        signature(a),
+        b.getDepartureTime(),
+        b.getPrice(),
+        b.getNumberOfHops(),
+        signature(b));
+  }
+
+  /** Position of an itinerary relative to the last itinerary of the previous page */
+  int compare(FlightSearchResult result, ContinuationToken token) {
+    return compare(
+        result.getDepartureTime(),
+        result.getPrice(),
+        result.getNumberOfHops(),
+        signature(result),
+        token.getDepartureTime(),
+        token.getPrice(),
+        token.getHops(),
+        token.getSignature());
+  }
+
+  /**
+   * Whether an itinerary whose sort keys are at best these ranks after the given itinerary, and so
+   * after every itinerary that ranks ahead of it
+   */
+  boolean ranksAfter(
+      LocalDateTime departureTime, double minPrice, int hops, FlightSearchResult result) {
+    switch (this) {
+      case PRICE:
+        return minPrice > result.getPrice().doubleValue();
+      case HOPS:
+        return hops > result.getNumberOfHops();
+      default:
+        return departureTime.isAfter(result.getDepartureTime());
+    }
+  }
+
+  private int compare(
+      LocalDateTime departureA,
+      BigDecimal priceA,
+      int hopsA,
+      String signatureA,
+      LocalDateTime departureB,
+      BigDecimal priceB,
+      int hopsB,
+      String signatureB) {
+    int primary;
+    switch (this) {
+      case PRICE:
+        primary = priceA.compareTo(priceB);
+        break;
+      case HOPS:
+        primary = Integer.compare(hopsA, hopsB);
+        break;
+      default:
+        primary = departureA.compareTo(departureB);
+    }
+    if (primary != 0) {
+      return primary;
+    }
+
+    int result = departureA.compareTo(departureB);
+    if (result == 0) {
+      result = priceA.compareTo(priceB);
+    }
+    if (result == 0) {
+      result = Integer.compare(hopsA, hopsB);
+    }
+    if (result == 0) {
+      result = signatureA.compareTo(signatureB);
+    }
+    return result;
+  }
+
+  /** Schedule ids of the legs, which identify an itinerary across searches */
+  static String signature(FlightSearchResult result) {
+    if (result.getSchedules() == null || result.getSchedules().isEmpty()) {
+      return String.valueOf(result.getFlightNumber());
+    }
+    return result.getSchedules().stream()
+        .map(ScheduleDto::getScheduleId)
+        .map(String::valueOf)
+        .collect(Collectors.joining(">"));
+  }
+}
@@ -0,0 +1,103 @@
+package com.example.flight.search.service;
+
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Airport pairs the route graph cannot connect with a given number of hops, cached in Redis so
+ * searches for impossible pairs, e.g. scrapers probing random airports, stop querying Neo4j.
+ * Entries live under a versioned namespace like {@link CacheService}: a route graph change bumps
+ * the generation, so every entry is invalidated at once without scanning, and old ones expire with
+ * their TTL.
+ */
+@Service
+public class NegativeRouteCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(NegativeRouteCache.class);
+  private static final String KEY_PREFIX = "flight_search:noroute:";
+  static final String GENERATION_KEY = KEY_PREFIX + "generation";
+
+  @Autowired(required = false)
+  private StringRedisTemplate redisTemplate;
+
+  @Value("${flight.search.negative-cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${flight.search.negative-cache.ttl-seconds:3600}")
+  private long ttlSeconds;
+
+  @Value("${flight.search.cache.generation-refresh-ms:1000}")
+  private long generationRefreshMs;
+
+  private volatile long generation;
+  private volatile long generationReadAt;
+
+  public boolean isEnabled() {
+    return enabled && redisTemplate != null;
+  }
+
+  /** Whether the route graph is known to have no path with exactly this many hops */
+  public boolean isUnreachable(String source, String destination, int hops) {
+    if (!isEnabled()) {
+      return false;
+    }
+    try {
+      return Boolean.TRUE.equals(redisTemplate.hasKey(key(source, destination, hops)));
+    } catch (Exception e) {
+      logger.debug("Error reading negative route cache: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  /** Record that the route graph has no path with exactly this many hops */
+  public void markUnreachable(String source, String destination, int hops) {
+    if (!isEnabled()) {
+      return;
+    }
+    try {
+      redisTemplate
+          .opsForValue()
+          .set(key(source, destination, hops), "", Duration.ofSeconds(ttlSeconds));
+      logger.debug("Cached absence of {}-hop routes from {} to {}", hops, source, destination);
+    } catch (Exception e) {
+      logger.debug("Error writing negative route cache: {}", e.getMessage());
+    }
+  }
+
+  /** Forget every cached absence, e.g. after airports or routes were added to the graph */
+  public void invalidateAll() {
+    if (redisTemplate == null) {
+      return;
+    }
+    try {
+      Long next = redisTemplate.opsForValue().increment(GENERATION_KEY);
+      if (next != null) {
+        generation = next;
+        generationReadAt = System.currentTimeMillis();
+      }
+      logger.info("Invalidated negative route cache, now at generation {}", next);
+    } catch (Exception e) {
+      logger.warn("Error invalidating negative route cache: {}", e.getMessage());
+    }
+  }
+
+  private String key(String source, String destination, int hops) {
+    return KEY_PREFIX + "v" + currentGeneration() + ":" + source + "_" + destination + "_" + hops;
+  }
+
+  /** Current generation, re-read from Redis at most once per refresh interval */
+  private long currentGeneration() {
+    long now = System.currentTimeMillis();
+    if (generationReadAt == 0 || now - generationReadAt >= generationRefreshMs) {
+      Long value = redisTemplate.opsForValue().increment(GENERATION_KEY, 0);
+      generation = value != null ? value : 0;
+      generationReadAt = now;
+    }
+    return generation;
+  }
+}
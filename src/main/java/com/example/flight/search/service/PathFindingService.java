@@ -23,11 +23,21 @@ import org.springframework.stereotype.Service;
 public class PathFindingService {
 
   private static final Logger logger = LoggerFactory.getLogger(PathFindingService.class);
+  private static final int MAX_ROUTES = 100; // Routes per hop count
 
   @Autowired private AirportRepository airportRepository;
 
   @Autowired private ScheduleRepository scheduleRepository;
 
+  @Autowired(required = false)
+  private NegativeRouteCache negativeRouteCache;
+
+  @Autowired(required = false)
+  private AirportGraph airportGraph;
+
+  @Autowired(required = false)
+  private RouteCatalog routeCatalog;
+
   public List<FlightSearchResult> findConnectingFlights(FlightSearchRequest request) {
     logger.info(
         "Finding connecting flights from {} to {} using Neo4j",
@@ -244,15 +254,23 @@ public class PathFindingService {
   public List<List<String>> findRoutesWithHops(String source, String destination, int hops) {
     logger.info("Finding routes from {} to {} with exactly {} hops", source, destination, hops);
 
-    List<List<String>> routes = new ArrayList<>();
+    // Pairs known not to be connected skip the catalog, the graph and Neo4j entirely
+    if (isCachedUnreachable(source, destination, hops)) {
+      logger.info("No {}-hop routes from {} to {} (cached)", hops, source, destination);
+      return new ArrayList<>();
+    }
+
+    List<List<String>> routes = findResidentRoutes(source, destination, hops);
+    if (routes != null) {
+      return routes;
+    }
+    routes = new ArrayList<>();
 
     try {
       if (airportRepository != null) {
         // Use Neo4j to find routes with specific hop count
         List<List<Airport>> neo4jRoutes =
-            airportRepository.findPathsWithExactHops(
-                source, destination, hops, 100 // maxResults
-                );
+            airportRepository.findPathsWithExactHops(source, destination, hops, MAX_ROUTES);
 
         // Convert Airport paths to String airport codes
         for (List<Airport> airportPath : neo4jRoutes) {
@@ -262,6 +280,11 @@ public class PathFindingService {
         }
 
         logger.info("Found {} routes with {} hops using Neo4j", routes.size(), hops);
+
+        // Only an answer from the graph is cached; fallbacks may miss routes
+        if (routes.isEmpty() && negativeRouteCache != null) {
+          negativeRouteCache.markUnreachable(source, destination, hops);
+        }
       } else {
         // Fallback: Generate routes algorithmically
         routes = findRoutesAlgorithmically(source, destination, hops);
@@ -277,6 +300,47 @@ public class PathFindingService {
     return routes;
   }
 
+  /**
+   * Whether the pair is known to have no route with exactly this many hops, from the negative cache
+   * or the resident catalog or graph; false while neither is loaded
+   */
+  public boolean isUnreachable(String source, String destination, int hops) {
+    if (isCachedUnreachable(source, destination, hops)) {
+      return true;
+    }
+    List<List<String>> routes = findResidentRoutes(source, destination, hops);
+    return routes != null && routes.isEmpty();
+  }
+
+  private boolean isCachedUnreachable(String source, String destination, int hops) {
+    return negativeRouteCache != null
+        && negativeRouteCache.isUnreachable(source, destination, hops);
+  }
+
+  /**
+   * Routes from the precomputed catalog or the resident graph, caching their absence, or null when
+   * neither is loaded
+   */
+  private List<List<String>> findResidentRoutes(String source, String destination, int hops) {
+    List<List<String>> routes;
+    if (routeCatalog != null && routeCatalog.covers(hops)) {
+      // Precomputed routes, best ranked first
+      routes = routeCatalog.findRoutes(source, destination, hops, MAX_ROUTES);
+      logger.info("Found {} routes with {} hops in the route catalog", routes.size(), hops);
+    } else if (airportGraph != null && airportGraph.isReady()) {
+      // The resident graph answers without any I/O once it is loaded
+      routes = airportGraph.findRoutes(source, destination, hops, MAX_ROUTES);
+      logger.info("Found {} routes with {} hops in the airport graph", routes.size(), hops);
+    } else {
+      return null;
+    }
+
+    if (routes.isEmpty() && negativeRouteCache != null) {
+      negativeRouteCache.markUnreachable(source, destination, hops);
+    }
+    return routes;
+  }
+
   /** Find all possible routes up to the specified maximum hops */
   public List<List<String>> findAllRoutesUpToMaxHops(
       String source, String destination, int maxHops) {
@@ -0,0 +1,215 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.entity.Schedule;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Round-based (RAPTOR-style) search over the {@link ConnectionIndex}. Round k extends the labels
+ * improved in round k - 1 by one leg, so round k holds itineraries with k stops. Every airport
+ * keeps a bag of Pareto-optimal labels on departure time, arrival time, number of hops and
+ * accumulated base fare; a dominated label is never extended, so the cartesian product of segment
+ * options on busy hub pairs is never materialized.
+ *
+ * <p>Because a layover may not exceed {@link FlightSearchService#MAX_LAYOVER_HOURS}, a later
+ * arrival at an intermediate airport can still reach a connection that an earlier, dominating label
+ * has already missed. Those itineraries are pruned as well, trading completeness for a bounded
+ * frontier; use the ROUTE or CSA mode when every combination is required.
+ */
+@Service
+public class RaptorSearchEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(RaptorSearchEngine.class);
+
+  @Autowired private ConnectionIndex connectionIndex;
+
+  /** Whether the index covers every departure the rounds of this search could use */
+  public boolean canSearch(LocalDateTime departureTime, int maxHops) {
+    return canSearch(departureTime, Duration.ofDays(1), maxHops);
+  }
+
+  /** Whether the index covers every departure a search with this first-leg window could use */
+  public boolean canSearch(LocalDateTime departureTime, Duration firstLegWindow, int maxHops) {
+    return connectionIndex.covers(
+        departureTime, departureTime.plus(firstLegWindow).plusDays(maxHops));
+  }
+
+  /**
+   * Find the Pareto-optimal itineraries from source to destination whose first leg departs within
+   * 24 hours of the departure time, with at most maxHops stops.
+   *
+   * @return the legs of each itinerary, in travel order and sorted by departure
+   */
+  public List<List<Schedule>> search(
+      String source,
+      String destination,
+      LocalDateTime departureTime,
+      Integer requiredSeats,
+      int maxHops) {
+    return search(source, destination, departureTime, Duration.ofDays(1), requiredSeats, maxHops);
+  }
+
+  /**
+   * Find the Pareto-optimal itineraries from source to destination whose first leg departs within
+   * the given window after the departure time, with at most maxHops stops.
+   *
+   * @return the legs of each itinerary, in travel order and sorted by departure
+   */
+  public List<List<Schedule>> search(
+      String source,
+      String destination,
+      LocalDateTime departureTime,
+      Duration firstLegWindow,
+      Integer requiredSeats,
+      int maxHops) {
+    Map<String, List<Label>> bags = new HashMap<>();
+    List<Label> marked = new ArrayList<>();
+
+    // Round 0: first legs out of the source
+    for (Schedule leg :
+        connectionIndex.findDepartures(
+            source, departureTime, departureTime.plus(firstLegWindow), requiredSeats)) {
+      Label label = new Label(null, leg);
+      if (insert(bags, label)) {
+        marked.add(label);
+      }
+    }
+
+    int labels = marked.size();
+
+    // Round k: extend every label improved in round k - 1 by exactly one leg
+    for (int round = 1; round <= maxHops && !marked.isEmpty(); round++) {
+      List<Label> improved = new ArrayList<>();
+
+      for (Label label : marked) {
+        if (label.dominated || label.airport.equals(destination)) {
+          continue;
+        }
+
+        LocalDateTime arrival = label.leg.getArrivalTime();
+        List<Schedule> onward =
+            connectionIndex.findDepartures(
+                label.airport,
+                arrival.plusMinutes(FlightSearchService.MIN_LAYOVER_MINUTES),
+                arrival.plusHours(FlightSearchService.MAX_LAYOVER_HOURS),
+                requiredSeats);
+
+        for (Schedule leg : onward) {
+          if (label.visits(leg.getDestination())) {
+            continue;
+          }
+          Label extended = new Label(label, leg);
+          if (insert(bags, extended)) {
+            improved.add(extended);
+          }
+        }
+      }
+
+      labels += improved.size();
+      marked = improved;
+    }
+
+    List<List<Schedule>> itineraries =
+        bags.getOrDefault(destination, List.of()).stream()
+            .sorted(Comparator.comparing(label -> label.departureTime))
+            .map(Label::legs)
+            .collect(Collectors.toList());
+
+    logger.info(
+        "RAPTOR search created {} labels and found {} Pareto-optimal itineraries from {} to {}",
+        labels,
+        itineraries.size(),
+        source,
+        destination);
+    return itineraries;
+  }
+
+  /**
+   * Add a label to the bag of its airport unless an existing label dominates it, evicting every
+   * label it dominates in turn.
+   *
+   * @return whether the label was added
+   */
+  private boolean insert(Map<String, List<Label>> bags, Label label) {
+    List<Label> bag = bags.computeIfAbsent(label.airport, k -> new ArrayList<>());
+
+    for (Label existing : bag) {
+      if (existing.dominates(label)) {
+        return false;
+      }
+    }
+
+    Iterator<Label> iterator = bag.iterator();
+    while (iterator.hasNext()) {
+      Label existing = iterator.next();
+      if (label.dominates(existing)) {
+        existing.dominated = true;
+        iterator.remove();
+      }
+    }
+
+    bag.add(label);
+    return true;
+  }
+
+  /** Partial itinerary ending at an airport, sharing its prefix with the label it extends */
+  private static final class Label {
+
+    private final Label previous;
+    private final Schedule leg;
+    private final String airport;
+    private final LocalDateTime departureTime;
+    private final LocalDateTime arrivalTime;
+    private final int hops;
+    private final BigDecimal fare;
+    private boolean dominated;
+
+    private Label(Label previous, Schedule leg) {
+      this.previous = previous;
+      this.leg = leg;
+      this.airport = leg.getDestination();
+      this.departureTime = previous == null ? leg.getDepartureTime() : previous.departureTime;
+      this.arrivalTime = leg.getArrivalTime();
+      this.hops = previous == null ? 0 : previous.hops + 1;
+      this.fare = previous == null ? leg.getBaseFare() : previous.fare.add(leg.getBaseFare());
+    }
+
+    /** Leaves no earlier, arrives no later, with no more hops and no higher fare */
+    private boolean dominates(Label other) {
+      return !departureTime.isBefore(other.departureTime)
+          && !arrivalTime.isAfter(other.arrivalTime)
+          && hops <= other.hops
+          && fare.compareTo(other.fare) <= 0;
+    }
+
+    private boolean visits(String code) {
+      for (Label label = this; label != null; label = label.previous) {
+        if (label.leg.getSource().equals(code) || label.leg.getDestination().equals(code)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private List<Schedule> legs() {
+      LinkedList<Schedule> legs = new LinkedList<>();
+      for (Label label = this; label != null; label = label.previous) {
+        legs.addFirst(label.leg);
+      }
+      return new ArrayList<>(legs);
+    }
+  }
+}
@@ -0,0 +1,387 @@
+package com.example.flight.search.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+/**
+ * Every simple route between every pair of airports up to a number of stops, precomputed from the
+ * resident {@link AirportGraph} and ranked by total distance, then total average price. Route
+ * topology changes rarely, so searches read their routes from here instead of enumerating paths.
+ *
+ * <p>Routes whose great-circle length exceeds the circuity factor times the direct distance, such
+ * as DEL-COK-CCU-BOM, are never catalogued. The walk stops extending a partial route once no
+ * airport it could still reach would make it short enough, and gives up on a source after
+ * max-expansions-per-source edges.
+ *
+ * <p>When the graph is refreshed only the sources whose routes can pass through a changed edge are
+ * recomputed: those that reach the edge's origin within maxHops edges in the old or the new graph.
+ * Recomputes run one at a time on their own thread, never on the thread refreshing the graph.
+ */
+@Service
+public class RouteCatalog {
+
+  private static final Logger logger = LoggerFactory.getLogger(RouteCatalog.class);
+  private static final Comparator<Candidate> BY_RANK =
+      Comparator.comparingLong((Candidate route) -> route.distance)
+          .thenComparingDouble(route -> route.avgPrice);
+
+  @Value("${flight.search.route-catalog.enabled:true}")
+  private boolean enabled;
+
+  @Value("${flight.search.route-catalog.max-hops:3}")
+  private int maxHops;
+
+  @Value("${flight.search.route-catalog.routes-per-hop-count:100}")
+  private int routesPerHopCount;
+
+  @Value("${flight.search.route-catalog.max-expansions-per-source:500000}")
+  private int maxExpansionsPerSource;
+
+  @Value("${flight.search.route-pruning.circuity-factor:0}")
+  private double circuityFactor;
+
+  // Ranked routes by source, then destination
+  private final Map<String, Map<String, List<CatalogRoute>>> routesBySource =
+      new ConcurrentHashMap<>();
+  private volatile AirportGraph.Snapshot catalogued;
+
+  /** Whether routes with this many stops can be served from the catalog */
+  public boolean covers(int hops) {
+    return enabled && catalogued != null && hops >= 0 && hops <= maxHops;
+  }
+
+  /**
+   * Routes from source to destination with exactly the given number of stops, best ranked first, at
+   * most maxResults of them
+   */
+  public List<List<String>> findRoutes(
+      String source, String destination, int hops, int maxResults) {
+    List<CatalogRoute> ranked =
+        routesBySource.getOrDefault(source, Collections.emptyMap()).get(destination);
+    if (ranked == null) {
+      return Collections.emptyList();
+    }
+
+    List<List<String>> routes = new ArrayList<>();
+    for (CatalogRoute route : ranked) {
+      if (routes.size() >= maxResults) {
+        break;
+      }
+      if (route.airports.size() == hops + 2) {
+        routes.add(route.airports);
+      }
+    }
+    return routes;
+  }
+
+  /** Ranked routes from a source by destination, empty for an unknown source */
+  Map<String, List<CatalogRoute>> routesFrom(String source) {
+    return routesBySource.getOrDefault(source, Collections.emptyMap());
+  }
+
+  @Async("routeCatalogExecutor")
+  @EventListener
+  public void onGraphRefreshed(AirportGraphRefreshedEvent event) {
+    if (!enabled) {
+      return;
+    }
+
+    long started = System.currentTimeMillis();
+    AirportGraph.Snapshot previous = event.getPrevious();
+    AirportGraph.Snapshot current = event.getCurrent();
+    Set<String> sources;
+
+    if (previous == null || previous != catalogued) {
+      sources = new HashSet<>();
+      for (int id = 0; id < current.size(); id++) {
+        sources.add(current.code(id));
+      }
+      routesBySource.keySet().retainAll(sources);
+    } else {
+      sources = affectedSources(previous, current);
+      for (String source : sources) {
+        if (current.idOf(source) < 0) {
+          routesBySource.remove(source);
+        }
+      }
+    }
+
+    double[] farthest = farthestDistances(current);
+    for (String source : sources) {
+      int id = current.idOf(source);
+      if (id >= 0) {
+        routesBySource.put(source, computeRoutes(current, id, farthest));
+      }
+    }
+    catalogued = current;
+    logger.info(
+        "Route catalog recomputed for {} of {} airports in {} ms",
+        sources.size(),
+        current.size(),
+        System.currentTimeMillis() - started);
+  }
+
+  /** Sources that reach the origin of an added, removed or changed edge within maxHops edges */
+  private Set<String> affectedSources(
+      AirportGraph.Snapshot previous, AirportGraph.Snapshot current) {
+    Set<String> before = edgeSignatures(previous);
+    Set<String> after = edgeSignatures(current);
+    Set<String> origins = new HashSet<>();
+    for (String edge : before) {
+      if (!after.contains(edge)) {
+        origins.add(edge.substring(0, edge.indexOf('>')));
+      }
+    }
+    for (String edge : after) {
+      if (!before.contains(edge)) {
+        origins.add(edge.substring(0, edge.indexOf('>')));
+      }
+    }
+
+    Set<String> sources = new HashSet<>();
+    if (!origins.isEmpty()) {
+      sources.addAll(reachingWithin(previous, origins));
+      sources.addAll(reachingWithin(current, origins));
+    }
+    return sources;
+  }
+
+  /** One string per edge that changes whenever its endpoints, length or price change */
+  private static Set<String> edgeSignatures(AirportGraph.Snapshot graph) {
+    Set<String> signatures = new HashSet<>();
+    for (int id = 0; id < graph.size(); id++) {
+      for (int e = graph.firstEdge(id); e < graph.endEdge(id); e++) {
+        signatures.add(
+            graph.code(id)
+                + ">"
+                + graph.code(graph.target(e))
+                + ">"
+                + graph.distance(e)
+                + ">"
+                + graph.greatCircleKm(id, graph.target(e))
+                + ">"
+                + graph.avgPrice(e));
+      }
+    }
+    return signatures;
+  }
+
+  /** Airports from which one of the targets is reachable within maxHops edges, targets included */
+  private Set<String> reachingWithin(AirportGraph.Snapshot graph, Set<String> targets) {
+    Map<Integer, List<Integer>> incoming = new HashMap<>();
+    for (int id = 0; id < graph.size(); id++) {
+      for (int e = graph.firstEdge(id); e < graph.endEdge(id); e++) {
+        incoming.computeIfAbsent(graph.target(e), k -> new ArrayList<>()).add(id);
+      }
+    }
+
+    BitSet reached = new BitSet(graph.size());
+    List<Integer> frontier = new ArrayList<>();
+    Set<String> result = new HashSet<>(targets);
+    for (String target : targets) {
+      int id = graph.idOf(target);
+      if (id >= 0) {
+        reached.set(id);
+        frontier.add(id);
+      }
+    }
+
+    for (int depth = 0; depth < maxHops && !frontier.isEmpty(); depth++) {
+      List<Integer> next = new ArrayList<>();
+      for (int id : frontier) {
+        for (int source : incoming.getOrDefault(id, Collections.emptyList())) {
+          if (!reached.get(source)) {
+            reached.set(source);
+            next.add(source);
+            result.add(graph.code(source));
+          }
+        }
+      }
+      frontier = next;
+    }
+    return result;
+  }
+
+  /**
+   * Great-circle distance from each airport to the airport farthest from it, NaN for airports
+   * without coordinates; null when there is no circuity factor to prune with
+   */
+  private double[] farthestDistances(AirportGraph.Snapshot graph) {
+    if (circuityFactor <= 0) {
+      return null;
+    }
+    double[] farthest = new double[graph.size()];
+    for (int from = 0; from < graph.size(); from++) {
+      double max = Double.NaN;
+      for (int to = 0; to < graph.size(); to++) {
+        double km = graph.greatCircleKm(from, to);
+        if (!Double.isNaN(km) && !(km <= max)) {
+          max = km;
+        }
+      }
+      farthest[from] = max;
+    }
+    return farthest;
+  }
+
+  /** Ranked simple routes from one airport to every airport within maxHops stops */
+  private Map<String, List<CatalogRoute>> computeRoutes(
+      AirportGraph.Snapshot graph, int source, double[] farthest) {
+    RouteWalk routeWalk = new RouteWalk(graph, source, farthest);
+    routeWalk.walk(1, 0, 0, 0);
+    if (routeWalk.expansions > maxExpansionsPerSource) {
+      logger.warn(
+          "Route catalog walk from {} stopped after {} expansions; its routes are incomplete",
+          graph.code(source),
+          maxExpansionsPerSource);
+    }
+
+    Map<String, List<CatalogRoute>> byDestination = new HashMap<>();
+    for (Map.Entry<Integer, List<Candidate>> entry : routeWalk.byDestination.entrySet()) {
+      byDestination.put(graph.code(entry.getKey()), rankAndTrim(graph, entry.getValue()));
+    }
+    return byDestination;
+  }
+
+  /** Depth-first walk over the simple routes from one source */
+  private final class RouteWalk {
+
+    private final AirportGraph.Snapshot graph;
+    private final double[] farthest;
+    private final int[] path = new int[maxHops + 2];
+    private final BitSet visited;
+    private final Map<Integer, List<Candidate>> byDestination = new HashMap<>();
+    private int expansions;
+
+    private RouteWalk(AirportGraph.Snapshot graph, int source, double[] farthest) {
+      this.graph = graph;
+      this.farthest = farthest;
+      this.visited = new BitSet(graph.size());
+      path[0] = source;
+      visited.set(source);
+    }
+
+    /**
+     * Record every extension of path[0 .. depth - 1] as a route to its last airport. Distance sums
+     * the FlightRoute distances, using great-circle legs where they are unknown; greatCircle is the
+     * great-circle length, NaN when an airport lacks coordinates.
+     */
+    private void walk(int depth, long distance, double avgPrice, double greatCircle) {
+      int current = path[depth - 1];
+      for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+        int next = graph.target(e);
+        if (visited.get(next)) {
+          continue;
+        }
+        if (++expansions > maxExpansionsPerSource) {
+          return;
+        }
+        path[depth] = next;
+        double leg = graph.greatCircleKm(current, next);
+        long legDistance =
+            graph.distance(e) > 0 ? graph.distance(e) : Double.isNaN(leg) ? 0 : Math.round(leg);
+        long nextDistance = distance + legDistance;
+        double nextPrice = avgPrice + graph.avgPrice(e);
+        double nextGreatCircle = greatCircle + leg;
+
+        if (!isDetour(graph, path[0], next, nextGreatCircle)) {
+          byDestination
+              .computeIfAbsent(next, k -> new ArrayList<>())
+              .add(new Candidate(Arrays.copyOf(path, depth + 1), nextDistance, nextPrice));
+        }
+
+        if (depth < path.length - 1 && !isDeadEnd(next, nextGreatCircle)) {
+          visited.set(next);
+          walk(depth + 1, nextDistance, nextPrice, nextGreatCircle);
+          visited.clear(next);
+        }
+      }
+    }
+
+    /**
+     * Whether every route extending a partial one that ends at last is a detour. Such a route to
+     * any d is at least greatCircle + gc(last, d) long, and gc(source, d) is at most gc(source,
+     * last) + gc(last, d), so none fits the factor f once greatCircle exceeds f * gc(source, last)
+     * + (f - 1) * the distance from last to its farthest airport. Extensions through airports
+     * without coordinates are given up with them.
+     */
+    private boolean isDeadEnd(int last, double greatCircle) {
+      if (farthest == null || Double.isNaN(greatCircle) || Double.isNaN(farthest[last])) {
+        return false;
+      }
+      double direct = graph.greatCircleKm(path[0], last);
+      return !Double.isNaN(direct)
+          && greatCircle
+              > circuityFactor * direct + Math.max(0, circuityFactor - 1) * farthest[last];
+    }
+  }
+
+  /** Whether a route is longer than the circuity factor allows for its endpoints */
+  private boolean isDetour(
+      AirportGraph.Snapshot graph, int source, int destination, double greatCircle) {
+    if (circuityFactor <= 0 || Double.isNaN(greatCircle)) {
+      return false;
+    }
+    double direct = graph.greatCircleKm(source, destination);
+    return !Double.isNaN(direct) && greatCircle > circuityFactor * direct;
+  }
+
+  /** Sort routes by rank and keep the best routesPerHopCount of each length */
+  private List<CatalogRoute> rankAndTrim(AirportGraph.Snapshot graph, List<Candidate> routes) {
+    routes.sort(BY_RANK);
+    int[] kept = new int[maxHops + 2];
+    List<CatalogRoute> trimmed = new ArrayList<>();
+    for (Candidate route : routes) {
+      int hops = route.path.length - 2;
+      if (kept[hops]++ < routesPerHopCount) {
+        trimmed.add(
+            new CatalogRoute(
+                graph.toCodes(route.path, route.path.length), route.distance, route.avgPrice));
+      }
+    }
+    return Collections.unmodifiableList(trimmed);
+  }
+
+  /** A walked route as airport ids, turned into a {@link CatalogRoute} only if it is kept */
+  private static final class Candidate {
+
+    private final int[] path;
+    private final long distance;
+    private final double avgPrice;
+
+    private Candidate(int[] path, long distance, double avgPrice) {
+      this.path = path;
+      this.distance = distance;
+      this.avgPrice = avgPrice;
+    }
+  }
+
+  /** A route with its total distance and average price */
+  static final class CatalogRoute {
+
+    final List<String> airports;
+    final long distance;
+    final double avgPrice;
+
+    CatalogRoute(List<String> airports, long distance, double avgPrice) {
+      this.airports = Collections.unmodifiableList(airports);
+      this.distance = distance;
+      this.avgPrice = avgPrice;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.example.flight.search.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+/**
+ * Single-flight execution of identical searches. Concurrent callers with the same key in this
+ * process share one computation. Across instances a short Redis lease elects the node that computes
+ * a key and caches its result before releasing the lease; the others wait for the result to appear
+ * in the cache, and compute it themselves only if the lease ends first or Redis is unavailable.
+ */
+@Service
+public class SearchRequestCoalescer {
+
+  private static final Logger logger = LoggerFactory.getLogger(SearchRequestCoalescer.class);
+  private static final String LEASE_PREFIX = "flight_search:lease:";
+  private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+  // Delete the lease only while this node still owns it
+  private static final RedisScript<Long> RELEASE_SCRIPT =
+      new DefaultRedisScript<>(
+          "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) "
+              + "else return 0 end",
+          Long.class);
+
+  @Autowired(required = false)
+  private RedisTemplate<String, Object> redisTemplate;
+
+  @Autowired(required = false)
+  private CacheManager cacheManager;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  @Value("${flight.search.coalescing.lease-ms:10000}")
+  private long leaseMs;
+
+  @Value("${flight.search.coalescing.poll-ms:50}")
+  private long pollMs;
+
+  private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Return the result of the computation for this key, joining a computation already in flight for
+   * it instead of starting another
+   *
+   * @param cacheName cache the computed result is stored in, checked while another node computes
+   */
+  public <T> T execute(String cacheName, String key, Supplier<T> computation) {
+    return execute(cacheName, key, Long.MAX_VALUE, computation);
+  }
+
+  /**
+   * Like {@link #execute(String, String, Supplier)}, but waiting for another node's result only
+   * until the deadline of the request, after which the result is computed locally
+   *
+   * @param deadline time by which the request must answer, in epoch milliseconds
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String cacheName, String key, long deadline, Supplier<T> computation) {
+    CompletableFuture<Object> own = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, own);
+
+    if (existing != null) {
+      logger.debug("Joining in-flight search for key: {}", key);
+      count("local");
+      try {
+        return (T) existing.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+
+    try {
+      T result = computeWithLease(cacheName, key, deadline, computation);
+      own.complete(result);
+      return result;
+    } catch (RuntimeException e) {
+      own.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T computeWithLease(
+      String cacheName, String key, long deadline, Supplier<T> computation) {
+    if (redisTemplate == null || leaseMs <= 0) {
+      return computation.get();
+    }
+
+    String leaseKey = LEASE_PREFIX + key;
+    String owner = INSTANCE_ID + ":" + Thread.currentThread().getId();
+    Boolean acquired;
+    try {
+      acquired =
+          redisTemplate.opsForValue().setIfAbsent(leaseKey, owner, leaseMs, TimeUnit.MILLISECONDS);
+    } catch (Exception e) {
+      logger.debug("Redis unavailable for search lease: {}", e.getMessage());
+      return computation.get();
+    }
+
+    if (!Boolean.TRUE.equals(acquired)) {
+      Object cached = awaitRemoteResult(cacheName, key, leaseKey, deadline);
+      if (cached != null) {
+        count("remote");
+        return (T) cached;
+      }
+      logger.debug("No result from the search lease for key {}, computing locally", key);
+      return computation.get();
+    }
+
+    try {
+      T result = computation.get();
+      // Waiters give up once the lease is gone, so the result must be visible to them first
+      cacheResult(cacheName, key, result);
+      return result;
+    } finally {
+      try {
+        redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(leaseKey), owner);
+      } catch (Exception e) {
+        logger.debug("Error releasing search lease: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void cacheResult(String cacheName, String key, Object result) {
+    Cache cache = cacheManager != null ? cacheManager.getCache(cacheName) : null;
+    if (cache == null || result == null) {
+      return;
+    }
+    try {
+      cache.put(key, result);
+    } catch (Exception e) {
+      logger.debug("Error caching coalesced search result: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Poll the cache while another node holds the lease for this key. Gives up when the lease expires
+   * or the request deadline passes, or once the lease is released and the result still has not been
+   * cached.
+   */
+  private Object awaitRemoteResult(String cacheName, String key, String leaseKey, long deadline) {
+    Cache cache = cacheManager != null ? cacheManager.getCache(cacheName) : null;
+    if (cache == null) {
+      return null;
+    }
+
+    long until = Math.min(System.currentTimeMillis() + leaseMs, deadline);
+    boolean released = false;
+    try {
+      while (System.currentTimeMillis() < until) {
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null && cached.get() != null) {
+          return cached.get();
+        }
+        if (released) {
+          return null;
+        }
+        // The owner caches its result before releasing; one more poll covers the race
+        released = !Boolean.TRUE.equals(redisTemplate.hasKey(leaseKey));
+        Thread.sleep(pollMs);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      logger.debug("Error waiting for remote search result: {}", e.getMessage());
+    }
+    return null;
+  }
+
+  private void count(String scope) {
+    if (meterRegistry != null) {
+      meterRegistry.counter("flight.search.coalesced", "scope", scope).increment();
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.example.flight.search.service;
+
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+
+/**
+ * Legs of every route segment, cached in Redis per (source, destination, departure hour) and shared
+ * by all searches: BOM-BLR is resolved once whether it appears in DEL-BLR, DEL-MAA or DEL-COK
+ * itineraries. Each bucket holds a compact tab-separated summary of its legs for at least one seat,
+ * and an empty bucket records that the hour has no departures.
+ */
+@Service
+public class SegmentAvailabilityCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(SegmentAvailabilityCache.class);
+  private static final String KEY_PREFIX = "flight_search:segment:";
+  private static final String FIELD_SEPARATOR = "\t";
+  private static final String LEG_SEPARATOR = "\n";
+
+  // Rewrite the seat count, the seventh field, of the leg line starting with ARGV[1], keeping the
+  // TTL; a bucket without the leg, e.g. one that had no seats when cached, is dropped instead
+  private static final RedisScript<Long> SEATS_SCRIPT =
+      new DefaultRedisScript<>(
+          "local bucket = redis.call('get', KEYS[1]) "
+              + "if not bucket then return 0 end "
+              + "local legs, patched = {}, 0 "
+              + "for leg in string.gmatch(bucket, '[^\\n]+') do "
+              + "if string.match(leg, '^[^\\t]*') == ARGV[1] then "
+              + "leg = string.gsub(leg, "
+              + "'^([^\\t]*\\t[^\\t]*\\t[^\\t]*\\t[^\\t]*\\t[^\\t]*\\t[^\\t]*\\t)[^\\t]*', "
+              + "'%1' .. ARGV[2]) "
+              + "patched = 1 end "
+              + "legs[#legs + 1] = leg end "
+              + "if patched == 0 then redis.call('del', KEYS[1]) return 0 end "
+              + "redis.call('set', KEYS[1], table.concat(legs, '\\n'), 'KEEPTTL') "
+              + "return 1",
+          Long.class);
+
+  @Autowired(required = false)
+  private StringRedisTemplate redisTemplate;
+
+  @Value("${flight.search.segment-cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${flight.search.segment-cache.ttl-seconds:300}")
+  private long ttlSeconds;
+
+  public boolean isEnabled() {
+    return enabled && redisTemplate != null;
+  }
+
+  /** The segment widened to whole hour buckets, which is what gets fetched and cached */
+  static SegmentKey align(SegmentKey segment) {
+    return new SegmentKey(
+        segment.getSource(),
+        segment.getDestination(),
+        segment.getStartTime().truncatedTo(ChronoUnit.HOURS),
+        segment.getEndTime().truncatedTo(ChronoUnit.HOURS).plusHours(1).minusNanos(1));
+  }
+
+  /** Legs of a fetched segment that fall in another segment's window with the required seats */
+  static List<Schedule> within(List<Schedule> legs, SegmentKey segment, Integer requiredSeats) {
+    int seats = requiredSeats != null ? requiredSeats : 1;
+    List<Schedule> matching = new ArrayList<>();
+    for (Schedule leg : legs) {
+      if (segment.contains(leg.getDepartureTime()) && leg.getAvailableSeats() >= seats) {
+        matching.add(leg);
+      }
+    }
+    return matching;
+  }
+
+  /**
+   * Legs of every segment whose hour buckets are all cached, in departure order and restricted to
+   * the segment window and required seats. Segments with any uncached bucket are left out.
+   */
+  Map<SegmentKey, List<Schedule>> findAll(Collection<SegmentKey> segments, Integer requiredSeats) {
+    Map<SegmentKey, List<String>> keysBySegment = new LinkedHashMap<>();
+    List<String> keys = new ArrayList<>();
+    for (SegmentKey segment : segments) {
+      List<String> segmentKeys = bucketKeys(align(segment));
+      keysBySegment.put(segment, segmentKeys);
+      keys.addAll(segmentKeys);
+    }
+
+    Map<SegmentKey, List<Schedule>> found = new HashMap<>();
+    List<String> values;
+    try {
+      values = redisTemplate.opsForValue().multiGet(keys);
+    } catch (Exception e) {
+      logger.debug("Segment cache unavailable: {}", e.getMessage());
+      return found;
+    }
+    if (values == null) {
+      return found;
+    }
+
+    int index = 0;
+    for (Map.Entry<SegmentKey, List<String>> entry : keysBySegment.entrySet()) {
+      List<Schedule> legs = new ArrayList<>();
+      boolean complete = true;
+      for (int i = 0; i < entry.getValue().size(); i++) {
+        String value = values.get(index++);
+        if (value == null) {
+          complete = false;
+        } else if (complete) {
+          legs.addAll(decode(value, entry.getKey().getSource(), entry.getKey().getDestination()));
+        }
+      }
+      if (complete) {
+        found.put(entry.getKey(), within(legs, entry.getKey(), requiredSeats));
+      }
+    }
+
+    logger.debug("Segment cache served {} of {} segments", found.size(), segments.size());
+    return found;
+  }
+
+  /** Cache the legs of fully fetched, hour-aligned segments, one entry per hour bucket */
+  void putAll(Map<SegmentKey, List<Schedule>> legsBySegment) {
+    Map<String, String> buckets = new HashMap<>();
+    for (Map.Entry<SegmentKey, List<Schedule>> entry : legsBySegment.entrySet()) {
+      SegmentKey segment = entry.getKey();
+      Map<LocalDateTime, List<Schedule>> legsByHour = new HashMap<>();
+      for (Schedule leg : entry.getValue()) {
+        legsByHour
+            .computeIfAbsent(
+                leg.getDepartureTime().truncatedTo(ChronoUnit.HOURS), k -> new ArrayList<>())
+            .add(leg);
+      }
+      for (LocalDateTime hour = segment.getStartTime();
+          hour.isBefore(segment.getEndTime());
+          hour = hour.plusHours(1)) {
+        buckets.put(
+            key(segment.getSource(), segment.getDestination(), hour),
+            encode(legsByHour.getOrDefault(hour, List.of())));
+      }
+    }
+    if (buckets.isEmpty()) {
+      return;
+    }
+
+    try {
+      Expiration expiration = Expiration.seconds(ttlSeconds);
+      redisTemplate.executePipelined(
+          (RedisCallback<Object>)
+              connection -> {
+                for (Map.Entry<String, String> bucket : buckets.entrySet()) {
+                  connection
+                      .stringCommands()
+                      .set(
+                          bucket.getKey().getBytes(StandardCharsets.UTF_8),
+                          bucket.getValue().getBytes(StandardCharsets.UTF_8),
+                          expiration,
+                          RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+              });
+      logger.debug("Cached {} segment hour buckets", buckets.size());
+    } catch (Exception e) {
+      logger.debug("Error caching segment legs: {}", e.getMessage());
+    }
+  }
+
+  /** Drop the hour bucket holding a departure, e.g. after its seat count changed */
+  public void evict(String source, String destination, LocalDateTime departureTime) {
+    if (!isEnabled()) {
+      return;
+    }
+    try {
+      redisTemplate.delete(key(source, destination, departureTime.truncatedTo(ChronoUnit.HOURS)));
+    } catch (Exception e) {
+      logger.warn("Error evicting segment cache: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Set the seat count of a leg in the hour bucket holding its departure, so searches keep reading
+   * the bucket instead of caching the document before the index refreshes. Buckets that do not hold
+   * the leg are dropped.
+   */
+  public void updateSeats(
+      Long scheduleId,
+      String source,
+      String destination,
+      LocalDateTime departureTime,
+      Integer availableSeats) {
+    if (!isEnabled()) {
+      return;
+    }
+    String key = key(source, destination, departureTime.truncatedTo(ChronoUnit.HOURS));
+    try {
+      redisTemplate.execute(
+          SEATS_SCRIPT,
+          Collections.singletonList(key),
+          scheduleId.toString(),
+          availableSeats.toString());
+    } catch (Exception e) {
+      logger.warn("Error updating seats in segment cache: {}", e.getMessage());
+      evict(source, destination, departureTime);
+    }
+  }
+
+  private static List<String> bucketKeys(SegmentKey aligned) {
+    List<String> keys = new ArrayList<>();
+    for (LocalDateTime hour = aligned.getStartTime();
+        hour.isBefore(aligned.getEndTime());
+        hour = hour.plusHours(1)) {
+      keys.add(key(aligned.getSource(), aligned.getDestination(), hour));
+    }
+    return keys;
+  }
+
+  static String key(String source, String destination, LocalDateTime hour) {
+    return KEY_PREFIX
+        + source
+        + "_"
+        + destination
+        + "_"
+        + hour.toEpochSecond(ZoneOffset.UTC) / 3600;
+  }
+
+  /**
+   * One line per leg: schedule id, flight id, flight number, airline, departure and arrival epoch
+   * minutes, available seats and base fare
+   */
+  static String encode(List<Schedule> legs) {
+    StringBuilder encoded = new StringBuilder();
+    for (Schedule leg : legs) {
+      if (encoded.length() > 0) {
+        encoded.append(LEG_SEPARATOR);
+      }
+      Flight flight = leg.getFlight();
+      encoded
+          .append(leg.getId())
+          .append(FIELD_SEPARATOR)
+          .append(flight.getId() != null ? flight.getId() : "")
+          .append(FIELD_SEPARATOR)
+          .append(flight.getFlightNumber())
+          .append(FIELD_SEPARATOR)
+          .append(flight.getAirline())
+          .append(FIELD_SEPARATOR)
+          .append(ConnectionIndex.toEpochMinute(leg.getDepartureTime()))
+          .append(FIELD_SEPARATOR)
+          .append(ConnectionIndex.toEpochMinute(leg.getArrivalTime()))
+          .append(FIELD_SEPARATOR)
+          .append(leg.getAvailableSeats())
+          .append(FIELD_SEPARATOR)
+          .append(leg.getBaseFare().toPlainString());
+    }
+    return encoded.toString();
+  }
+
+  /** Detached legs of an encoded bucket, carrying the same fields as legs built from documents */
+  static List<Schedule> decode(String encoded, String source, String destination) {
+    List<Schedule> legs = new ArrayList<>();
+    if (encoded.isEmpty()) {
+      return legs;
+    }
+    for (String line : encoded.split(LEG_SEPARATOR)) {
+      String[] fields = line.split(FIELD_SEPARATOR, -1);
+      Flight flight = new Flight(fields[2], fields[3], null);
+      flight.setId(fields[1].isEmpty() ? null : Long.valueOf(fields[1]));
+      Schedule leg =
+          new Schedule(
+              flight,
+              source,
+              destination,
+              fromEpochMinute(fields[4]),
+              fromEpochMinute(fields[5]),
+              Integer.valueOf(fields[6]),
+              new BigDecimal(fields[7]));
+      leg.setId(Long.valueOf(fields[0]));
+      legs.add(leg);
+    }
+    return legs;
+  }
+
+  private static LocalDateTime fromEpochMinute(String minutes) {
+    return LocalDateTime.ofEpochSecond(Long.parseLong(minutes) * 60, 0, ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,62 @@
+package com.example.flight.search.service;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/** A route segment together with the departure window it is searched in */
+final class SegmentKey {
+
+  private final String source;
+  private final String destination;
+  private final LocalDateTime startTime;
+  private final LocalDateTime endTime;
+
+  SegmentKey(String source, String destination, LocalDateTime startTime, LocalDateTime endTime) {
+    this.source = source;
+    this.destination = destination;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  String getSource() {
+    return source;
+  }
+
+  String getDestination() {
+    return destination;
+  }
+
+  LocalDateTime getStartTime() {
+    return startTime;
+  }
+
+  LocalDateTime getEndTime() {
+    return endTime;
+  }
+
+  /** Whether a departure falls inside the window, both ends inclusive */
+  boolean contains(LocalDateTime departureTime) {
+    return !departureTime.isBefore(startTime) && !departureTime.isAfter(endTime);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof SegmentKey)) return false;
+    SegmentKey that = (SegmentKey) o;
+    return source.equals(that.source)
+        && destination.equals(that.destination)
+        && startTime.equals(that.startTime)
+        && endTime.equals(that.endTime);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(source, destination, startTime, endTime);
+  }
+
+  @Override
+  public String toString() {
+    return source + " -> " + destination + " [" + startTime + ", " + endTime + "]";
+  }
+}
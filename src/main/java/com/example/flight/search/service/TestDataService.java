@@ -31,6 +31,18 @@ public class TestDataService {
   @Autowired(required = false)
   private AirportRepository airportRepository;
 
+  @Autowired(required = false)
+  private FlightSearchIndexManager flightSearchIndexManager;
+
+  @Autowired(required = false)
+  private CacheWarmupService cacheWarmupService;
+
+  @Autowired(required = false)
+  private NegativeRouteCache negativeRouteCache;
+
+  @Autowired(required = false)
+  private AirportGraph airportGraph;
+
   public void populateTestData() {
     logger.info("Starting comprehensive test data population with fresh data...");
 
@@ -40,6 +52,12 @@ public class TestDataService {
 
       // Create and populate Neo4j airports and routes
       populateAirportsAndRoutes();
+      if (negativeRouteCache != null) {
+        negativeRouteCache.invalidateAll();
+      }
+      if (airportGraph != null) {
+        airportGraph.refresh();
+      }
 
       // Create test flights and schedules for today and next few days
       LocalDate today = LocalDate.now();
@@ -52,6 +70,11 @@ public class TestDataService {
         logger.info("Elasticsearch not available - skipping search index sync");
       }
 
+      // Recompute the popular searches against the new data in the background
+      if (cacheWarmupService != null) {
+        cacheWarmupService.warmUpAfterRefresh();
+      }
+
       logger.info("Comprehensive test data population completed successfully!");
     } catch (Exception e) {
       logger.error("Error during test data population: {}", e.getMessage(), e);
@@ -86,7 +109,10 @@ public class TestDataService {
     logger.info("Performing comprehensive data cleanup from Neo4j, Elasticsearch, and Database...");
 
     // Clear Elasticsearch data with enhanced cleanup
-    if (flightSearchRepository != null) {
+    if (flightSearchIndexManager != null) {
+      // Searches keep reading the live index until its rebuilt version replaces it
+      logger.info("Elasticsearch index is rebuilt behind its alias after the data is recreated");
+    } else if (flightSearchRepository != null) {
       try {
         logger.info("Clearing Elasticsearch flight search index...");
         flightSearchRepository.deleteAll();
@@ -577,6 +603,15 @@ public class TestDataService {
 
     logger.info("🔄 Syncing flight data to Elasticsearch with enhanced format...");
 
+    if (flightSearchIndexManager != null) {
+      if (flightSearchIndexManager.rebuild()) {
+        verifyElasticsearchSync(scheduleRepository.count());
+      } else {
+        logger.error("❌ Elasticsearch index rebuild was not swapped in");
+      }
+      return;
+    }
+
     try {
       List<Flight> flights = flightRepository.findAll();
       List<FlightSearchDocument> documents = new ArrayList<>();
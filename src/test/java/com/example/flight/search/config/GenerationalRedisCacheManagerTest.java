@@ -0,0 +1,82 @@
+package com.example.flight.search.config;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GenerationalRedisCacheManager Tests")
+class GenerationalRedisCacheManagerTest {
+
+  @Mock private RedisCacheWriter cacheWriter;
+
+  @Mock private StringRedisTemplate stringRedisTemplate;
+
+  @Mock private ValueOperations<String, String> valueOperations;
+
+  private Cache cache;
+
+  @BeforeEach
+  void setUp() {
+    when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    GenerationalRedisCacheManager cacheManager =
+        GenerationalRedisCacheManager.create(
+            cacheWriter,
+            RedisCacheConfiguration.defaultCacheConfig(),
+            stringRedisTemplate,
+            Duration.ofMinutes(1));
+    cache = cacheManager.getCache("flightSearch");
+  }
+
+  private static byte[] key(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  @DisplayName("Should clear a cache by moving its keys to the next generation")
+  void testClear_BumpsGeneration() {
+    // Given
+    when(valueOperations.increment("flight_search:cache-generation:flightSearch", 0))
+        .thenReturn(3L);
+    when(valueOperations.increment("flight_search:cache-generation:flightSearch")).thenReturn(4L);
+
+    // When
+    cache.evict("DEL_BOM");
+    cache.clear();
+    cache.evict("DEL_BOM");
+
+    // Then
+    verify(cacheWriter).remove("flightSearch", key("flightSearch:v3::DEL_BOM"));
+    verify(cacheWriter).remove("flightSearch", key("flightSearch:v4::DEL_BOM"));
+    verify(cacheWriter, never()).clean(anyString(), any());
+  }
+
+  @Test
+  @DisplayName("Should delete the keys when the generation cannot be raised")
+  void testClear_FallsBackToDelete() {
+    // Given
+    when(valueOperations.increment("flight_search:cache-generation:flightSearch"))
+        .thenThrow(new RuntimeException("Redis unavailable"));
+    when(valueOperations.increment("flight_search:cache-generation:flightSearch", 0))
+        .thenThrow(new RuntimeException("Redis unavailable"));
+
+    // When
+    cache.clear();
+
+    // Then
+    verify(cacheWriter).clean("flightSearch", key("flightSearch:v0::*"));
+  }
+}
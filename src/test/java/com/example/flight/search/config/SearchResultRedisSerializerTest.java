@@ -0,0 +1,177 @@
+package com.example.flight.search.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+@DisplayName("SearchResultRedisSerializer Tests")
+class SearchResultRedisSerializerTest {
+
+  private GenericJackson2JsonRedisSerializer json;
+  private SearchResultRedisSerializer serializer;
+
+  @BeforeEach
+  void setUp() {
+    json = RedisConfig.cacheValueSerializer();
+    serializer = new SearchResultRedisSerializer(json, -1);
+  }
+
+  private FlightSearchResult result(long scheduleId, String price) {
+    LocalDateTime departure = LocalDateTime.of(2025, 8, 20, 6, 30);
+    List<ScheduleDto> legs = new ArrayList<>();
+    legs.add(new ScheduleDto(scheduleId, "DEL", "BOM", departure, departure.plusHours(2), 45));
+    legs.add(
+        new ScheduleDto(
+            scheduleId + 1, "BOM", "BLR", departure.plusHours(3), departure.plusHours(5), 12));
+    return new FlightSearchResult(
+        "AI" + scheduleId + " + 6E" + (scheduleId + 1),
+        "Air India",
+        departure,
+        departure.plusHours(5),
+        new BigDecimal(price),
+        1,
+        legs);
+  }
+
+  private void assertSameResult(FlightSearchResult expected, FlightSearchResult actual) {
+    assertEquals(expected.getUuid(), actual.getUuid());
+    assertEquals(expected.getFlightNumber(), actual.getFlightNumber());
+    assertEquals(expected.getAirline(), actual.getAirline());
+    assertEquals(expected.getDepartureTime(), actual.getDepartureTime());
+    assertEquals(expected.getArrivalTime(), actual.getArrivalTime());
+    assertEquals(expected.getPrice(), actual.getPrice());
+    assertEquals(expected.getNumberOfHops(), actual.getNumberOfHops());
+    assertEquals(expected.getSchedules().size(), actual.getSchedules().size());
+    for (int i = 0; i < expected.getSchedules().size(); i++) {
+      ScheduleDto leg = expected.getSchedules().get(i);
+      ScheduleDto decoded = actual.getSchedules().get(i);
+      assertEquals(leg.getScheduleId(), decoded.getScheduleId());
+      assertEquals(leg.getSource(), decoded.getSource());
+      assertEquals(leg.getDestination(), decoded.getDestination());
+      assertEquals(leg.getDepartureTime(), decoded.getDepartureTime());
+      assertEquals(leg.getArrivalTime(), decoded.getArrivalTime());
+      assertEquals(leg.getAvailableSeats(), decoded.getAvailableSeats());
+    }
+  }
+
+  @Test
+  @DisplayName("Should round-trip a sorted page in a fraction of the JSON size")
+  void testSerialize_PageRoundTrip() {
+    // Given
+    List<FlightSearchResult> content = List.of(result(1L, "15000.50"), result(3L, "9800"));
+    Page<FlightSearchResult> page =
+        new PageImpl<>(content, PageRequest.of(2, 10, Sort.by("price").descending()), 42);
+
+    // When
+    byte[] bytes = serializer.serialize(page);
+    Object decoded = serializer.deserialize(bytes);
+
+    // Then
+    assertEquals(SearchResultRedisSerializer.BINARY, bytes[0]);
+    assertTrue(bytes.length * 3 < json.serialize(page).length);
+    Page<?> decodedPage = assertInstanceOf(Page.class, decoded);
+    assertEquals(page.getPageable(), decodedPage.getPageable());
+    assertEquals(42, decodedPage.getTotalElements());
+    for (int i = 0; i < content.size(); i++) {
+      assertSameResult(content.get(i), (FlightSearchResult) decodedPage.getContent().get(i));
+    }
+  }
+
+  @Test
+  @DisplayName("Should round-trip an enveloped list, deflated above the threshold")
+  void testSerialize_CompressedEnvelope() {
+    // Given
+    serializer = new SearchResultRedisSerializer(json, 256);
+    List<FlightSearchResult> content = new ArrayList<>();
+    for (long id = 1; id <= 50; id += 2) {
+      content.add(result(id, "4999.99"));
+    }
+    CacheEnvelope envelope = new CacheEnvelope(content, 1_700_000_000_000L, 250);
+
+    // When
+    byte[] bytes = serializer.serialize(envelope);
+    Object decoded = serializer.deserialize(bytes);
+
+    // Then
+    assertEquals(SearchResultRedisSerializer.DEFLATED, bytes[0]);
+    CacheEnvelope decodedEnvelope = assertInstanceOf(CacheEnvelope.class, decoded);
+    assertEquals(1_700_000_000_000L, decodedEnvelope.getComputedAt());
+    assertEquals(250, decodedEnvelope.getComputeMillis());
+    List<?> decodedContent = assertInstanceOf(List.class, decodedEnvelope.getValue());
+    assertEquals(content.size(), decodedContent.size());
+    assertSameResult(content.get(7), (FlightSearchResult) decodedContent.get(7));
+  }
+
+  @Test
+  @DisplayName("Should fall back to JSON for other values and read legacy JSON")
+  void testSerialize_JsonFallback() {
+    // Given
+    FlightSearchResult inexact = result(1L, "100.125");
+    Map<String, Object> other = new HashMap<>(Map.of("key", "value", "count", 3L));
+    List<String> codes = Stream.of("DEL", "BOM").toList();
+
+    // When
+    byte[] inexactBytes = serializer.serialize(List.of(inexact));
+    byte[] otherBytes = serializer.serialize(other);
+    byte[] codesBytes = serializer.serialize(codes);
+
+    // Then
+    assertEquals(SearchResultRedisSerializer.JSON, inexactBytes[0]);
+    assertEquals(SearchResultRedisSerializer.JSON, otherBytes[0]);
+    assertEquals(other, serializer.deserialize(otherBytes));
+    assertEquals(other, serializer.deserialize(json.serialize(other)));
+    assertEquals(codes, serializer.deserialize(codesBytes));
+    assertNull(serializer.serialize(null));
+  }
+
+  @Test
+  @DisplayName("Should read back a page that fell back to JSON")
+  void testSerialize_JsonPageRoundTrip() {
+    // Given
+    FlightSearchResult inexact = result(1L, "100.125");
+    Page<FlightSearchResult> page =
+        new PageImpl<>(List.of(inexact), PageRequest.of(1, 5, Sort.by("price").descending()), 6);
+
+    // When
+    byte[] bytes = serializer.serialize(new CacheEnvelope(page, 1000L, 20L));
+    Object decoded = serializer.deserialize(bytes);
+
+    // Then
+    assertEquals(SearchResultRedisSerializer.JSON, bytes[0]);
+    CacheEnvelope envelope = assertInstanceOf(CacheEnvelope.class, decoded);
+    assertEquals(1000L, envelope.getComputedAt());
+    Page<?> decodedPage = assertInstanceOf(Page.class, envelope.getValue());
+    assertEquals(page.getPageable(), decodedPage.getPageable());
+    assertEquals(6, decodedPage.getTotalElements());
+    assertSameResult(inexact, (FlightSearchResult) decodedPage.getContent().get(0));
+  }
+
+  @Test
+  @DisplayName("Should refuse to instantiate types outside the allowed packages")
+  void testDeserialize_RejectsForeignTypes() {
+    // Given
+    byte[] bytes =
+        "{\"@class\":\"javax.management.BadAttributeValueExpException\",\"val\":\"x\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    // When & Then
+    assertThrows(Exception.class, () -> serializer.deserialize(bytes));
+  }
+}
@@ -0,0 +1,328 @@
+package com.example.flight.search.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TwoTierCacheManager Tests")
+class TwoTierCacheManagerTest {
+
+  private static final String CACHE = "flightSearch";
+
+  @Mock private StringRedisTemplate stringRedisTemplate;
+
+  private ConcurrentMapCacheManager remoteCacheManager;
+  private SimpleMeterRegistry meterRegistry;
+  private TwoTierCacheManager cacheManager;
+
+  @BeforeEach
+  void setUp() {
+    remoteCacheManager = new ConcurrentMapCacheManager(CACHE);
+    meterRegistry = new SimpleMeterRegistry();
+    cacheManager =
+        new TwoTierCacheManager(
+            remoteCacheManager,
+            stringRedisTemplate,
+            meterRegistry,
+            100,
+            Duration.ofMinutes(1),
+            Duration.ofHours(1));
+  }
+
+  private double count(String tier, String result) {
+    return meterRegistry
+        .counter("flight.search.cache.requests", "cache", CACHE, "tier", tier, "result", result)
+        .count();
+  }
+
+  @Test
+  @DisplayName("Should serve repeated reads from the local tier")
+  void testGet_PromotesRemoteHitsToLocalTier() {
+    // Given
+    remoteCacheManager.getCache(CACHE).put("key", "value");
+    Cache cache = cacheManager.getCache(CACHE);
+
+    // When
+    cache.get("key");
+    remoteCacheManager.getCache(CACHE).evict("key");
+    Cache.ValueWrapper second = cache.get("key");
+
+    // Then
+    assertEquals("value", second.get());
+    assertEquals(1, count("l1", "hit"));
+    assertEquals(1, count("l2", "hit"));
+  }
+
+  @Test
+  @DisplayName("Should write both tiers and broadcast the invalidation")
+  void testPut_WritesBothTiersAndPublishes() {
+    // When
+    cacheManager.getCache(CACHE).put("key", "value");
+
+    // Then
+    assertEquals("value", remoteCacheManager.getCache(CACHE).get("key").get());
+    ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+    verify(stringRedisTemplate)
+        .convertAndSend(eq(TwoTierCacheManager.INVALIDATION_CHANNEL), payload.capture());
+    assertTrue(payload.getValue().endsWith("\n" + CACHE + "\nkey"));
+  }
+
+  @Test
+  @DisplayName("Should drop local entries on a peer invalidation but ignore its own")
+  void testOnMessage_InvalidatesLocalTier() {
+    // Given
+    Cache cache = cacheManager.getCache(CACHE);
+    cache.put("key", "value");
+    ArgumentCaptor<String> own = ArgumentCaptor.forClass(String.class);
+    verify(stringRedisTemplate).convertAndSend(anyString(), own.capture());
+    remoteCacheManager.getCache(CACHE).evict("key");
+
+    // When - this instance's own message is ignored
+    cacheManager.onMessage(message(own.getValue()), null);
+
+    // Then
+    assertNotNull(cache.get("key"));
+
+    // When - a peer invalidates the key
+    cacheManager.onMessage(message("peer\n" + CACHE + "\nkey"), null);
+
+    // Then
+    assertNull(cache.get("key"));
+  }
+
+  @Test
+  @DisplayName("Should treat Redis errors as misses")
+  void testGet_RemoteFailureIsMiss() {
+    // Given
+    Cache failing = mock(Cache.class);
+    when(failing.get(any())).thenThrow(new RuntimeException("Redis connection failed"));
+    TwoTierCache cache =
+        new TwoTierCache(
+            CACHE,
+            com.github.benmanes.caffeine.cache.Caffeine.newBuilder().build(),
+            failing,
+            (name, key) -> {},
+            (key, value) -> {},
+            meterRegistry);
+
+    // When & Then
+    assertNull(cache.get("key"));
+    assertEquals(1, count("l2", "miss"));
+  }
+
+  @Test
+  @DisplayName("Should weigh cached values by the itineraries they hold")
+  void testWeigh() {
+    List<String> results = Arrays.asList("a", "b", "c");
+    assertEquals(3, TwoTierCacheManager.weigh(results));
+    assertEquals(1, TwoTierCacheManager.weigh(List.of()));
+    assertEquals(1, TwoTierCacheManager.weigh("value"));
+  }
+
+  @Test
+  @DisplayName("Should patch candidate sets and evict pages holding a schedule whose seats changed")
+  @SuppressWarnings("unchecked")
+  void testUpdateScheduleAvailability_PatchesOrEvicts() {
+    // Given
+    ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+    cacheManager =
+        new TwoTierCacheManager(
+            remote,
+            stringRedisTemplate,
+            meterRegistry,
+            100,
+            Duration.ofMinutes(1),
+            Duration.ofHours(1));
+    cacheManager.setSoftExpiry(Runnable::run, Duration.ofMinutes(5), 1.0);
+    List<FlightSearchResult> candidates = new ArrayList<>(List.of(result(7L, 9), result(8L, 9)));
+    cacheManager.getCache("flightCandidates").put("DEL_BLR", candidates);
+    long computedAt =
+        ((CacheEnvelope) remote.getCache("flightCandidates").get("DEL_BLR").get()).getComputedAt();
+    cacheManager.getCache(CACHE).put("DEL_BLR_page0", new PageImpl<>(List.of(result(7L, 9))));
+    verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+
+    SetOperations<String, String> setOperations = mock(SetOperations.class);
+    when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+    when(setOperations.members("flight_search:schedule-keys:7"))
+        .thenReturn(Set.of("flightCandidates\nDEL_BLR", CACHE + "\nDEL_BLR_page0"));
+
+    // When
+    cacheManager.updateScheduleAvailability(7L, 0);
+
+    // Then
+    List<FlightSearchResult> patched =
+        (List<FlightSearchResult>) cacheManager.getCache("flightCandidates").get("DEL_BLR").get();
+    assertEquals(0, patched.get(0).getSchedules().get(0).getAvailableSeats());
+    assertEquals(9, patched.get(1).getSchedules().get(0).getAvailableSeats());
+    // Searches still reading the cached instance keep seeing the counts they started with
+    assertEquals(9, candidates.get(0).getSchedules().get(0).getAvailableSeats());
+    assertSame(candidates.get(1), patched.get(1));
+    // The patch keeps the age of the entry, so it still goes stale and expires on time
+    CacheEnvelope envelope =
+        (CacheEnvelope) remote.getCache("flightCandidates").get("DEL_BLR").get();
+    assertEquals(computedAt, envelope.getComputedAt());
+    assertNull(cacheManager.getCache(CACHE).get("DEL_BLR_page0"));
+    verify(setOperations).remove("flight_search:schedule-keys:7", CACHE + "\nDEL_BLR_page0");
+  }
+
+  @Test
+  @DisplayName("Should evict every entry holding a changed schedule")
+  @SuppressWarnings("unchecked")
+  void testEvictSchedules() {
+    // Given
+    cacheManager.getCache(CACHE).put("DEL_BLR_page0", new PageImpl<>(List.of(result(7L, 9))));
+    cacheManager.getCache(CACHE).put("DEL_BOM_page0", new PageImpl<>(List.of(result(8L, 9))));
+    SetOperations<String, String> setOperations = mock(SetOperations.class);
+    when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+    when(setOperations.members("flight_search:schedule-keys:7"))
+        .thenReturn(Set.of(CACHE + "\nDEL_BLR_page0"));
+    when(setOperations.members("flight_search:schedule-keys:9")).thenReturn(Set.of());
+
+    // When
+    cacheManager.evictSchedules(List.of(7L, 9L));
+
+    // Then
+    assertNull(cacheManager.getCache(CACHE).get("DEL_BLR_page0"));
+    assertNotNull(cacheManager.getCache(CACHE).get("DEL_BOM_page0"));
+    verify(stringRedisTemplate).delete("flight_search:schedule-keys:7");
+  }
+
+  @Test
+  @DisplayName("Should give a rewritten envelope only the time to live it has left")
+  void testEnvelopeTtl() {
+    // Given
+    RedisCacheWriter.TtlFunction ttl = RedisConfig.envelopeTtl(Duration.ofHours(1));
+    long computedAt = System.currentTimeMillis() - Duration.ofMinutes(45).toMillis();
+
+    // When
+    Duration remaining = ttl.getTimeToLive("key", new CacheEnvelope("value", computedAt, 0));
+
+    // Then
+    assertTrue(remaining.compareTo(Duration.ofMinutes(15)) <= 0);
+    assertTrue(remaining.compareTo(Duration.ofMinutes(14)) > 0);
+    assertEquals(Duration.ofHours(1), ttl.getTimeToLive("key", "value"));
+  }
+
+  @Test
+  @DisplayName("Should serve a stale entry while it is refreshed in the background")
+  void testGet_ServesStaleAndRefreshes() {
+    // Given
+    cacheManager.setSoftExpiry(Runnable::run, Duration.ofMinutes(5), 0);
+    long computedAt = System.currentTimeMillis() - Duration.ofMinutes(10).toMillis();
+    remoteCacheManager.getCache(CACHE).put("key", new CacheEnvelope("stale", computedAt, 50));
+    Cache cache = cacheManager.getCache(CACHE);
+
+    // When
+    String served = cache.get("key", () -> "fresh");
+
+    // Then
+    assertEquals("stale", served);
+    assertEquals("fresh", cache.get("key").get());
+    CacheEnvelope refreshed = (CacheEnvelope) remoteCacheManager.getCache(CACHE).get("key").get();
+    assertTrue(refreshed.getComputedAt() > computedAt);
+    assertEquals(
+        1, meterRegistry.counter("flight.search.cache.stale_served", "cache", CACHE).count());
+    assertEquals(
+        1,
+        meterRegistry
+            .counter("flight.search.cache.refreshes", "cache", CACHE, "reason", "stale")
+            .count());
+  }
+
+  @Test
+  @DisplayName("Should refresh slow-to-compute entries early and leave fresh ones alone")
+  void testGet_RefreshesEarly() {
+    // Given
+    List<Runnable> refreshes = new ArrayList<>();
+    cacheManager.setSoftExpiry(refreshes::add, Duration.ofMinutes(5), 1e9);
+    long now = System.currentTimeMillis();
+    remoteCacheManager.getCache(CACHE).put("slow", new CacheEnvelope("value", now, 1000));
+    remoteCacheManager.getCache(CACHE).put("fast", new CacheEnvelope("value", now, 0));
+    Cache cache = cacheManager.getCache(CACHE);
+
+    // When
+    cache.get("slow", () -> "fresh");
+    cache.get("slow", () -> "fresh");
+    cache.get("fast", () -> "fresh");
+
+    // Then
+    assertEquals(1, refreshes.size());
+    assertEquals(
+        0, meterRegistry.counter("flight.search.cache.stale_served", "cache", CACHE).count());
+  }
+
+  @Test
+  @DisplayName("Should store loaded values in envelopes and read them back unwrapped")
+  void testGet_LoadsIntoEnvelope() {
+    // Given
+    cacheManager.setSoftExpiry(Runnable::run, Duration.ofMinutes(5), 1.0);
+    Cache cache = cacheManager.getCache(CACHE);
+
+    // When
+    String loaded = cache.get("key", () -> "value");
+
+    // Then
+    assertEquals("value", loaded);
+    assertEquals("value", cache.get("key").get());
+    assertEquals("value", cache.get("key", String.class));
+    assertInstanceOf(CacheEnvelope.class, remoteCacheManager.getCache(CACHE).get("key").get());
+    assertEquals(
+        TwoTierCacheManager.weigh(List.of(1, 2)),
+        TwoTierCacheManager.weigh(new CacheEnvelope(List.of(1, 2), 0, 0)));
+  }
+
+  @Test
+  @DisplayName("Should collect the schedule ids of cached pages and collections")
+  void testScheduleIds() {
+    assertEquals(
+        Set.of(7L, 8L), TwoTierCacheManager.scheduleIds(List.of(result(7L, 1), result(8L, 1))));
+    assertEquals(
+        Set.of(7L), TwoTierCacheManager.scheduleIds(new PageImpl<>(List.of(result(7L, 1)))));
+    assertTrue(TwoTierCacheManager.scheduleIds("value").isEmpty());
+  }
+
+  private FlightSearchResult result(long scheduleId, int seats) {
+    LocalDateTime departure = LocalDateTime.of(2025, 8, 20, 9, 0);
+    ScheduleDto leg =
+        new ScheduleDto(scheduleId, "DEL", "BLR", departure, departure.plusHours(3), seats);
+    return new FlightSearchResult(
+        "6E" + scheduleId,
+        "IndiGo",
+        departure,
+        departure.plusHours(3),
+        BigDecimal.valueOf(5000),
+        0,
+        new ArrayList<>(List.of(leg)));
+  }
+
+  private DefaultMessage message(String body) {
+    return new DefaultMessage(TwoTierCacheManager.INVALIDATION_CHANNEL.getBytes(), body.getBytes());
+  }
+}
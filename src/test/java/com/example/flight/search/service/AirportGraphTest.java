@@ -0,0 +1,153 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.graph.Airport;
+import com.example.flight.search.graph.FlightRoute;
+import com.example.flight.search.repository.AirportRepository;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AirportGraph Tests")
+class AirportGraphTest {
+
+  @Mock private AirportRepository airportRepository;
+
+  @Mock private ScheduleRepository scheduleRepository;
+
+  @InjectMocks private AirportGraph airportGraph;
+
+  private final Map<String, Airport> airports = new HashMap<>();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(airportGraph, "enabled", true);
+  }
+
+  private Airport airport(String code, double latitude, double longitude) {
+    Airport airport = airport(code);
+    airport.setLatitude(latitude);
+    airport.setLongitude(longitude);
+    return airport;
+  }
+
+  private Airport airport(String code) {
+    return airports.computeIfAbsent(
+        code,
+        c -> {
+          Airport airport = new Airport(c, c + " Airport", c, "India");
+          airport.setRoutes(new LinkedHashSet<>());
+          return airport;
+        });
+  }
+
+  private void connect(String from, String to) {
+    airport(from).getRoutes().add(new FlightRoute("Air India", "AI" + from + to, airport(to)));
+  }
+
+  @Test
+  @DisplayName("Should not be ready before the first refresh")
+  void testNotReadyBeforeRefresh() {
+    assertFalse(airportGraph.isReady());
+    assertTrue(airportGraph.findRoutes("DEL", "BOM", 0, 100).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should enumerate simple routes with exactly the requested hops")
+  void testFindRoutes_ExactHops() {
+    // Given
+    connect("DEL", "BOM");
+    connect("DEL", "BLR");
+    connect("BOM", "BLR");
+    connect("BLR", "MAA");
+    connect("BOM", "MAA");
+    connect("MAA", "DEL");
+    when(airportRepository.findAll()).thenReturn(List.copyOf(airports.values()));
+
+    // When
+    airportGraph.refresh();
+
+    // Then
+    assertTrue(airportGraph.isReady());
+    assertEquals(
+        List.of(List.of("DEL", "BLR", "MAA"), List.of("DEL", "BOM", "MAA")),
+        airportGraph.findRoutes("DEL", "MAA", 1, 100).stream().sorted(this::byCodes).toList());
+    assertEquals(
+        List.of(List.of("DEL", "BOM", "BLR", "MAA")),
+        airportGraph.findRoutes("DEL", "MAA", 2, 100));
+    assertTrue(airportGraph.findRoutes("DEL", "MAA", 0, 100).isEmpty());
+    // No route may revisit the source, e.g. DEL -> BOM -> MAA -> DEL -> BLR
+    assertTrue(airportGraph.findRoutes("DEL", "BLR", 3, 100).isEmpty());
+    assertEquals(1, airportGraph.findRoutes("DEL", "MAA", 1, 1).size());
+    assertTrue(airportGraph.findRoutes("DEL", "XXX", 1, 100).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should fall back to schedule segments when Neo4j has no routes")
+  void testRefresh_FallsBackToSchedules() {
+    // Given
+    when(airportRepository.findAll()).thenThrow(new RuntimeException("Neo4j unavailable"));
+    when(scheduleRepository.findDistinctSegments())
+        .thenReturn(
+            Arrays.asList(
+                new Object[] {"DEL", "BOM"},
+                new Object[] {"BOM", "BLR"},
+                new Object[] {"DEL", "BLR"}));
+
+    // When
+    airportGraph.refresh();
+
+    // Then
+    assertEquals(
+        List.of(List.of("DEL", "BOM", "BLR")), airportGraph.findRoutes("DEL", "BLR", 1, 100));
+    assertEquals(List.of(List.of("DEL", "BLR")), airportGraph.findRoutes("DEL", "BLR", 0, 100));
+  }
+
+  @Test
+  @DisplayName("Should prune detours beyond the circuity factor and order routes by distance")
+  void testFindRoutes_GeographicPruning() {
+    // Given
+    ReflectionTestUtils.setField(airportGraph, "circuityFactor", 1.8);
+    ReflectionTestUtils.setField(airportGraph, "candidatesPerResult", 10);
+    airport("DEL", 28.5562, 77.1000);
+    airport("BOM", 19.0896, 72.8656);
+    airport("BLR", 13.1986, 77.7066);
+    airport("HYD", 17.2403, 78.4294);
+    airport("AMD", 23.0775, 72.6347);
+    connect("DEL", "HYD");
+    connect("HYD", "BOM");
+    connect("DEL", "BLR");
+    connect("BLR", "BOM");
+    connect("DEL", "AMD");
+    connect("AMD", "BOM");
+    when(airportRepository.findAll()).thenReturn(List.copyOf(airports.values()));
+
+    // When
+    airportGraph.refresh();
+
+    // Then - DEL-BLR-BOM is 2.2 times the direct distance
+    assertEquals(
+        List.of(List.of("DEL", "AMD", "BOM"), List.of("DEL", "HYD", "BOM")),
+        airportGraph.findRoutes("DEL", "BOM", 1, 100));
+    assertEquals(
+        List.of(List.of("DEL", "AMD", "BOM")), airportGraph.findRoutes("DEL", "BOM", 1, 1));
+  }
+
+  private int byCodes(List<String> a, List<String> b) {
+    return String.join("", a).compareTo(String.join("", b));
+  }
+}
@@ -0,0 +1,142 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.config.TwoTierCacheManager;
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AvailabilityUpdateCoalescer Tests")
+class AvailabilityUpdateCoalescerTest {
+
+  private static final IndexCoordinates INDEX = IndexCoordinates.of("flight_search");
+
+  @Mock private ElasticsearchOperations elasticsearchOperations;
+
+  @Mock private FlightSearchIndexManager flightSearchIndexManager;
+
+  @Mock private TwoTierCacheManager cacheManager;
+
+  @InjectMocks private AvailabilityUpdateCoalescer availabilityUpdateCoalescer;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    ReflectionTestUtils.setField(availabilityUpdateCoalescer, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(availabilityUpdateCoalescer, "maxPending", 2);
+    ReflectionTestUtils.setField(availabilityUpdateCoalescer, "batchSize", 500);
+  }
+
+  private double updates(String outcome) {
+    return meterRegistry.counter("flight.search.availability.updates", "outcome", outcome).count();
+  }
+
+  @Test
+  @DisplayName("Should write only the latest seat count per schedule in one bulk request")
+  void testFlush_CoalescesPerSchedule() {
+    // Given
+    when(elasticsearchOperations.getIndexCoordinatesFor(FlightSearchDocument.class))
+        .thenReturn(INDEX);
+    availabilityUpdateCoalescer.submit(1L, 1L, 10);
+    availabilityUpdateCoalescer.submit(1L, 1L, 9);
+    availabilityUpdateCoalescer.submit(1L, 1L, 8);
+    availabilityUpdateCoalescer.submit(2L, 2L, 40);
+
+    // When
+    availabilityUpdateCoalescer.flush();
+
+    // Then
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UpdateQuery>> queries = ArgumentCaptor.forClass(List.class);
+    verify(elasticsearchOperations)
+        .bulkUpdate(queries.capture(), any(BulkOptions.class), eq(INDEX));
+    Map<String, Object> seats =
+        queries.getValue().stream()
+            .collect(
+                Collectors.toMap(
+                    UpdateQuery::getId, query -> query.getDocument().get("availableSeats")));
+    assertEquals(Map.of("1_1", 8, "2_2", 40), seats);
+
+    verify(flightSearchIndexManager).recordChange(1L);
+    verify(cacheManager).updateScheduleAvailability(1L, 8);
+    verify(cacheManager, never()).updateScheduleAvailability(1L, 9);
+    assertEquals(2, updates("merged"));
+    assertEquals(2, updates("written"));
+
+    // Nothing is left for the next flush
+    availabilityUpdateCoalescer.flush();
+    verify(elasticsearchOperations, times(1))
+        .bulkUpdate(anyList(), any(BulkOptions.class), any(IndexCoordinates.class));
+  }
+
+  @Test
+  @DisplayName("Should drop updates of new schedules when the queue is full")
+  void testSubmit_BoundedQueue() {
+    // Given
+    assertTrue(availabilityUpdateCoalescer.submit(1L, 1L, 10));
+    assertTrue(availabilityUpdateCoalescer.submit(2L, 2L, 20));
+
+    // When
+    boolean accepted = availabilityUpdateCoalescer.submit(3L, 3L, 30);
+
+    // Then
+    assertFalse(accepted);
+    assertTrue(availabilityUpdateCoalescer.submit(1L, 1L, 9));
+    assertEquals(1, updates("dropped"));
+    assertEquals(1, updates("merged"));
+  }
+
+  @Test
+  @DisplayName("Should patch the seat counts into the segment buckets rather than drop them")
+  void testFlush_PatchesSegmentBuckets() {
+    // Given
+    SegmentAvailabilityCache segmentAvailabilityCache = mock(SegmentAvailabilityCache.class);
+    ScheduleRepository scheduleRepository = mock(ScheduleRepository.class);
+    ReflectionTestUtils.setField(
+        availabilityUpdateCoalescer, "segmentAvailabilityCache", segmentAvailabilityCache);
+    ReflectionTestUtils.setField(
+        availabilityUpdateCoalescer, "scheduleRepository", scheduleRepository);
+    LocalDateTime departure = LocalDateTime.of(2025, 2, 1, 6, 30);
+    Schedule schedule =
+        new Schedule(null, "DEL", "BOM", departure, departure.plusHours(2), 9, BigDecimal.TEN);
+    schedule.setId(1L);
+    when(segmentAvailabilityCache.isEnabled()).thenReturn(true);
+    when(scheduleRepository.findAllById(Set.of(1L))).thenReturn(List.of(schedule));
+    when(elasticsearchOperations.getIndexCoordinatesFor(FlightSearchDocument.class))
+        .thenReturn(INDEX);
+    availabilityUpdateCoalescer.submit(1L, 1L, 8);
+
+    // When
+    availabilityUpdateCoalescer.flush();
+
+    // Then
+    verify(segmentAvailabilityCache).updateSeats(1L, "DEL", "BOM", departure, 8);
+    verify(segmentAvailabilityCache, never()).evict(any(), any(), any());
+  }
+}
@@ -4,6 +4,10 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -12,8 +16,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("CacheService Tests")
@@ -27,7 +36,7 @@ class CacheServiceTest {
 
   private static final String TEST_KEY = "test_key";
   private static final String TEST_VALUE = "test_value";
-  private static final String CACHE_PREFIX = "flight_search:";
+  private static final String CACHE_PREFIX = "flight_search:v0:";
 
   @BeforeEach
   void setUp() {
@@ -100,4 +109,71 @@ class CacheServiceTest {
     // Then
     assertNull(result);
   }
+
+  @Test
+  @DisplayName("Should evict everything by bumping the generation instead of scanning keys")
+  void testEvictAll_BumpsGeneration() {
+    // Given
+    when(valueOperations.increment("flight_search:generation")).thenReturn(1L);
+    ReflectionTestUtils.setField(cacheService, "generationRefreshMs", 60_000L);
+
+    // When
+    cacheService.evictAllFlightSearchCache();
+    cacheService.getCachedResult(TEST_KEY);
+
+    // Then
+    verify(valueOperations).get("flight_search:v1:" + TEST_KEY);
+    verify(redisTemplate, never()).keys(anyString());
+    verify(redisTemplate, never()).delete(anyCollection());
+  }
+
+  @Test
+  @DisplayName("Should clear the search caches along with the generation")
+  void testEvictAll_ClearsSearchCaches() {
+    // Given
+    CacheManager cacheManager = mock(CacheManager.class);
+    Cache searchCache = mock(Cache.class);
+    Cache candidateCache = mock(Cache.class);
+    when(cacheManager.getCache("flightSearch")).thenReturn(searchCache);
+    when(cacheManager.getCache("flightCandidates")).thenReturn(candidateCache);
+    ReflectionTestUtils.setField(cacheService, "cacheManager", cacheManager);
+
+    // When
+    cacheService.evictAllFlightSearchCache();
+
+    // Then
+    verify(searchCache).clear();
+    verify(candidateCache).clear();
+    verify(valueOperations).increment("flight_search:generation");
+  }
+
+  @Test
+  @DisplayName("Should sweep only keys of older generations")
+  @SuppressWarnings("unchecked")
+  void testSweepStaleGenerations_UnlinksOldKeys() {
+    // Given
+    ReflectionTestUtils.setField(cacheService, "sweeperEnabled", true);
+    ReflectionTestUtils.setField(cacheService, "sweepBatchSize", 100);
+    when(valueOperations.increment("flight_search:generation", 0)).thenReturn(2L);
+    Iterator<String> keys =
+        List.of("flight_search:v0:a", "flight_search:v2:b", "flight_search:v1:c").iterator();
+    Cursor<String> cursor = mock(Cursor.class);
+    when(cursor.hasNext()).thenAnswer(invocation -> keys.hasNext());
+    when(cursor.next()).thenAnswer(invocation -> keys.next());
+    when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+    List<String> unlinked = new ArrayList<>();
+    when(redisTemplate.unlink(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<String> batch = invocation.getArgument(0);
+              unlinked.addAll(batch);
+              return (long) batch.size();
+            });
+
+    // When
+    cacheService.sweepStaleGenerations();
+
+    // Then
+    assertEquals(List.of("flight_search:v0:a", "flight_search:v1:c"), unlinked);
+  }
 }
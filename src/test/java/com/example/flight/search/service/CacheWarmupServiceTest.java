@@ -0,0 +1,117 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.SearchMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CacheWarmupService Tests")
+class CacheWarmupServiceTest {
+
+  @Mock private StringRedisTemplate redisTemplate;
+
+  @Mock private ZSetOperations<String, String> zSetOperations;
+
+  @Mock private FlightSearchService flightSearchService;
+
+  @InjectMocks private CacheWarmupService cacheWarmupService;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(cacheWarmupService, "warmupExecutor", (Executor) Runnable::run);
+    ReflectionTestUtils.setField(cacheWarmupService, "enabled", true);
+    ReflectionTestUtils.setField(cacheWarmupService, "topRoutes", 10);
+    ReflectionTestUtils.setField(cacheWarmupService, "days", 2);
+    ReflectionTestUtils.setField(cacheWarmupService, "concurrency", 2);
+    ReflectionTestUtils.setField(cacheWarmupService, "maxTracked", 100);
+    when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+  }
+
+  private FlightSearchRequest request(String source, String destination, Integer maxHops) {
+    FlightSearchRequest request =
+        new FlightSearchRequest(source, destination, LocalDate.of(2025, 8, 20).atTime(9, 0), 2);
+    request.setMaxHops(maxHops);
+    return request;
+  }
+
+  @Test
+  @DisplayName("Should flush buffered search counts per route in one increment each")
+  void testFlushCounts_AggregatesPerRoute() {
+    // Given
+    cacheWarmupService.recordSearch(request("DEL", "BOM", 1));
+    cacheWarmupService.recordSearch(request("DEL", "BOM", 1));
+    cacheWarmupService.recordSearch(request("DEL", "BLR", null));
+
+    // When
+    cacheWarmupService.flushCounts();
+    cacheWarmupService.flushCounts();
+
+    // Then
+    verify(zSetOperations).incrementScore(CacheWarmupService.POPULAR_ROUTES_KEY, "DEL_BOM_1_", 2.0);
+    verify(zSetOperations).incrementScore(CacheWarmupService.POPULAR_ROUTES_KEY, "DEL_BLR__", 1.0);
+    verify(zSetOperations).removeRange(CacheWarmupService.POPULAR_ROUTES_KEY, 0, -101L);
+  }
+
+  @Test
+  @DisplayName("Should search each popular route for each warm-up day")
+  void testWarmUp_SearchesTopRoutes() {
+    // Given
+    LinkedHashSet<String> routes = new LinkedHashSet<>(List.of("DEL_BOM_1_", "BOM_BLR__CSA"));
+    when(zSetOperations.reverseRange(CacheWarmupService.POPULAR_ROUTES_KEY, 0, 9L))
+        .thenReturn(routes);
+    LocalDate day = LocalDate.of(2025, 8, 20);
+
+    // When
+    cacheWarmupService.warmUp(day);
+
+    // Then
+    ArgumentCaptor<FlightSearchRequest> captor = ArgumentCaptor.forClass(FlightSearchRequest.class);
+    verify(flightSearchService, times(4)).searchFlights(captor.capture());
+    List<FlightSearchRequest> searches = new ArrayList<>(captor.getAllValues());
+    assertEquals("DEL", searches.get(0).getSource());
+    assertEquals(1, searches.get(0).getMaxHops());
+    assertEquals(day.atStartOfDay(), searches.get(0).getDepartureDateTime());
+    assertEquals(day.plusDays(1).atStartOfDay(), searches.get(1).getDepartureDateTime());
+    assertEquals("BLR", searches.get(2).getDestination());
+    assertNull(searches.get(2).getMaxHops());
+    assertEquals(SearchMode.CSA, searches.get(2).getSearchMode());
+    assertEquals(1, searches.get(3).getNoOfSeats());
+  }
+
+  @Test
+  @DisplayName("Should skip malformed routes and keep warming after a failed search")
+  void testWarmUp_ToleratesFailures() {
+    // Given
+    LinkedHashSet<String> routes = new LinkedHashSet<>(List.of("garbage", "DEL_BOM__"));
+    when(zSetOperations.reverseRange(CacheWarmupService.POPULAR_ROUTES_KEY, 0, 9L))
+        .thenReturn(routes);
+    when(flightSearchService.searchFlights(any()))
+        .thenThrow(new RuntimeException("Neo4j unavailable"))
+        .thenReturn(null);
+
+    // When
+    cacheWarmupService.warmUp(LocalDate.of(2025, 8, 20));
+
+    // Then
+    verify(flightSearchService, times(2)).searchFlights(any());
+  }
+}
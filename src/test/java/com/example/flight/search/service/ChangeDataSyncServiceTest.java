@@ -0,0 +1,279 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.config.TwoTierCacheManager;
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.AirportRepository;
+import com.example.flight.search.repository.FlightRepository;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ChangeDataSyncService Tests")
+class ChangeDataSyncServiceTest {
+
+  private static final IndexCoordinates INDEX = IndexCoordinates.of("flight_search");
+  private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+  @Mock private ScheduleRepository scheduleRepository;
+
+  @Mock private FlightRepository flightRepository;
+
+  @Mock private FlightSearchReindexer flightSearchReindexer;
+
+  @Mock private ElasticsearchOperations elasticsearchOperations;
+
+  @Mock private AirportRepository airportRepository;
+
+  @Mock private AirportGraph airportGraph;
+
+  @Mock private NegativeRouteCache negativeRouteCache;
+
+  @Mock private TwoTierCacheManager cacheManager;
+
+  @Mock private SegmentAvailabilityCache segmentAvailabilityCache;
+
+  @Mock private IndexOperations indexOperations;
+
+  @InjectMocks private ChangeDataSyncService changeDataSyncService;
+
+  private final List<Schedule> table = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(changeDataSyncService, "enabled", true);
+    ReflectionTestUtils.setField(changeDataSyncService, "batchSize", 2);
+    ReflectionTestUtils.setField(changeDataSyncService, "overlapMs", 5000L);
+
+    table.add(schedule(1L, "DEL", "BOM"));
+    table.add(schedule(2L, "DEL", "BOM"));
+    table.add(schedule(3L, "DEL", "GOI"));
+
+    lenient().when(scheduleRepository.findLatestUpdatedAt()).thenReturn(START);
+    lenient().when(flightRepository.findLatestUpdatedAt()).thenReturn(START);
+    lenient()
+        .when(elasticsearchOperations.getIndexCoordinatesFor(FlightSearchDocument.class))
+        .thenReturn(INDEX);
+    lenient().when(elasticsearchOperations.indexOps(INDEX)).thenReturn(indexOperations);
+    lenient()
+        .when(scheduleRepository.findAllWithFlightAndHopsByIdIn(any()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Long> ids = invocation.getArgument(0);
+              return table.stream()
+                  .filter(s -> ids.contains(s.getId()))
+                  .collect(Collectors.toList());
+            });
+  }
+
+  private Schedule schedule(long id, String source, String destination) {
+    Flight flight = new Flight("AI10" + id, "Air India", 180);
+    flight.setId(id);
+    LocalDateTime departure = LocalDateTime.of(2025, 2, 1, 6, 0);
+    Schedule schedule =
+        new Schedule(
+            flight,
+            source,
+            destination,
+            departure,
+            departure.plusHours(2),
+            50,
+            BigDecimal.valueOf(5000));
+    schedule.setId(id);
+    schedule.setHops(new ArrayList<>());
+    return schedule;
+  }
+
+  /** Answer the schedule change query from rows of id and updatedAt */
+  private void changedSchedules(List<Object[]> rows) {
+    when(scheduleRepository.findChangedSince(any(), anyLong(), any(Pageable.class)))
+        .thenAnswer(
+            invocation -> {
+              LocalDateTime since = invocation.getArgument(0);
+              long afterId = invocation.getArgument(1);
+              Pageable page = invocation.getArgument(2);
+              return rows.stream()
+                  .filter(
+                      row ->
+                          ((LocalDateTime) row[1]).isAfter(since)
+                              || (row[1].equals(since) && (Long) row[0] > afterId))
+                  .limit(page.getPageSize())
+                  .collect(Collectors.toList());
+            });
+  }
+
+  @Test
+  @DisplayName("Should page through changed schedules and upsert them in bulk")
+  void testPoll_UpsertsChangedSchedules() {
+    // Given
+    LocalDateTime changed = START.plusSeconds(1);
+    changedSchedules(
+        List.of(
+            new Object[] {1L, changed}, new Object[] {2L, changed}, new Object[] {3L, changed}));
+    when(airportGraph.isReady()).thenReturn(true);
+    when(airportGraph.hasRoute(anyString(), anyString())).thenReturn(true);
+
+    // When
+    changeDataSyncService.poll();
+
+    // Then
+    verify(scheduleRepository).findChangedSince(eq(START.minusSeconds(5)), eq(0L), any());
+    verify(scheduleRepository).findChangedSince(eq(changed), eq(2L), any());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Schedule>> written = ArgumentCaptor.forClass(List.class);
+    verify(flightSearchReindexer, times(2)).index(written.capture(), eq(INDEX));
+    assertEquals(
+        List.of(1L, 2L, 3L),
+        written.getAllValues().stream()
+            .flatMap(List::stream)
+            .map(Schedule::getId)
+            .collect(Collectors.toList()));
+    verify(airportRepository, never()).mergeRoute(any(), any(), any(), any(), any());
+    verify(airportGraph, never()).refresh();
+    // Schedules not indexed yet are evicted, after the refresh makes them searchable
+    InOrder refreshThenEvict = inOrder(indexOperations, cacheManager);
+    refreshThenEvict.verify(indexOperations).refresh();
+    refreshThenEvict.verify(cacheManager).evictSchedules(List.of(1L, 2L));
+    verify(cacheManager).evictSchedules(List.of(3L));
+    verify(cacheManager, never()).updateScheduleAvailability(any(), any());
+
+    // The next poll starts after the last row read, which is older than the overlap
+    changeDataSyncService.poll();
+    verify(scheduleRepository).findChangedSince(eq(changed), eq(3L), any());
+    verify(scheduleRepository, never())
+        .findChangedSince(eq(changed.minusSeconds(5)), anyLong(), any());
+    verify(flightSearchReindexer, times(2)).index(anyList(), eq(INDEX));
+  }
+
+  @Test
+  @DisplayName("Should read rows within the overlap again on the next poll")
+  void testPoll_RereadsRecentRows() {
+    // Given
+    LocalDateTime changed = LocalDateTime.now();
+    changedSchedules(List.<Object[]>of(new Object[] {3L, changed}));
+
+    // When
+    changeDataSyncService.poll();
+    changeDataSyncService.poll();
+
+    // Then
+    ArgumentCaptor<LocalDateTime> since = ArgumentCaptor.forClass(LocalDateTime.class);
+    verify(scheduleRepository, atLeast(2)).findChangedSince(since.capture(), anyLong(), any());
+    LocalDateTime secondPoll = since.getAllValues().get(since.getAllValues().size() - 1);
+    assertTrue(secondPoll.isBefore(changed));
+  }
+
+  @Test
+  @DisplayName("Should skip unchanged schedules and patch seat-only changes into the caches")
+  @SuppressWarnings("unchecked")
+  void testPoll_PatchesSeatOnlyChanges() {
+    // Given
+    LocalDateTime changed = START.plusSeconds(1);
+    changedSchedules(List.of(new Object[] {1L, changed}, new Object[] {2L, changed}));
+    FlightSearchDocument unchanged = FlightSearchReindexer.toDocument(table.get(0));
+    FlightSearchDocument booked = FlightSearchReindexer.toDocument(table.get(1));
+    booked.setAvailableSeats(51);
+    when(elasticsearchOperations.multiGet(
+            any(Query.class), eq(FlightSearchDocument.class), eq(INDEX)))
+        .thenReturn(List.of(MultiGetItem.of(unchanged, null), MultiGetItem.of(booked, null)));
+
+    // When
+    changeDataSyncService.poll();
+
+    // Then
+    verify(flightSearchReindexer).index(List.of(table.get(1)), INDEX);
+    verify(cacheManager).updateScheduleAvailability(2L, 50);
+    Schedule schedule = table.get(1);
+    verify(segmentAvailabilityCache).updateSeats(2L, "DEL", "BOM", schedule.getDepartureTime(), 50);
+    verify(cacheManager, never()).evictSchedules(any());
+    verify(segmentAvailabilityCache, never()).evict(any(), any(), any());
+    verify(indexOperations, never()).refresh();
+  }
+
+  @Test
+  @DisplayName("Should add routes the graph does not have yet and refresh it")
+  void testPoll_MergesNewRoutes() {
+    // Given
+    changedSchedules(List.<Object[]>of(new Object[] {3L, START.plusSeconds(1)}));
+    when(airportGraph.isReady()).thenReturn(true);
+    when(airportGraph.hasRoute("DEL", "GOI")).thenReturn(false);
+
+    // When
+    changeDataSyncService.poll();
+
+    // Then
+    verify(airportRepository).mergeRoute("DEL", "GOI", "Air India", "AI103", 5000.0);
+    verify(negativeRouteCache).invalidateAll();
+    verify(airportGraph).refresh();
+  }
+
+  @Test
+  @DisplayName("Should report the lag published by the instance holding the lease")
+  @SuppressWarnings("unchecked")
+  void testPoll_FollowerReportsLeaderLag() {
+    // Given
+    StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+        .thenReturn(false);
+    when(valueOperations.get("flight_search:cdc:lease")).thenReturn("leader");
+    long caughtUpAt = System.currentTimeMillis() - 60_000;
+    when(valueOperations.get("flight_search:cdc:caught-up-at"))
+        .thenReturn(Long.toString(caughtUpAt));
+    ReflectionTestUtils.setField(changeDataSyncService, "redisTemplate", redisTemplate);
+
+    // When
+    changeDataSyncService.poll();
+
+    // Then
+    assertTrue(changeDataSyncService.lagSeconds() >= 60);
+    verify(scheduleRepository, never()).findChangedSince(any(), anyLong(), any());
+  }
+
+  @Test
+  @DisplayName("Should resync every schedule of a changed flight")
+  void testPoll_ChangedFlight() {
+    // Given
+    changedSchedules(List.of());
+    when(flightRepository.findChangedSince(any(), anyLong(), any(Pageable.class)))
+        .thenReturn(List.<Object[]>of(new Object[] {7L, START.plusSeconds(1)}));
+    when(scheduleRepository.findIdsByFlightIdIn(List.of(7L))).thenReturn(List.of(1L, 2L));
+
+    // When
+    changeDataSyncService.poll();
+
+    // Then
+    verify(scheduleRepository).findAllWithFlightAndHopsByIdIn(List.of(1L, 2L));
+    verify(flightSearchReindexer).index(anyList(), eq(INDEX));
+  }
+}
@@ -0,0 +1,143 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConnectionIndex Tests")
+class ConnectionIndexTest {
+
+  @Mock private ScheduleRepository scheduleRepository;
+
+  @InjectMocks private ConnectionIndex connectionIndex;
+
+  private LocalDateTime day;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(connectionIndex, "enabled", true);
+    ReflectionTestUtils.setField(connectionIndex, "horizonDays", 30);
+    day = LocalDate.now().plusDays(1).atStartOfDay();
+  }
+
+  private Schedule schedule(long id, String source, String destination, int hour, int seats) {
+    Flight flight = new Flight("AI" + id, "Air India", 180);
+    Schedule schedule =
+        new Schedule(
+            flight,
+            source,
+            destination,
+            day.plusHours(hour),
+            day.plusHours(hour + 2),
+            seats,
+            new BigDecimal("10000"));
+    schedule.setId(id);
+    return schedule;
+  }
+
+  @Test
+  @DisplayName("Should not be ready before the first refresh")
+  void testNotReadyBeforeRefresh() {
+    assertFalse(connectionIndex.isReady());
+    assertFalse(connectionIndex.covers(day, day.plusDays(1)));
+    assertTrue(connectionIndex.findDepartures("DEL", day, day.plusDays(1), 1).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should return departures in the window ordered by departure time")
+  void testFindDepartures_OrderedWithinWindow() {
+    // Given - deliberately unsorted input
+    when(scheduleRepository.findSchedulesWithFlightDepartingBetween(
+            any(LocalDateTime.class), any(LocalDateTime.class)))
+        .thenReturn(
+            Arrays.asList(
+                schedule(3L, "DEL", "BOM", 14, 50),
+                schedule(1L, "DEL", "BOM", 6, 50),
+                schedule(2L, "DEL", "BLR", 10, 50),
+                schedule(4L, "DEL", "BOM", 22, 50)));
+
+    // When
+    connectionIndex.refresh();
+    List<Schedule> departures =
+        connectionIndex.findDepartures("DEL", day.plusHours(6), day.plusHours(14), 1);
+
+    // Then
+    assertTrue(connectionIndex.isReady());
+    assertEquals(Arrays.asList(1L, 2L, 3L), departures.stream().map(Schedule::getId).toList());
+  }
+
+  @Test
+  @DisplayName("Should filter departures by destination and seats")
+  void testFindDepartures_DestinationAndSeats() {
+    // Given
+    when(scheduleRepository.findSchedulesWithFlightDepartingBetween(
+            any(LocalDateTime.class), any(LocalDateTime.class)))
+        .thenReturn(
+            Arrays.asList(
+                schedule(1L, "DEL", "BOM", 6, 1),
+                schedule(2L, "DEL", "BLR", 10, 50),
+                schedule(3L, "DEL", "BOM", 14, 50)));
+
+    // When
+    connectionIndex.refresh();
+    List<Schedule> departures =
+        connectionIndex.findDepartures("DEL", "BOM", day, day.plusDays(1), 2);
+
+    // Then
+    assertEquals(1, departures.size());
+    assertEquals(3L, departures.get(0).getId());
+    assertTrue(connectionIndex.findDepartures("XXX", day, day.plusDays(1), 1).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should only cover windows inside the indexed horizon")
+  void testCovers() {
+    // Given
+    when(scheduleRepository.findSchedulesWithFlightDepartingBetween(
+            any(LocalDateTime.class), any(LocalDateTime.class)))
+        .thenReturn(Arrays.asList(schedule(1L, "DEL", "BOM", 6, 50)));
+
+    // When
+    connectionIndex.refresh();
+
+    // Then
+    assertTrue(connectionIndex.covers(day, day.plusDays(1)));
+    assertFalse(connectionIndex.covers(day.minusDays(2), day));
+    assertFalse(connectionIndex.covers(day, day.plusDays(60)));
+  }
+
+  @Test
+  @DisplayName("Should keep the previous snapshot when a refresh fails")
+  void testRefresh_FailureKeepsSnapshot() {
+    // Given
+    when(scheduleRepository.findSchedulesWithFlightDepartingBetween(
+            any(LocalDateTime.class), any(LocalDateTime.class)))
+        .thenReturn(Arrays.asList(schedule(1L, "DEL", "BOM", 6, 50)))
+        .thenThrow(new RuntimeException("Database unavailable"));
+
+    // When
+    connectionIndex.refresh();
+    connectionIndex.refresh();
+
+    // Then
+    assertEquals(1, connectionIndex.findDepartures("DEL", day, day.plusDays(1), 1).size());
+  }
+}
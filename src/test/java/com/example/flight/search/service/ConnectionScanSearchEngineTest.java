@@ -0,0 +1,304 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import com.example.flight.search.dto.SearchMode;
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares the connection scan engine against the route-then-validate path on synthetic networks.
+ * The benchmark only runs with {@code -Dbenchmark=true}.
+ */
+@DisplayName("ConnectionScanSearchEngine Tests")
+class ConnectionScanSearchEngineTest {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(ConnectionScanSearchEngineTest.class);
+  private static final LocalDateTime DAY = LocalDate.now().plusDays(1).atStartOfDay();
+
+  private FlightSearchService flightSearchService;
+
+  /** Wire both engines against an in-memory network served by a mocked schedule repository */
+  private void setUpNetwork(int airports, int schedules, long seed) {
+    List<Schedule> network = generateNetwork(airports, schedules, seed);
+    ScheduleRepository scheduleRepository = mockScheduleRepository(network);
+
+    ConnectionIndex connectionIndex = new ConnectionIndex();
+    ReflectionTestUtils.setField(connectionIndex, "scheduleRepository", scheduleRepository);
+    ReflectionTestUtils.setField(connectionIndex, "enabled", true);
+    ReflectionTestUtils.setField(connectionIndex, "horizonDays", 30);
+    connectionIndex.refresh();
+
+    ConnectionScanSearchEngine connectionScanSearchEngine = new ConnectionScanSearchEngine();
+    ReflectionTestUtils.setField(connectionScanSearchEngine, "connectionIndex", connectionIndex);
+
+    // No AirportRepository, so routes come from the algorithmic fallback
+    PathFindingService pathFindingService = new PathFindingService();
+    ReflectionTestUtils.setField(pathFindingService, "scheduleRepository", scheduleRepository);
+
+    flightSearchService = new FlightSearchService();
+    ReflectionTestUtils.setField(flightSearchService, "scheduleRepository", scheduleRepository);
+    ReflectionTestUtils.setField(flightSearchService, "pathFindingService", pathFindingService);
+    ReflectionTestUtils.setField(flightSearchService, "connectionIndex", connectionIndex);
+    ReflectionTestUtils.setField(
+        flightSearchService, "connectionScanSearchEngine", connectionScanSearchEngine);
+  }
+
+  /** Random network whose departures all fall in the first 12 hours of the search day */
+  private List<Schedule> generateNetwork(int airports, int schedules, long seed) {
+    Random random = new Random(seed);
+    List<Schedule> network = new ArrayList<>();
+
+    for (long id = 1; id <= schedules; id++) {
+      int from = random.nextInt(airports);
+      int to = (from + 1 + random.nextInt(airports - 1)) % airports;
+      LocalDateTime departure = DAY.plusMinutes(random.nextInt(12 * 60));
+
+      Flight flight = new Flight("FL" + id, "Airline " + (id % 4), 180);
+      flight.setId(id);
+      Schedule schedule =
+          new Schedule(
+              flight,
+              airportCode(from),
+              airportCode(to),
+              departure,
+              departure.plusMinutes(60 + random.nextInt(120)),
+              random.nextInt(10),
+              BigDecimal.valueOf(5000 + random.nextInt(10000)));
+      schedule.setId(id);
+      network.add(schedule);
+    }
+
+    return network;
+  }
+
+  private static String airportCode(int index) {
+    return "A" + index;
+  }
+
+  private ScheduleRepository mockScheduleRepository(List<Schedule> network) {
+    ScheduleRepository repository = mock(ScheduleRepository.class);
+    Map<String, List<Schedule>> byPair =
+        network.stream()
+            .collect(Collectors.groupingBy(s -> s.getSource() + "-" + s.getDestination()));
+    Map<Long, Integer> seatsById =
+        network.stream().collect(Collectors.toMap(Schedule::getId, Schedule::getAvailableSeats));
+
+    when(repository.findSchedulesWithFlightDepartingBetween(
+            any(LocalDateTime.class), any(LocalDateTime.class)))
+        .thenReturn(network);
+    when(repository.findBySourceAndDestination(anyString(), anyString()))
+        .thenAnswer(
+            invocation ->
+                byPair.getOrDefault(
+                    invocation.getArgument(0) + "-" + invocation.getArgument(1), List.of()));
+    when(repository.findDestinationsBySource(anyString()))
+        .thenAnswer(
+            invocation ->
+                network.stream()
+                    .filter(s -> s.getSource().equals(invocation.getArgument(0)))
+                    .map(Schedule::getDestination)
+                    .distinct()
+                    .collect(Collectors.toList()));
+    when(repository.findDirectFlightSchedules(
+            anyString(), anyString(), any(LocalDateTime.class), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              LocalDateTime from = invocation.getArgument(2);
+              Integer seats = invocation.getArgument(3);
+              return byPair
+                  .getOrDefault(
+                      invocation.getArgument(0) + "-" + invocation.getArgument(1), List.of())
+                  .stream()
+                  .filter(s -> !s.getDepartureTime().isBefore(from))
+                  .filter(s -> s.getAvailableSeats() >= seats)
+                  .collect(Collectors.toList());
+            });
+    when(repository.findAvailableSeatsByIds(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Long> ids = invocation.getArgument(0);
+              return ids.stream()
+                  .map(id -> new Object[] {id, seatsById.get(id)})
+                  .collect(Collectors.toList());
+            });
+
+    return repository;
+  }
+
+  private FlightSearchRequest request(String source, String destination, int maxHops) {
+    FlightSearchRequest request = new FlightSearchRequest(source, destination, DAY, 2);
+    request.setMaxHops(maxHops);
+    request.setSize(100_000);
+    return request;
+  }
+
+  private Set<String> itinerarySignatures(FlightSearchRequest request, SearchMode mode) {
+    request.setSearchMode(mode);
+    return flightSearchService.searchFlights(request).getContent().stream()
+        .map(this::signature)
+        .collect(Collectors.toSet());
+  }
+
+  private String signature(FlightSearchResult result) {
+    return result.getNumberOfHops()
+        + ":"
+        + result.getSchedules().stream()
+            .map(ScheduleDto::getScheduleId)
+            .map(String::valueOf)
+            .collect(Collectors.joining(">"));
+  }
+
+  @Test
+  @DisplayName("Should find the same itineraries as route enumeration and validation")
+  void testSearch_MatchesRoutePath() {
+    // Given
+    setUpNetwork(8, 120, 42L);
+
+    for (int destination = 1; destination < 8; destination++) {
+      FlightSearchRequest request = request(airportCode(0), airportCode(destination), 2);
+
+      // When
+      Set<String> routeItineraries = itinerarySignatures(request, SearchMode.ROUTE);
+      Set<String> scanItineraries = itinerarySignatures(request, SearchMode.CSA);
+
+      // Then
+      assertEquals(routeItineraries, scanItineraries);
+    }
+  }
+
+  @Test
+  @DisplayName("Should honour layover bounds, seat count and hop limit")
+  void testSearch_RespectsConstraints() {
+    // Given
+    setUpNetwork(8, 120, 7L);
+    FlightSearchRequest request = request(airportCode(0), airportCode(5), 1);
+
+    // When
+    request.setSearchMode(SearchMode.CSA);
+    List<FlightSearchResult> results = flightSearchService.searchFlights(request).getContent();
+
+    // Then
+    assertFalse(results.isEmpty());
+    for (FlightSearchResult result : results) {
+      List<ScheduleDto> legs = result.getSchedules();
+      assertTrue(result.getNumberOfHops() <= 1);
+      assertEquals(legs.size() - 1, result.getNumberOfHops());
+      for (int i = 0; i < legs.size(); i++) {
+        assertTrue(legs.get(i).getAvailableSeats() >= 2);
+        if (i > 0) {
+          long layover =
+              java.time.Duration.between(
+                      legs.get(i - 1).getArrivalTime(), legs.get(i).getDepartureTime())
+                  .toMinutes();
+          assertTrue(layover >= FlightSearchService.MIN_LAYOVER_MINUTES);
+          assertTrue(layover <= FlightSearchService.MAX_LAYOVER_HOURS * 60);
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should return the same pages in top-K mode as with a full sort")
+  void testSearch_TopKPagesMatchFullSort() {
+    // Given
+    setUpNetwork(6, 300, 42L);
+
+    for (boolean sortByPrice : new boolean[] {true, false}) {
+      FlightSearchRequest fullRequest = request(airportCode(0), airportCode(3), 2);
+      fullRequest.setSearchMode(SearchMode.ROUTE);
+      fullRequest.setSortByPrice(sortByPrice);
+      List<FlightSearchResult> all =
+          new ArrayList<>(flightSearchService.searchFlights(fullRequest).getContent());
+      all.sort(ItineraryOrder.of(fullRequest));
+
+      // When
+      ReflectionTestUtils.setField(flightSearchService, "topKEnabled", true);
+      List<String> topK = new ArrayList<>();
+      for (int page = 0; page < 3; page++) {
+        FlightSearchRequest request = request(airportCode(0), airportCode(3), 2);
+        request.setSearchMode(SearchMode.ROUTE);
+        request.setSortByPrice(sortByPrice);
+        request.setPage(page);
+        request.setSize(5);
+        Page<FlightSearchResult> results = flightSearchService.searchFlights(request);
+        results.forEach(result -> topK.add(signature(result)));
+
+        // The itinerary collected beyond the page shows that another page follows
+        assertEquals(5, results.getNumberOfElements());
+        assertTrue(results.hasNext());
+        assertTrue(results.getTotalElements() > (page + 1) * 5L);
+        assertNotNull(flightSearchService.nextContinuationToken(request, results));
+      }
+      ReflectionTestUtils.setField(flightSearchService, "topKEnabled", false);
+
+      // Then
+      assertTrue(all.size() > 15);
+      assertEquals(
+          all.subList(0, 15).stream().map(this::signature).collect(Collectors.toList()), topK);
+    }
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+  @DisplayName("Benchmark connection scan against route enumeration and validation")
+  void benchmarkConnectionScanAgainstRoutePath() {
+    setUpNetwork(30, 3000, 2024L);
+    int iterations = 5;
+
+    for (int maxHops = 1; maxHops <= 2; maxHops++) {
+      FlightSearchRequest request = request(airportCode(0), airportCode(29), maxHops);
+
+      // Warm up both paths before timing
+      itinerarySignatures(request, SearchMode.ROUTE);
+      itinerarySignatures(request, SearchMode.CSA);
+
+      long routeNanos = 0;
+      long scanNanos = 0;
+      int itineraries = 0;
+      for (int i = 0; i < iterations; i++) {
+        long started = System.nanoTime();
+        Set<String> routeItineraries = itinerarySignatures(request, SearchMode.ROUTE);
+        routeNanos += System.nanoTime() - started;
+
+        started = System.nanoTime();
+        Set<String> scanItineraries = itinerarySignatures(request, SearchMode.CSA);
+        scanNanos += System.nanoTime() - started;
+
+        assertEquals(routeItineraries, scanItineraries);
+        itineraries = scanItineraries.size();
+      }
+
+      logger.info(
+          "maxHops={} itineraries={} route={} ms csa={} ms",
+          maxHops,
+          itineraries,
+          String.format("%.2f", routeNanos / 1_000_000.0 / iterations),
+          String.format("%.2f", scanNanos / 1_000_000.0 / iterations));
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FlightSearchIndexManager Tests")
+class FlightSearchIndexManagerTest {
+
+  private static final String ALIAS = "flight_search";
+  private static final String LIVE = "flight_search_v20250101030000000";
+
+  @Mock private ElasticsearchOperations elasticsearchOperations;
+
+  @Mock private FlightSearchReindexer flightSearchReindexer;
+
+  @Mock private ScheduleRepository scheduleRepository;
+
+  @Mock private IndexOperations indexOperations;
+
+  @InjectMocks private FlightSearchIndexManager flightSearchIndexManager;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(flightSearchIndexManager, "minDocumentRatio", 0.95);
+    ReflectionTestUtils.setField(flightSearchIndexManager, "retainedVersions", 1);
+
+    when(elasticsearchOperations.getIndexCoordinatesFor(FlightSearchDocument.class))
+        .thenReturn(IndexCoordinates.of(ALIAS));
+    IndexOperations mappingOperations = mock(IndexOperations.class);
+    when(elasticsearchOperations.indexOps(FlightSearchDocument.class))
+        .thenReturn(mappingOperations);
+    when(mappingOperations.createMapping()).thenReturn(Document.create());
+    when(elasticsearchOperations.indexOps(any(IndexCoordinates.class))).thenReturn(indexOperations);
+    when(indexOperations.getAliases(ALIAS)).thenReturn(Map.of(LIVE, Set.of()));
+    when(indexOperations.exists()).thenReturn(true);
+  }
+
+  /** Live index with the given documents, new version with the built documents */
+  private void counts(long live, long built) {
+    when(elasticsearchOperations.count(any(Query.class), any(IndexCoordinates.class)))
+        .thenAnswer(
+            invocation ->
+                ALIAS.equals(invocation.<IndexCoordinates>getArgument(1).getIndexName())
+                    ? live
+                    : built);
+  }
+
+  private static List<String> indices(AliasActions actions, Class<?> type) {
+    return actions.getActions().stream()
+        .filter(type::isInstance)
+        .flatMap(action -> List.of(action.getParameters().getIndices()).stream())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  @DisplayName("Should load a new version and move the alias to it in one request")
+  void testRebuild_SwapsAlias() {
+    // Given
+    when(scheduleRepository.count()).thenReturn(1000L);
+    counts(990, 1000);
+    when(indexOperations.getInformation(any(IndexCoordinates.class))).thenReturn(List.of());
+
+    // When
+    boolean swapped = flightSearchIndexManager.rebuild();
+
+    // Then
+    assertTrue(swapped);
+    ArgumentCaptor<IndexCoordinates> target = ArgumentCaptor.forClass(IndexCoordinates.class);
+    verify(flightSearchReindexer).reindex(target.capture());
+    String version = target.getValue().getIndexName();
+    assertTrue(version.startsWith(ALIAS + "_v"));
+    verify(indexOperations).create(anyMap(), any(Document.class));
+
+    ArgumentCaptor<AliasActions> actions = ArgumentCaptor.forClass(AliasActions.class);
+    verify(indexOperations).alias(actions.capture());
+    assertEquals(List.of(LIVE), indices(actions.getValue(), AliasAction.Remove.class));
+    assertEquals(List.of(version), indices(actions.getValue(), AliasAction.Add.class));
+  }
+
+  @Test
+  @DisplayName("Should keep the live version when the new one is missing documents")
+  void testRebuild_RejectsIncompleteVersion() {
+    // Given
+    when(scheduleRepository.count()).thenReturn(1000L);
+    counts(1000, 400);
+
+    // When
+    boolean swapped = flightSearchIndexManager.rebuild();
+
+    // Then
+    assertFalse(swapped);
+    verify(indexOperations, never()).alias(any());
+    verify(indexOperations).delete();
+  }
+
+  @Test
+  @DisplayName("Should copy schedules changed during a rebuild into the new version")
+  void testRebuild_CopiesChanges() {
+    // Given
+    when(scheduleRepository.count()).thenReturn(10L);
+    counts(10, 10);
+    when(indexOperations.getInformation(any(IndexCoordinates.class))).thenReturn(List.of());
+    when(flightSearchReindexer.reindex(any(IndexCoordinates.class)))
+        .thenAnswer(
+            invocation -> {
+              flightSearchIndexManager.recordChange(7L);
+              return 10L;
+            });
+
+    // When
+    flightSearchIndexManager.rebuild();
+
+    // Then
+    verify(flightSearchReindexer).reindex(eq(Set.of(7L)), any(IndexCoordinates.class));
+  }
+}
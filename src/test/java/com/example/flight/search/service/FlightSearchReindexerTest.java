@@ -0,0 +1,129 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.document.FlightSearchDocument;
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FlightSearchReindexer Tests")
+class FlightSearchReindexerTest {
+
+  private static final IndexCoordinates INDEX = IndexCoordinates.of("flight_search");
+
+  @Mock private ScheduleRepository scheduleRepository;
+
+  @Mock private ElasticsearchOperations elasticsearchOperations;
+
+  @Mock private IndexOperations indexOperations;
+
+  @InjectMocks private FlightSearchReindexer flightSearchReindexer;
+
+  private final List<Schedule> table = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(flightSearchReindexer, "batchSize", 2);
+    ReflectionTestUtils.setField(flightSearchReindexer, "concurrency", 2);
+
+    for (long id = 1; id <= 3; id++) {
+      Flight flight = new Flight("AI10" + id, "Air India", 180);
+      flight.setId(id);
+      LocalDateTime departure = LocalDateTime.of(2025, 1, 1, 6, 0).plusHours(id);
+      Schedule schedule =
+          new Schedule(
+              flight,
+              "DEL",
+              "BOM",
+              departure,
+              departure.plusHours(2),
+              50,
+              BigDecimal.valueOf(5000));
+      schedule.setId(id);
+      schedule.setHops(new ArrayList<>());
+      table.add(schedule);
+    }
+  }
+
+  @Test
+  @DisplayName("Should walk the table in keyset chunks, one bulk request per chunk")
+  void testReindex_BulkWritesKeysetChunks() {
+    // Given
+    when(scheduleRepository.findIdsAfter(anyLong(), any(Pageable.class)))
+        .thenAnswer(
+            invocation -> {
+              long afterId = invocation.getArgument(0);
+              Pageable page = invocation.getArgument(1);
+              return table.stream()
+                  .map(Schedule::getId)
+                  .filter(id -> id > afterId)
+                  .limit(page.getPageSize())
+                  .collect(Collectors.toList());
+            });
+    when(scheduleRepository.findAllWithFlightAndHopsByIdIn(any()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Long> ids = invocation.getArgument(0);
+              return table.stream()
+                  .filter(s -> ids.contains(s.getId()))
+                  .collect(Collectors.toList());
+            });
+    when(elasticsearchOperations.indexOps(INDEX)).thenReturn(indexOperations);
+
+    // When
+    long indexed = flightSearchReindexer.reindex(INDEX);
+
+    // Then
+    assertEquals(3, indexed);
+    verify(scheduleRepository).findIdsAfter(eq(0L), any(Pageable.class));
+    verify(scheduleRepository).findIdsAfter(eq(2L), any(Pageable.class));
+    verify(scheduleRepository).findIdsAfter(eq(3L), any(Pageable.class));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<IndexQuery>> bulks = ArgumentCaptor.forClass(List.class);
+    verify(elasticsearchOperations, times(2))
+        .bulkIndex(bulks.capture(), any(BulkOptions.class), eq(INDEX));
+    assertEquals(List.of(2, 1), bulks.getAllValues().stream().map(List::size).toList());
+    assertEquals("1_1", bulks.getAllValues().get(0).get(0).getId());
+    verify(indexOperations).refresh();
+  }
+
+  @Test
+  @DisplayName("Should build a complete search document from a schedule")
+  void testToDocument() {
+    // When
+    FlightSearchDocument document = FlightSearchReindexer.toDocument(table.get(0));
+
+    // Then
+    assertEquals("1_1", document.getId());
+    assertEquals("AI101", document.getFlightNumber());
+    assertEquals(1L, document.getScheduleId());
+    assertEquals(120L, document.getDurationMinutes());
+    assertEquals(List.of("direct", "air_india", "del", "bom"), document.getSearchTags());
+  }
+}
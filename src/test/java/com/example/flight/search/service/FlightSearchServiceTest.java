@@ -7,14 +7,22 @@ import static org.mockito.Mockito.*;
 import com.example.flight.search.document.FlightSearchDocument;
 import com.example.flight.search.dto.FlightSearchRequest;
 import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.SearchMode;
 import com.example.flight.search.entity.Flight;
 import com.example.flight.search.entity.Schedule;
 import com.example.flight.search.repository.FlightSearchRepository;
 import com.example.flight.search.repository.ScheduleRepository;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -26,6 +34,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,8 +47,6 @@ class FlightSearchServiceTest {
 
   @Mock private PathFindingService pathFindingService;
 
-  @Mock private CacheService cacheService;
-
   @Mock private ScheduleRepository scheduleRepository;
 
   @InjectMocks private FlightSearchService flightSearchService;
@@ -161,6 +170,21 @@ class FlightSearchServiceTest {
     assertEquals(0, results.getTotalElements());
   }
 
+  @Test
+  @DisplayName("Should skip the index and database for pairs known to be unreachable")
+  void testSearchFlights_UnreachablePair() {
+    // Given
+    when(pathFindingService.isUnreachable(eq("NYC"), eq("LAX"), anyInt())).thenReturn(true);
+
+    // When
+    Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+
+    // Then
+    assertEquals(0, results.getTotalElements());
+    verifyNoInteractions(flightSearchRepository, scheduleRepository);
+    verify(pathFindingService, never()).findRoutesWithHops(anyString(), anyString(), anyInt());
+  }
+
   @Test
   @DisplayName("Should handle null maxHops with default value")
   void testSearchFlights_NullMaxHops() {
@@ -182,6 +206,227 @@ class FlightSearchServiceTest {
     verify(pathFindingService).findRoutesWithHops("NYC", "LAX", 3);
   }
 
+  @Test
+  @DisplayName("Should return completed hop stages when the deadline expires")
+  void testSearchFlights_DeadlineReturnsCompletedStages() {
+    // Given - multi-hop stages block far beyond the deadline
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    ReflectionTestUtils.setField(flightSearchService, "searchExecutor", executor);
+    ReflectionTestUtils.setField(flightSearchService, "searchDeadlineMs", 500L);
+    when(flightSearchRepository
+            .findBySourceAndDestinationAndDepartureTimeAfterAndAvailableSeatsGreaterThanEqual(
+                anyString(), anyString(), any(LocalDateTime.class), anyInt(), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(Arrays.asList(document1)));
+    when(pathFindingService.findRoutesWithHops(anyString(), anyString(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(10_000);
+              return Collections.emptyList();
+            });
+
+    try {
+      // When
+      long started = System.currentTimeMillis();
+      Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+      long elapsed = System.currentTimeMillis() - started;
+
+      // Then
+      assertEquals(1, results.getTotalElements());
+      assertTrue(elapsed < 5_000, "Search waited for stages past the deadline");
+      // The cached search hands the truncated page over without returning it to the cache
+      FlightSearchService.PartialResultException partial =
+          assertThrows(
+              FlightSearchService.PartialResultException.class,
+              () -> flightSearchService.findFlights(searchRequest));
+      assertEquals(1, ((Page<?>) partial.getResult()).getTotalElements());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("Should fail hop stages the saturated executor rejects instead of running them")
+  void testSearchFlights_RejectedStagesFail() {
+    // Given
+    Executor saturated =
+        command -> {
+          throw new RejectedExecutionException("Search executor saturated");
+        };
+    ReflectionTestUtils.setField(flightSearchService, "searchExecutor", saturated);
+
+    // When
+    Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+
+    // Then
+    assertEquals(0, results.getTotalElements());
+    assertThrows(
+        FlightSearchService.PartialResultException.class,
+        () -> flightSearchService.findFlights(searchRequest));
+    verifyNoInteractions(flightSearchRepository, pathFindingService);
+  }
+
+  @Test
+  @DisplayName("Should resolve each route layer with a single batched query")
+  void testSearchFlights_BatchesSegmentLookupsPerLayer() {
+    // Given - two one-stop routes sharing no segment, Elasticsearch unavailable
+    ReflectionTestUtils.setField(searchRequest, "maxHops", 1);
+    ReflectionTestUtils.setField(schedule1, "baseFare", BigDecimal.valueOf(200));
+    ReflectionTestUtils.setField(schedule2, "baseFare", BigDecimal.valueOf(300));
+    when(pathFindingService.findRoutesWithHops("NYC", "LAX", 1))
+        .thenReturn(
+            Arrays.asList(Arrays.asList("NYC", "CHI", "LAX"), Arrays.asList("NYC", "DEN", "LAX")));
+    when(scheduleRepository.findDepartureSchedulesForSegments(
+            anyCollection(),
+            anyCollection(),
+            any(LocalDateTime.class),
+            any(LocalDateTime.class),
+            eq(2)))
+        .thenReturn(Arrays.asList(schedule1))
+        .thenReturn(Arrays.asList(schedule2));
+
+    // When
+    Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+
+    // Then - one query for the first legs and one for the second legs
+    assertEquals(1, results.getTotalElements());
+    verify(scheduleRepository, times(2))
+        .findDepartureSchedulesForSegments(
+            anyCollection(),
+            anyCollection(),
+            any(LocalDateTime.class),
+            any(LocalDateTime.class),
+            eq(2));
+    verify(scheduleRepository, never())
+        .findDepartureSchedules(
+            anyString(), any(LocalDateTime.class), any(LocalDateTime.class), anyInt());
+  }
+
+  @Test
+  @DisplayName("Should build route legs from search documents without loading schedules")
+  void testSearchFlights_BuildsLegsFromSearchDocuments() {
+    // Given
+    ReflectionTestUtils.setField(searchRequest, "maxHops", 1);
+    FlightSearchDocument firstLeg =
+        new FlightSearchDocument(
+            "DL100",
+            "Delta Airlines",
+            "NYC",
+            "CHI",
+            LocalDateTime.now().plusDays(1).plusHours(10),
+            LocalDateTime.now().plusDays(1).plusHours(12),
+            BigDecimal.valueOf(200),
+            10,
+            0,
+            1L,
+            1L);
+    FlightSearchDocument secondLeg =
+        new FlightSearchDocument(
+            "DL200",
+            "Delta Airlines",
+            "CHI",
+            "LAX",
+            LocalDateTime.now().plusDays(1).plusHours(14),
+            LocalDateTime.now().plusDays(1).plusHours(17),
+            BigDecimal.valueOf(300),
+            8,
+            0,
+            2L,
+            1L);
+    when(flightSearchRepository
+            .findBySourceAndDestinationAndDepartureTimeAfterAndAvailableSeatsGreaterThanEqual(
+                anyString(), anyString(), any(LocalDateTime.class), anyInt(), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(Collections.emptyList()));
+    when(pathFindingService.findRoutesWithHops("NYC", "LAX", 1))
+        .thenReturn(Arrays.asList(Arrays.asList("NYC", "CHI", "LAX")));
+    ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    ReflectionTestUtils.setField(
+        flightSearchService, "elasticsearchOperations", elasticsearchOperations);
+    SearchHits<FlightSearchDocument> firstSegment = searchHits(1, firstLeg);
+    SearchHits<FlightSearchDocument> secondSegment = searchHits(1, secondLeg);
+    when(elasticsearchOperations.multiSearch(anyList(), eq(FlightSearchDocument.class)))
+        .thenReturn(List.of(firstSegment))
+        .thenReturn(List.of(secondSegment));
+
+    // When
+    Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+
+    // Then
+    assertEquals(1, results.getTotalElements());
+    assertEquals("DL100+DL200", results.getContent().get(0).getFlightNumber());
+    verifyNoInteractions(scheduleRepository);
+  }
+
+  @Test
+  @DisplayName("Should resolve segments with truncated search results from the database")
+  void testSearchFlights_TruncatedSegmentsFromDatabase() {
+    // Given - more first legs match than a segment query returns
+    ReflectionTestUtils.setField(searchRequest, "maxHops", 1);
+    ReflectionTestUtils.setField(schedule1, "baseFare", BigDecimal.valueOf(200));
+    FlightSearchDocument secondLeg =
+        new FlightSearchDocument(
+            "DL200",
+            "Delta Airlines",
+            "CHI",
+            "LAX",
+            LocalDateTime.now().plusDays(1).plusHours(14),
+            LocalDateTime.now().plusDays(1).plusHours(17),
+            BigDecimal.valueOf(300),
+            8,
+            0,
+            2L,
+            1L);
+    when(flightSearchRepository
+            .findBySourceAndDestinationAndDepartureTimeAfterAndAvailableSeatsGreaterThanEqual(
+                anyString(), anyString(), any(LocalDateTime.class), anyInt(), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(Collections.emptyList()));
+    when(pathFindingService.findRoutesWithHops("NYC", "LAX", 1))
+        .thenReturn(Arrays.asList(Arrays.asList("NYC", "CHI", "LAX")));
+    ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+    ReflectionTestUtils.setField(
+        flightSearchService, "elasticsearchOperations", elasticsearchOperations);
+    SearchHits<FlightSearchDocument> firstSegment = searchHits(150, document1);
+    SearchHits<FlightSearchDocument> secondSegment = searchHits(1, secondLeg);
+    when(elasticsearchOperations.multiSearch(anyList(), eq(FlightSearchDocument.class)))
+        .thenReturn(List.of(firstSegment))
+        .thenReturn(List.of(secondSegment));
+    when(scheduleRepository.findDepartureSchedulesForSegments(
+            eq(Set.of("NYC")),
+            eq(Set.of("CHI")),
+            any(LocalDateTime.class),
+            any(LocalDateTime.class),
+            eq(2)))
+        .thenReturn(Arrays.asList(schedule1));
+
+    // When
+    Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+
+    // Then
+    assertEquals(1, results.getTotalElements());
+    verify(scheduleRepository, times(1))
+        .findDepartureSchedulesForSegments(
+            anyCollection(),
+            anyCollection(),
+            any(LocalDateTime.class),
+            any(LocalDateTime.class),
+            anyInt());
+  }
+
+  /** Search response with the given total hit count and documents */
+  @SuppressWarnings("unchecked")
+  private static SearchHits<FlightSearchDocument> searchHits(
+      long totalHits, FlightSearchDocument... documents) {
+    List<SearchHit<FlightSearchDocument>> hits = new ArrayList<>();
+    for (FlightSearchDocument document : documents) {
+      SearchHit<FlightSearchDocument> hit = mock(SearchHit.class);
+      lenient().when(hit.getContent()).thenReturn(document);
+      hits.add(hit);
+    }
+    SearchHits<FlightSearchDocument> searchHits = mock(SearchHits.class);
+    when(searchHits.getTotalHits()).thenReturn(totalHits);
+    when(searchHits.getSearchHits()).thenReturn(hits);
+    return searchHits;
+  }
+
   @Test
   @DisplayName("Should test private method isValidConnection")
   void testIsValidConnection() {
@@ -268,6 +513,71 @@ class FlightSearchServiceTest {
     assertEquals(2, result.getNumberOfElements());
   }
 
+  @Test
+  @DisplayName("Should answer searches from the day's candidate set with per-request filters")
+  void testSearchFlights_FiltersCandidateSet() {
+    // Given
+    ReflectionTestUtils.setField(flightSearchService, "candidateCacheEnabled", true);
+    LocalDateTime day = LocalDateTime.now().plusDays(1).toLocalDate().atStartOfDay();
+    ReflectionTestUtils.setField(searchRequest, "time", day.plusHours(6));
+    ReflectionTestUtils.setField(searchRequest, "maxHops", 0);
+
+    FlightSearchDocument tooEarly = directDocument(2L, day.plusHours(5), 15);
+    FlightSearchDocument tooFewSeats = directDocument(3L, day.plusHours(9), 1);
+    ReflectionTestUtils.setField(document1, "departureTime", day.plusHours(8));
+    when(flightSearchRepository
+            .findBySourceAndDestinationAndDepartureTimeBetweenAndAvailableSeatsGreaterThanEqual(
+                eq("NYC"), eq("LAX"), eq(day), eq(day.plusDays(2)), eq(1), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(Arrays.asList(tooEarly, document1, tooFewSeats)));
+
+    // When
+    Page<FlightSearchResult> results = flightSearchService.searchFlights(searchRequest);
+
+    // Then
+    assertEquals(1, results.getTotalElements());
+    assertEquals(1L, results.getContent().get(0).getSchedules().get(0).getScheduleId().longValue());
+    verify(flightSearchRepository, never())
+        .findBySourceAndDestinationAndDepartureTimeAfterAndAvailableSeatsGreaterThanEqual(
+            anyString(), anyString(), any(LocalDateTime.class), anyInt(), any(Pageable.class));
+  }
+
+  @Test
+  @DisplayName("Should share one candidate key across seats, time of day, filters and pages")
+  void testCandidateQuery_NormalizesRequest() {
+    // Given
+    FlightSearchRequest other = new FlightSearchRequest();
+    ReflectionTestUtils.setField(other, "source", "NYC");
+    ReflectionTestUtils.setField(other, "destination", "LAX");
+    ReflectionTestUtils.setField(
+        other, "time", searchRequest.getDepartureDateTime().toLocalDate().atTime(23, 0));
+    ReflectionTestUtils.setField(other, "noOfSeats", 5);
+    other.setMaxPrice(500.0);
+    other.setSortByPrice(true);
+    other.setPage(3);
+
+    // When
+    CandidateQuery first = CandidateQuery.of(searchRequest, 2, SearchMode.ROUTE);
+    CandidateQuery second = CandidateQuery.of(other, 2, SearchMode.ROUTE);
+
+    // Then
+    assertEquals(first.cacheKey(), second.cacheKey());
+    assertNotEquals(first.cacheKey(), CandidateQuery.of(other, 3, SearchMode.ROUTE).cacheKey());
+  }
+
+  private FlightSearchDocument directDocument(
+      long scheduleId, LocalDateTime departureTime, int availableSeats) {
+    FlightSearchDocument document = new FlightSearchDocument();
+    ReflectionTestUtils.setField(document, "scheduleId", scheduleId);
+    ReflectionTestUtils.setField(document, "source", "NYC");
+    ReflectionTestUtils.setField(document, "destination", "LAX");
+    ReflectionTestUtils.setField(document, "flightNumber", "DL" + scheduleId);
+    ReflectionTestUtils.setField(document, "airline", "Delta Airlines");
+    ReflectionTestUtils.setField(document, "departureTime", departureTime);
+    ReflectionTestUtils.setField(document, "arrivalTime", departureTime.plusHours(5));
+    ReflectionTestUtils.setField(document, "availableSeats", availableSeats);
+    return document;
+  }
+
   @Test
   @DisplayName("Should test cache integration")
   void testSearchFlights_CacheIntegration() {
@@ -0,0 +1,164 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.flight.search.dto.FlightSearchRequest;
+import com.example.flight.search.dto.FlightSearchResult;
+import com.example.flight.search.dto.ScheduleDto;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ItineraryCollector Tests")
+class ItineraryCollectorTest {
+
+  private static final LocalDateTime DAY = LocalDate.now().plusDays(1).atStartOfDay();
+
+  private FlightSearchRequest request;
+
+  @BeforeEach
+  void setUp() {
+    request = new FlightSearchRequest("DEL", "BOM", DAY, 2);
+    request.setSortByPrice(true);
+  }
+
+  private FlightSearchResult result(long scheduleId, int departureHour, int price, int hops) {
+    ScheduleDto leg =
+        new ScheduleDto(
+            scheduleId,
+            "DEL",
+            "BOM",
+            DAY.plusHours(departureHour),
+            DAY.plusHours(departureHour + 2),
+            10);
+    return new FlightSearchResult(
+        "AI" + scheduleId,
+        "Air India",
+        DAY.plusHours(departureHour),
+        DAY.plusHours(departureHour + 2),
+        BigDecimal.valueOf(price),
+        hops,
+        Collections.singletonList(leg));
+  }
+
+  private List<FlightSearchResult> randomResults(int count, long seed) {
+    Random random = new Random(seed);
+    List<FlightSearchResult> results = new ArrayList<>();
+    for (long id = 1; id <= count; id++) {
+      // Few distinct prices, so most comparisons fall through to the tie-breakers
+      results.add(
+          result(id, random.nextInt(20), 1000 * (1 + random.nextInt(5)), random.nextInt(3)));
+    }
+    return results;
+  }
+
+  private List<Long> ids(List<FlightSearchResult> results) {
+    return results.stream()
+        .map(result -> result.getSchedules().get(0).getScheduleId())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  @DisplayName("Should keep exactly the best results in sort order")
+  void testOffer_KeepsBestResults() {
+    // Given
+    List<FlightSearchResult> results = randomResults(200, 3L);
+    ItineraryCollector collector =
+        new ItineraryCollector(ItineraryOrder.PRICE, 15, null, null, result -> true);
+
+    // When
+    collector.offerAll(results);
+
+    // Then
+    List<FlightSearchResult> sorted = new ArrayList<>(results);
+    sorted.sort(ItineraryOrder.PRICE);
+    assertEquals(ids(sorted.subList(0, 15)), ids(collector.sortedResults()));
+    assertEquals(200, collector.getAccepted());
+  }
+
+  @Test
+  @DisplayName("Should page through every result with continuation tokens")
+  void testContinuationToken_PagesThroughAllResults() {
+    // Given
+    List<FlightSearchResult> results = randomResults(50, 5L);
+    List<FlightSearchResult> sorted = new ArrayList<>(results);
+    sorted.sort(ItineraryOrder.PRICE);
+
+    // When
+    List<FlightSearchResult> paged = new ArrayList<>();
+    ContinuationToken after = null;
+    for (int page = 0; page < 5; page++) {
+      ItineraryCollector collector =
+          new ItineraryCollector(ItineraryOrder.PRICE, 10, after, null, result -> true);
+      collector.offerAll(results);
+      List<FlightSearchResult> content = collector.sortedResults();
+      paged.addAll(content);
+      after =
+          ContinuationToken.decode(
+              ContinuationToken.encode(request, content.get(content.size() - 1)), request);
+    }
+
+    // Then
+    assertEquals(ids(sorted), ids(paged));
+  }
+
+  @Test
+  @DisplayName("Should reject a continuation token issued for another search")
+  void testContinuationToken_RejectsOtherSearch() {
+    // Given
+    String token = ContinuationToken.encode(request, result(1L, 6, 5000, 0));
+    FlightSearchRequest other = new FlightSearchRequest("DEL", "BLR", DAY, 2);
+    other.setSortByPrice(true);
+
+    // When & Then
+    assertThrows(IllegalArgumentException.class, () -> ContinuationToken.decode(token, other));
+    assertThrows(
+        IllegalArgumentException.class, () -> ContinuationToken.decode("not-a-token", request));
+  }
+
+  @Test
+  @DisplayName("Should reject partial itineraries that cannot beat the worst kept result")
+  void testRejectsAll_UsesWorstKeptResult() {
+    // Given
+    ItineraryCollector collector =
+        new ItineraryCollector(ItineraryOrder.PRICE, 2, null, 20000.0, result -> true);
+    ItineraryCollector stageCollector = collector.newStageCollector();
+
+    // When & Then - nothing collected yet, only the price filter applies
+    assertFalse(stageCollector.rejectsAll(DAY, 15000, 1));
+    assertTrue(stageCollector.rejectsAll(DAY, 25000, 1));
+
+    // Once full, the worst kept price bounds every stage
+    collector.offer(result(1L, 6, 4000, 0));
+    collector.offer(result(2L, 7, 9000, 0));
+    assertTrue(stageCollector.rejectsAll(DAY, 9500, 1));
+    assertFalse(stageCollector.rejectsAll(DAY, 9000, 1));
+  }
+
+  @Test
+  @DisplayName("Should count what stage collectors ranked out towards the total")
+  void testAddRankedOut_CountsStageOverflow() {
+    // Given
+    ItineraryCollector collector =
+        new ItineraryCollector(ItineraryOrder.PRICE, 3, null, null, result -> true);
+    ItineraryCollector stageCollector = collector.newStageCollector();
+    stageCollector.offerAll(randomResults(10, 7L));
+
+    // When
+    collector.addRankedOut(stageCollector.getRankedOut());
+    collector.offerAll(stageCollector.sortedResults());
+
+    // Then
+    assertEquals(7, stageCollector.getRankedOut());
+    assertEquals(10, collector.getAccepted());
+    assertEquals(3, collector.sortedResults().size());
+  }
+}
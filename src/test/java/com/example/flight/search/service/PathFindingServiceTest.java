@@ -19,6 +19,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("PathFindingService Tests")
@@ -256,4 +257,77 @@ class PathFindingServiceTest {
           pathFindingService.findConnectingFlights(searchRequest);
         });
   }
+
+  @Test
+  @DisplayName("Should skip the graph and Neo4j for pairs cached as unreachable")
+  void testFindRoutesWithHops_CachedUnreachable() {
+    // Given
+    NegativeRouteCache negativeRouteCache = mock(NegativeRouteCache.class);
+    AirportGraph airportGraph = mock(AirportGraph.class);
+    ReflectionTestUtils.setField(pathFindingService, "negativeRouteCache", negativeRouteCache);
+    ReflectionTestUtils.setField(pathFindingService, "airportGraph", airportGraph);
+    when(negativeRouteCache.isUnreachable("NYC", "NOWHERE", 2)).thenReturn(true);
+
+    // When
+    List<List<String>> routes = pathFindingService.findRoutesWithHops("NYC", "NOWHERE", 2);
+
+    // Then
+    assertTrue(routes.isEmpty());
+    verifyNoInteractions(airportGraph, airportRepository, scheduleRepository);
+  }
+
+  @Test
+  @DisplayName("Should cache pairs the resident graph does not connect")
+  void testIsUnreachable_CachesGraphAbsence() {
+    // Given
+    NegativeRouteCache negativeRouteCache = mock(NegativeRouteCache.class);
+    AirportGraph airportGraph = mock(AirportGraph.class);
+    ReflectionTestUtils.setField(pathFindingService, "negativeRouteCache", negativeRouteCache);
+    ReflectionTestUtils.setField(pathFindingService, "airportGraph", airportGraph);
+    when(airportGraph.isReady()).thenReturn(true);
+    when(airportGraph.findRoutes("NYC", "NOWHERE", 0, 100)).thenReturn(Collections.emptyList());
+    when(airportGraph.findRoutes("NYC", "LAX", 0, 100)).thenReturn(List.of(List.of("NYC", "LAX")));
+
+    // When
+    boolean nowhere = pathFindingService.isUnreachable("NYC", "NOWHERE", 0);
+    boolean lax = pathFindingService.isUnreachable("NYC", "LAX", 0);
+
+    // Then
+    assertTrue(nowhere);
+    assertFalse(lax);
+    verify(negativeRouteCache).markUnreachable("NYC", "NOWHERE", 0);
+    verify(negativeRouteCache, never()).markUnreachable(eq("NYC"), eq("LAX"), anyInt());
+    verifyNoInteractions(airportRepository);
+  }
+
+  @Test
+  @DisplayName("Should not report pairs unreachable before the graph is loaded")
+  void testIsUnreachable_GraphNotLoaded() {
+    // When
+    boolean unreachable = pathFindingService.isUnreachable("NYC", "NOWHERE", 0);
+
+    // Then
+    assertFalse(unreachable);
+    verifyNoInteractions(airportRepository, scheduleRepository);
+  }
+
+  @Test
+  @DisplayName("Should cache empty Neo4j answers but not fallback results")
+  void testFindRoutesWithHops_CachesOnlyGraphAbsence() {
+    // Given
+    NegativeRouteCache negativeRouteCache = mock(NegativeRouteCache.class);
+    ReflectionTestUtils.setField(pathFindingService, "negativeRouteCache", negativeRouteCache);
+    when(airportRepository.findPathsWithExactHops("NYC", "NOWHERE", 1, 100))
+        .thenReturn(Collections.emptyList());
+    when(airportRepository.findPathsWithExactHops("NYC", "LAX", 1, 100))
+        .thenThrow(new RuntimeException("Neo4j connection failed"));
+
+    // When
+    pathFindingService.findRoutesWithHops("NYC", "NOWHERE", 1);
+    pathFindingService.findRoutesWithHops("NYC", "LAX", 1);
+
+    // Then
+    verify(negativeRouteCache).markUnreachable("NYC", "NOWHERE", 1);
+    verify(negativeRouteCache, never()).markUnreachable(eq("NYC"), eq("LAX"), anyInt());
+  }
 }
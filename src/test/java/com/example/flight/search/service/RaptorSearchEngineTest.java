@@ -0,0 +1,169 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import com.example.flight.search.repository.ScheduleRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RaptorSearchEngine Tests")
+class RaptorSearchEngineTest {
+
+  @Mock private ScheduleRepository scheduleRepository;
+
+  @InjectMocks private ConnectionIndex connectionIndex;
+
+  private RaptorSearchEngine raptorSearchEngine;
+
+  private ConnectionScanSearchEngine connectionScanSearchEngine;
+
+  private LocalDateTime day;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(connectionIndex, "enabled", true);
+    ReflectionTestUtils.setField(connectionIndex, "horizonDays", 30);
+
+    raptorSearchEngine = new RaptorSearchEngine();
+    ReflectionTestUtils.setField(raptorSearchEngine, "connectionIndex", connectionIndex);
+
+    connectionScanSearchEngine = new ConnectionScanSearchEngine();
+    ReflectionTestUtils.setField(connectionScanSearchEngine, "connectionIndex", connectionIndex);
+
+    day = LocalDate.now().plusDays(1).atStartOfDay();
+  }
+
+  private Schedule schedule(
+      long id, String source, String destination, int departureHour, int arrivalHour, int fare) {
+    Flight flight = new Flight("AI" + id, "Air India", 180);
+    Schedule schedule =
+        new Schedule(
+            flight,
+            source,
+            destination,
+            day.plusHours(departureHour),
+            day.plusHours(arrivalHour),
+            50,
+            BigDecimal.valueOf(fare));
+    schedule.setId(id);
+    return schedule;
+  }
+
+  private void index(List<Schedule> schedules) {
+    when(scheduleRepository.findSchedulesWithFlightDepartingBetween(
+            any(LocalDateTime.class), any(LocalDateTime.class)))
+        .thenReturn(schedules);
+    connectionIndex.refresh();
+  }
+
+  private Set<List<Long>> scheduleIds(List<List<Schedule>> itineraries) {
+    return itineraries.stream()
+        .map(legs -> legs.stream().map(Schedule::getId).collect(Collectors.toList()))
+        .collect(Collectors.toSet());
+  }
+
+  @Test
+  @DisplayName("Should keep only Pareto-optimal itineraries")
+  void testSearch_DropsDominatedItineraries() {
+    // Given
+    index(
+        Arrays.asList(
+            schedule(1L, "DEL", "BOM", 6, 8, 5000), // DEL-BOM-BLR: cheapest, one stop
+            schedule(2L, "BOM", "BLR", 10, 12, 5000),
+            schedule(3L, "DEL", "BLR", 6, 9, 15000), // fastest direct
+            schedule(4L, "DEL", "BLR", 5, 12, 16000), // dominated by the 06:00 direct
+            schedule(5L, "DEL", "HYD", 6, 8, 9000), // DEL-HYD-BLR: dominated by DEL-BOM-BLR
+            schedule(6L, "HYD", "BLR", 10, 12, 9000)));
+
+    // When
+    List<List<Schedule>> itineraries = raptorSearchEngine.search("DEL", "BLR", day, 1, 2);
+
+    // Then
+    assertEquals(Set.of(List.of(1L, 2L), List.of(3L)), scheduleIds(itineraries));
+  }
+
+  @Test
+  @DisplayName("Should not exceed the hop limit")
+  void testSearch_RespectsHopLimit() {
+    // Given
+    index(
+        Arrays.asList(
+            schedule(1L, "DEL", "BOM", 6, 8, 5000),
+            schedule(2L, "BOM", "HYD", 10, 11, 1000),
+            schedule(3L, "HYD", "BLR", 13, 14, 1000)));
+
+    // When & Then
+    assertTrue(raptorSearchEngine.search("DEL", "BLR", day, 1, 1).isEmpty());
+    assertEquals(
+        Set.of(List.of(1L, 2L, 3L)),
+        scheduleIds(raptorSearchEngine.search("DEL", "BLR", day, 1, 2)));
+  }
+
+  @Test
+  @DisplayName("Should return a mutually non-dominated subset of all itineraries")
+  void testSearch_SubsetOfConnectionScan() {
+    // Given
+    Random random = new Random(11L);
+    String[] airports = {"DEL", "BOM", "BLR", "MAA", "CCU", "HYD", "AMD", "COK"};
+    List<Schedule> schedules = new ArrayList<>();
+    for (long id = 1; id <= 150; id++) {
+      int from = random.nextInt(airports.length);
+      int to = (from + 1 + random.nextInt(airports.length - 1)) % airports.length;
+      int departure = random.nextInt(14);
+      schedules.add(
+          schedule(
+              id,
+              airports[from],
+              airports[to],
+              departure,
+              departure + 1 + random.nextInt(2),
+              3000 + random.nextInt(12000)));
+    }
+    index(schedules);
+
+    // When
+    List<List<Schedule>> pareto = raptorSearchEngine.search("DEL", "BLR", day, 1, 2);
+    List<List<Schedule>> all = connectionScanSearchEngine.search("DEL", "BLR", day, 1, 2);
+
+    // Then
+    assertFalse(pareto.isEmpty());
+    assertTrue(pareto.size() < all.size());
+    assertTrue(scheduleIds(all).containsAll(scheduleIds(pareto)));
+    for (List<Schedule> a : pareto) {
+      for (List<Schedule> b : pareto) {
+        assertFalse(a != b && dominates(a, b), "Pareto set contains a dominated itinerary");
+      }
+    }
+  }
+
+  private boolean dominates(List<Schedule> a, List<Schedule> b) {
+    return !a.get(0).getDepartureTime().isBefore(b.get(0).getDepartureTime())
+        && !a.get(a.size() - 1).getArrivalTime().isAfter(b.get(b.size() - 1).getArrivalTime())
+        && a.size() <= b.size()
+        && fare(a).compareTo(fare(b)) <= 0;
+  }
+
+  private BigDecimal fare(List<Schedule> legs) {
+    return legs.stream().map(Schedule::getBaseFare).reduce(BigDecimal.ZERO, BigDecimal::add);
+  }
+}
@@ -0,0 +1,140 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@DisplayName("RouteCatalog Tests")
+class RouteCatalogTest {
+
+  private RouteCatalog routeCatalog;
+  private Map<String, Map<String, AirportGraph.RouteEdge>> edges;
+  private Map<String, double[]> coordinates;
+  private AirportGraph.Snapshot snapshot;
+
+  @BeforeEach
+  void setUp() {
+    routeCatalog = new RouteCatalog();
+    ReflectionTestUtils.setField(routeCatalog, "enabled", true);
+    ReflectionTestUtils.setField(routeCatalog, "maxHops", 2);
+    ReflectionTestUtils.setField(routeCatalog, "routesPerHopCount", 100);
+    ReflectionTestUtils.setField(routeCatalog, "maxExpansionsPerSource", 500000);
+
+    edges = new HashMap<>();
+    coordinates = new HashMap<>();
+    connect("DEL", "BOM", 1150, 15000);
+    connect("BOM", "BLR", 840, 12000);
+    connect("DEL", "HYD", 1270, 16000);
+    connect("HYD", "BLR", 500, 7500);
+    connect("DEL", "BLR", 1740, 18000);
+    connect("MAA", "CCU", 1360, 16500);
+  }
+
+  private void connect(String from, String to, int distance, double avgPrice) {
+    edges
+        .computeIfAbsent(from, k -> new LinkedHashMap<>())
+        .put(to, new AirportGraph.RouteEdge(distance, avgPrice));
+  }
+
+  private void refresh() {
+    AirportGraph.Snapshot next = AirportGraph.Snapshot.build(edges, coordinates);
+    routeCatalog.onGraphRefreshed(
+        new AirportGraphRefreshedEvent(new AirportGraph(), snapshot, next));
+    snapshot = next;
+  }
+
+  @Test
+  @DisplayName("Should cover no hop count before the graph is catalogued")
+  void testCovers_BeforeFirstRefresh() {
+    assertFalse(routeCatalog.covers(0));
+
+    refresh();
+
+    assertTrue(routeCatalog.covers(2));
+    assertFalse(routeCatalog.covers(3));
+  }
+
+  @Test
+  @DisplayName("Should serve routes of each hop count ranked by distance")
+  void testFindRoutes_RankedByDistance() {
+    // When
+    refresh();
+
+    // Then
+    assertEquals(List.of(List.of("DEL", "BLR")), routeCatalog.findRoutes("DEL", "BLR", 0, 100));
+    assertEquals(
+        List.of(List.of("DEL", "HYD", "BLR"), List.of("DEL", "BOM", "BLR")),
+        routeCatalog.findRoutes("DEL", "BLR", 1, 100));
+    assertEquals(
+        List.of(List.of("DEL", "HYD", "BLR")), routeCatalog.findRoutes("DEL", "BLR", 1, 1));
+    assertTrue(routeCatalog.findRoutes("DEL", "CCU", 1, 100).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should recompute only the sources that can reach a changed edge")
+  void testOnGraphRefreshed_Incremental() {
+    // Given
+    refresh();
+    Map<String, List<RouteCatalog.CatalogRoute>> fromMaa = routeCatalog.routesFrom("MAA");
+    Map<String, List<RouteCatalog.CatalogRoute>> fromHyd = routeCatalog.routesFrom("HYD");
+
+    // When
+    edges.get("BOM").remove("BLR");
+    connect("BOM", "MAA", 1030, 11000);
+    refresh();
+
+    // Then
+    assertSame(fromMaa, routeCatalog.routesFrom("MAA"));
+    assertSame(fromHyd, routeCatalog.routesFrom("HYD"));
+    assertEquals(
+        List.of(List.of("DEL", "HYD", "BLR")), routeCatalog.findRoutes("DEL", "BLR", 1, 100));
+    assertEquals(
+        List.of(List.of("DEL", "BOM", "MAA", "CCU")),
+        routeCatalog.findRoutes("DEL", "CCU", 2, 100));
+  }
+
+  @Test
+  @DisplayName("Should leave out routes beyond the circuity factor")
+  void testOnGraphRefreshed_PrunesDetours() {
+    // Given
+    ReflectionTestUtils.setField(routeCatalog, "circuityFactor", 1.8);
+    coordinates.put("DEL", new double[] {28.5562, 77.1000});
+    coordinates.put("BOM", new double[] {19.0896, 72.8656});
+    coordinates.put("BLR", new double[] {13.1986, 77.7066});
+    coordinates.put("HYD", new double[] {17.2403, 78.4294});
+    connect("BLR", "BOM", 840, 12500);
+    connect("HYD", "BOM", 620, 10500);
+
+    // When
+    refresh();
+
+    // Then - DEL-BLR-BOM is 2.2 times the direct distance, DEL-HYD-BOM 1.7 times
+    assertEquals(
+        List.of(List.of("DEL", "HYD", "BOM")), routeCatalog.findRoutes("DEL", "BOM", 1, 100));
+    assertEquals(List.of(List.of("DEL", "BOM")), routeCatalog.findRoutes("DEL", "BOM", 0, 100));
+  }
+
+  @Test
+  @DisplayName("Should stop walking from a source after max expansions")
+  void testOnGraphRefreshed_CapsExpansions() {
+    // Given - DEL-BOM, then BOM-BLR, then DEL-BOM-BLR is the last expansion allowed
+    ReflectionTestUtils.setField(routeCatalog, "maxExpansionsPerSource", 2);
+
+    // When
+    refresh();
+
+    // Then
+    assertEquals(List.of(List.of("DEL", "BOM")), routeCatalog.findRoutes("DEL", "BOM", 0, 100));
+    assertEquals(
+        List.of(List.of("DEL", "BOM", "BLR")), routeCatalog.findRoutes("DEL", "BLR", 1, 100));
+    assertTrue(routeCatalog.findRoutes("DEL", "HYD", 0, 100).isEmpty());
+    assertTrue(routeCatalog.findRoutes("DEL", "BLR", 0, 100).isEmpty());
+  }
+}
@@ -0,0 +1,195 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SearchRequestCoalescer Tests")
+class SearchRequestCoalescerTest {
+
+  private static final String CACHE = "flightSearch";
+  private static final String KEY = "DEL_BOM_2025-08-20T00:00_2";
+
+  @Mock private RedisTemplate<String, Object> redisTemplate;
+
+  @Mock private ValueOperations<String, Object> valueOperations;
+
+  @InjectMocks private SearchRequestCoalescer searchRequestCoalescer;
+
+  private ConcurrentMapCacheManager cacheManager;
+
+  @BeforeEach
+  void setUp() {
+    cacheManager = new ConcurrentMapCacheManager(CACHE);
+    ReflectionTestUtils.setField(searchRequestCoalescer, "cacheManager", cacheManager);
+    ReflectionTestUtils.setField(searchRequestCoalescer, "leaseMs", 2000L);
+    ReflectionTestUtils.setField(searchRequestCoalescer, "pollMs", 10L);
+  }
+
+  @Test
+  @DisplayName("Should share one computation between concurrent identical searches")
+  void testExecute_CoalescesConcurrentCallers() throws Exception {
+    // Given
+    ReflectionTestUtils.setField(searchRequestCoalescer, "redisTemplate", null);
+    AtomicInteger computations = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      // When
+      List<Future<String>> results = new ArrayList<>();
+      results.add(
+          executor.submit(
+              () ->
+                  searchRequestCoalescer.execute(
+                      CACHE,
+                      KEY,
+                      () -> {
+                        computations.incrementAndGet();
+                        started.countDown();
+                        awaitQuietly(release);
+                        return "result";
+                      })));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 7; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    searchRequestCoalescer.execute(
+                        CACHE,
+                        KEY,
+                        () -> {
+                          computations.incrementAndGet();
+                          return "duplicate";
+                        })));
+      }
+      Thread.sleep(100);
+      release.countDown();
+
+      // Then
+      for (Future<String> result : results) {
+        assertEquals("result", result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, computations.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("Should serve the result cached by the instance holding the lease")
+  void testExecute_WaitsForRemoteLeaseHolder() {
+    // Given - another instance holds the lease and has cached its result
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class)))
+        .thenReturn(false);
+    cacheManager.getCache(CACHE).put(KEY, "remote");
+
+    // When
+    String result = searchRequestCoalescer.execute(CACHE, KEY, () -> "local");
+
+    // Then
+    assertEquals("remote", result);
+  }
+
+  @Test
+  @DisplayName("Should compute locally once a foreign lease is released without a result")
+  void testExecute_ComputesWhenLeaseLapses() {
+    // Given
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class)))
+        .thenReturn(false);
+    when(redisTemplate.hasKey(anyString())).thenReturn(false);
+
+    // When
+    String result = searchRequestCoalescer.execute(CACHE, KEY, () -> "local");
+
+    // Then
+    assertEquals("local", result);
+  }
+
+  @Test
+  @DisplayName("Should stop waiting for a foreign lease at the request deadline")
+  void testExecute_WaitBoundedByDeadline() {
+    // Given - a slow leader keeps the lease for longer than the request may wait
+    ReflectionTestUtils.setField(searchRequestCoalescer, "leaseMs", 60_000L);
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class)))
+        .thenReturn(false);
+    when(redisTemplate.hasKey(anyString())).thenReturn(true);
+    long started = System.currentTimeMillis();
+
+    // When
+    String result = searchRequestCoalescer.execute(CACHE, KEY, started + 200, () -> "local");
+
+    // Then
+    assertEquals("local", result);
+    assertTrue(System.currentTimeMillis() - started < 5_000);
+  }
+
+  @Test
+  @DisplayName("Should cache the result before releasing its own lease")
+  void testExecute_CachesBeforeRelease() {
+    // Given
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class)))
+        .thenReturn(true);
+    List<Object> cachedAtRelease = new ArrayList<>();
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), any()))
+        .thenAnswer(
+            invocation -> {
+              cachedAtRelease.add(cacheManager.getCache(CACHE).get(KEY, String.class));
+              return 1L;
+            });
+
+    // When
+    String result = searchRequestCoalescer.execute(CACHE, KEY, () -> "local");
+
+    // Then
+    assertEquals("local", result);
+    assertEquals(List.of("local"), cachedAtRelease);
+  }
+
+  @Test
+  @DisplayName("Should compute when Redis is unavailable")
+  void testExecute_RedisUnavailable() {
+    // Given
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class)))
+        .thenThrow(new RuntimeException("Redis connection failed"));
+
+    // When & Then
+    assertEquals("local", searchRequestCoalescer.execute(CACHE, KEY, () -> "local"));
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.example.flight.search.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.flight.search.entity.Flight;
+import com.example.flight.search.entity.Schedule;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SegmentAvailabilityCache Tests")
+class SegmentAvailabilityCacheTest {
+
+  @Mock private StringRedisTemplate redisTemplate;
+
+  @Mock private ValueOperations<String, String> valueOperations;
+
+  @InjectMocks private SegmentAvailabilityCache segmentAvailabilityCache;
+
+  private LocalDateTime day;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(segmentAvailabilityCache, "enabled", true);
+    ReflectionTestUtils.setField(segmentAvailabilityCache, "ttlSeconds", 300L);
+    day = LocalDate.now().plusDays(1).atStartOfDay();
+  }
+
+  private Schedule leg(long id, int departureHour, int departureMinute, int seats) {
+    Flight flight = new Flight("6E" + id, "IndiGo", 180);
+    flight.setId(id * 10);
+    LocalDateTime departure = day.plusHours(departureHour).plusMinutes(departureMinute);
+    Schedule schedule =
+        new Schedule(
+            flight,
+            "BOM",
+            "BLR",
+            departure,
+            departure.plusMinutes(90),
+            seats,
+            new BigDecimal("12000.50"));
+    schedule.setId(id);
+    return schedule;
+  }
+
+  @Test
+  @DisplayName("Should round-trip legs through the compact bucket encoding")
+  void testEncode_RoundTrip() {
+    // Given
+    Schedule original = leg(7L, 9, 15, 42);
+
+    // When
+    List<Schedule> decoded =
+        SegmentAvailabilityCache.decode(
+            SegmentAvailabilityCache.encode(List.of(original)), "BOM", "BLR");
+
+    // Then
+    assertEquals(1, decoded.size());
+    Schedule leg = decoded.get(0);
+    assertEquals(7L, leg.getId());
+    assertEquals(70L, leg.getFlight().getId());
+    assertEquals("6E7", leg.getFlight().getFlightNumber());
+    assertEquals("IndiGo", leg.getFlight().getAirline());
+    assertEquals("BOM", leg.getSource());
+    assertEquals("BLR", leg.getDestination());
+    assertEquals(original.getDepartureTime(), leg.getDepartureTime());
+    assertEquals(original.getArrivalTime(), leg.getArrivalTime());
+    assertEquals(42, leg.getAvailableSeats());
+    assertEquals(new BigDecimal("12000.50"), leg.getBaseFare());
+    assertTrue(SegmentAvailabilityCache.decode("", "BOM", "BLR").isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should serve a segment only when every hour bucket is cached")
+  void testFindAll_RequiresEveryBucket() {
+    // Given
+    SegmentKey complete = new SegmentKey("BOM", "BLR", day.plusHours(9), day.plusHours(10));
+    SegmentKey partial = new SegmentKey("BOM", "BLR", day.plusHours(12), day.plusHours(12));
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.multiGet(anyList()))
+        .thenReturn(
+            Arrays.asList(
+                SegmentAvailabilityCache.encode(
+                    List.of(leg(1L, 9, 0, 5), leg(2L, 9, 30, 1))), // 09:00 bucket
+                SegmentAvailabilityCache.encode(List.of(leg(3L, 10, 30, 5))), // 10:00, too late
+                null)); // 12:00 bucket not cached
+
+    // When
+    Map<SegmentKey, List<Schedule>> found =
+        segmentAvailabilityCache.findAll(Arrays.asList(complete, partial), 2);
+
+    // Then
+    assertEquals(1, found.size());
+    assertEquals(List.of(1L), found.get(complete).stream().map(Schedule::getId).toList());
+    verify(valueOperations)
+        .multiGet(
+            List.of(
+                SegmentAvailabilityCache.key("BOM", "BLR", day.plusHours(9)),
+                SegmentAvailabilityCache.key("BOM", "BLR", day.plusHours(10)),
+                SegmentAvailabilityCache.key("BOM", "BLR", day.plusHours(12))));
+  }
+
+  @Test
+  @DisplayName("Should treat Redis failures as cache misses")
+  void testFindAll_RedisUnavailable() {
+    // Given
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.multiGet(anyList())).thenThrow(new RuntimeException("Connection refused"));
+    SegmentKey segment = new SegmentKey("BOM", "BLR", day, day.plusHours(2));
+
+    // When & Then
+    assertTrue(segmentAvailabilityCache.findAll(Collections.singletonList(segment), 1).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should evict the hour bucket holding a departure")
+  void testEvict_DropsBucket() {
+    // When
+    segmentAvailabilityCache.evict("BOM", "BLR", day.plusHours(9).plusMinutes(45));
+
+    // Then
+    verify(redisTemplate).delete(SegmentAvailabilityCache.key("BOM", "BLR", day.plusHours(9)));
+  }
+
+  @Test
+  @DisplayName("Should patch a leg's seat count into the hour bucket holding its departure")
+  @SuppressWarnings("unchecked")
+  void testUpdateSeats_PatchesBucket() {
+    // When
+    segmentAvailabilityCache.updateSeats(7L, "BOM", "BLR", day.plusHours(9).plusMinutes(45), 3);
+
+    // Then
+    verify(redisTemplate)
+        .execute(
+            any(RedisScript.class),
+            eq(List.of(SegmentAvailabilityCache.key("BOM", "BLR", day.plusHours(9)))),
+            eq("7"),
+            eq("3"));
+    verify(redisTemplate, never()).delete(anyString());
+  }
+
+  @Test
+  @DisplayName("Should widen segments to whole hour buckets")
+  void testAlign_WholeHours() {
+    // Given
+    SegmentKey segment =
+        new SegmentKey("BOM", "BLR", day.plusHours(9).plusMinutes(20), day.plusHours(11));
+
+    // When
+    SegmentKey aligned = SegmentAvailabilityCache.align(segment);
+
+    // Then
+    assertEquals(day.plusHours(9), aligned.getStartTime());
+    assertTrue(aligned.contains(day.plusHours(11).plusMinutes(59)));
+    assertFalse(aligned.contains(day.plusHours(12)));
+    List<Schedule> legs = new ArrayList<>(List.of(leg(1L, 9, 0, 5), leg(2L, 9, 30, 5)));
+    assertEquals(1, SegmentAvailabilityCache.within(legs, segment, 1).size());
+  }
+}
@@ -7,6 +7,7 @@ CREATE TABLE schedules (
     arrival_time TIMESTAMP NOT NULL,
     available_seats INT NOT NULL,
     base_fare DECIMAL(10,2) NOT NULL,
+    updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     CONSTRAINT fk_flight FOREIGN KEY (flight_id) REFERENCES flights (id)
 );
 